@@ -32,6 +32,7 @@ public class SecurityConfig {
                         .requestMatchers("/v3/api-docs/**").permitAll() // Allow access to Swagger JSON
                         .requestMatchers("/api/v1/ingredients/**").permitAll()
                         .requestMatchers("/api/v1/recipes/**").permitAll()
+                        .requestMatchers("/actuator/health", "/actuator/metrics/**").permitAll()
                         .anyRequest().authenticated()
                 );
         return http.build();
@@ -0,0 +1,58 @@
+package com.abnamro.recipeapp.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Answers "definitely absent" or "maybe present". Bits are only ever set, so concurrent puts and lookups need no lock.
+final class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+
+    BloomFilter(long expectedInsertions, double falsePositiveProbability) {
+        if (expectedInsertions <= 0 || falsePositiveProbability <= 0 || falsePositiveProbability >= 1) {
+            throw new IllegalArgumentException("Invalid Bloom filter size: " + expectedInsertions + " at " + falsePositiveProbability);
+        }
+        // The standard optimum: m = -n ln p / (ln 2)^2 bits and k = m / n ln 2 hash functions.
+        long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+        this.words = new AtomicLongArray(Math.toIntExact(Math.max(1, (optimalBits + Long.SIZE - 1) / Long.SIZE)));
+        this.bitCount = (long) words.length() * Long.SIZE;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+    }
+
+    void put(Object value) {
+        long hash1 = mix(value.hashCode());
+        long hash2 = mix(hash1) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            if ((words.get(word) & mask) == 0) {
+                words.getAndAccumulate(word, mask, (current, added) -> current | added);
+            }
+        }
+    }
+
+    boolean mightContain(Object value) {
+        long hash1 = mix(value.hashCode());
+        long hash2 = mix(hash1) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    long sizeInBytes() {
+        return (long) words.length() * Long.BYTES;
+    }
+
+    // SplitMix64 finalizer, so nearby ids and similar names spread over the whole bit array.
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+}
@@ -0,0 +1,31 @@
+package com.abnamro.recipeapp.cache;
+
+import java.util.Optional;
+
+public record CacheInvalidation(String origin, Entity entity, Operation operation, int id) {
+
+    // CATALOG:LOADED names no row: a catalog load may have touched any of them.
+    public enum Entity { RECIPE, INGREDIENT, CATALOG }
+
+    public enum Operation { SAVED, DELETED, LOADED }
+
+    private static final String SEPARATOR = ":";
+
+    // Kept to a few dozen bytes: NOTIFY payloads are limited to 8000 bytes and are queued per transaction.
+    String toPayload() {
+        return String.join(SEPARATOR, origin, entity.name(), operation.name(), Integer.toString(id));
+    }
+
+    static Optional<CacheInvalidation> fromPayload(String payload) {
+        String[] parts = payload.split(SEPARATOR);
+        if (parts.length != 4) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(new CacheInvalidation(parts[0], Entity.valueOf(parts[1]), Operation.valueOf(parts[2]),
+                    Integer.parseInt(parts[3])));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.abnamro.recipeapp.cache;
+
+import com.abnamro.recipeapp.event.CatalogLoadedEvent;
+import com.abnamro.recipeapp.event.IngredientDeletedEvent;
+import com.abnamro.recipeapp.event.IngredientsSavedEvent;
+import com.abnamro.recipeapp.event.RecipeDeletedEvent;
+import com.abnamro.recipeapp.event.RecipeSavedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+// Sends this node's writes to the other nodes; CacheInvalidationListener receives theirs.
+@Component
+@ConditionalOnProperty(name = "recipe.cache.invalidation.enabled", matchIfMissing = true)
+public class CacheInvalidationChannel {
+
+    private static final Pattern CHANNEL_NAME = Pattern.compile("[a-z_][a-z0-9_]*");
+    private static final String NOTIFY = "SELECT pg_notify(?, payload) FROM unnest(?) AS payload";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String channel;
+    private final String nodeId = UUID.randomUUID().toString().substring(0, 8);
+
+    public CacheInvalidationChannel(JdbcTemplate jdbcTemplate,
+                                    @Value("${recipe.cache.invalidation.channel:recipe_cache_invalidation}") String channel) {
+        if (!CHANNEL_NAME.matcher(channel).matches()) {
+            throw new IllegalArgumentException("Invalid cache invalidation channel name: " + channel);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.channel = channel;
+    }
+
+    String name() {
+        return channel;
+    }
+
+    String nodeId() {
+        return nodeId;
+    }
+
+    @EventListener
+    public void onRecipeSaved(RecipeSavedEvent event) {
+        publish(CacheInvalidation.Entity.RECIPE, CacheInvalidation.Operation.SAVED, List.of(event.recipeId()));
+    }
+
+    @EventListener
+    public void onRecipeDeleted(RecipeDeletedEvent event) {
+        publish(CacheInvalidation.Entity.RECIPE, CacheInvalidation.Operation.DELETED, List.of(event.recipeId()));
+    }
+
+    @EventListener
+    public void onIngredientsSaved(IngredientsSavedEvent event) {
+        publish(CacheInvalidation.Entity.INGREDIENT, CacheInvalidation.Operation.SAVED, event.ingredientIds());
+    }
+
+    @EventListener
+    public void onIngredientDeleted(IngredientDeletedEvent event) {
+        publish(CacheInvalidation.Entity.INGREDIENT, CacheInvalidation.Operation.DELETED, List.of(event.ingredientId()));
+    }
+
+    @EventListener
+    public void onCatalogLoaded(CatalogLoadedEvent event) {
+        publish(CacheInvalidation.Entity.CATALOG, CacheInvalidation.Operation.LOADED, List.of(0));
+    }
+
+    // NOTIFY is queued with the writing transaction and only delivered if it commits. Replayed changes from other
+    // nodes run in read-only transactions and are not sent back out.
+    private void publish(CacheInvalidation.Entity entity, CacheInvalidation.Operation operation, List<Integer> ids) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return;
+        }
+        pendingNotifications().add(entity, operation, ids);
+    }
+
+    // Looked up among the registered synchronizations rather than bound as a resource, so a REQUIRES_NEW
+    // transaction gets its own batch while the outer one is suspended.
+    private PendingNotifications pendingNotifications() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingNotifications pending && pending.channel() == this) {
+                return pending;
+            }
+        }
+        PendingNotifications pending = new PendingNotifications();
+        TransactionSynchronizationManager.registerSynchronization(pending);
+        return pending;
+    }
+
+    private record Key(CacheInvalidation.Entity entity, CacheInvalidation.Operation operation) {
+    }
+
+    // Collects a transaction's ids so a batch import sends one pg_notify round trip instead of one per row.
+    private final class PendingNotifications implements TransactionSynchronization {
+
+        private final Map<Key, Set<Integer>> idsByKey = new LinkedHashMap<>();
+
+        CacheInvalidationChannel channel() {
+            return CacheInvalidationChannel.this;
+        }
+
+        void add(CacheInvalidation.Entity entity, CacheInvalidation.Operation operation, List<Integer> ids) {
+            idsByKey.computeIfAbsent(new Key(entity, operation), key -> new LinkedHashSet<>()).addAll(ids);
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            String[] payloads = idsByKey.entrySet().stream()
+                    .flatMap(entry -> entry.getValue().stream()
+                            .map(id -> new CacheInvalidation(nodeId, entry.getKey().entity(), entry.getKey().operation(), id)))
+                    .map(CacheInvalidation::toPayload)
+                    .toArray(String[]::new);
+            if (payloads.length > 0) {
+                jdbcTemplate.query(NOTIFY, resultSet -> {}, channel, payloads);
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.abnamro.recipeapp.cache;
+
+import com.abnamro.recipeapp.event.CatalogLoadedEvent;
+import com.abnamro.recipeapp.event.IngredientDeletedEvent;
+import com.abnamro.recipeapp.event.IngredientsSavedEvent;
+import com.abnamro.recipeapp.event.RecipeDeletedEvent;
+import com.abnamro.recipeapp.event.RecipeSavedEvent;
+import com.abnamro.recipeapp.index.RecipeIngredientIndex;
+import com.abnamro.recipeapp.index.RecipeSimilarityIndex;
+import com.abnamro.recipeapp.repository.IngredientRepository;
+import com.abnamro.recipeapp.repository.RecipeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+@Component
+@Profile("!catalog")
+public class CacheInvalidationHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheInvalidationHandler.class);
+
+    private final RecipeRepository recipeRepository;
+    private final IngredientRepository ingredientRepository;
+    private final RecipeCache recipeCache;
+    private final RecipeJsonCache recipeJsonCache;
+    private final RecipeSearchCache recipeSearchCache;
+    private final ExistenceFilter existenceFilter;
+    private final RecipeIngredientIndex recipeIngredientIndex;
+    private final RecipeSimilarityIndex recipeSimilarityIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+
+    public CacheInvalidationHandler(RecipeRepository recipeRepository, IngredientRepository ingredientRepository,
+                                    RecipeCache recipeCache, RecipeJsonCache recipeJsonCache, RecipeSearchCache recipeSearchCache,
+                                    ExistenceFilter existenceFilter,
+                                    RecipeIngredientIndex recipeIngredientIndex, RecipeSimilarityIndex recipeSimilarityIndex,
+                                    ApplicationEventPublisher eventPublisher, PlatformTransactionManager transactionManager) {
+        this.recipeRepository = recipeRepository;
+        this.ingredientRepository = ingredientRepository;
+        this.recipeCache = recipeCache;
+        this.recipeJsonCache = recipeJsonCache;
+        this.recipeSearchCache = recipeSearchCache;
+        this.existenceFilter = existenceFilter;
+        this.recipeIngredientIndex = recipeIngredientIndex;
+        this.recipeSimilarityIndex = recipeSimilarityIndex;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    // Replays another node's write as the local event, so every cache and index updates itself the same way
+    // it does for local writes once the (read-only) replay transaction commits.
+    public void apply(CacheInvalidation invalidation) {
+        logger.info("Applying cache invalidation from node {}: {}", invalidation.origin(), invalidation);
+        if (invalidation.entity() == CacheInvalidation.Entity.CATALOG) {
+            invalidateAll();
+            return;
+        }
+        try {
+            if (invalidation.entity() == CacheInvalidation.Entity.INGREDIENT) {
+                ingredientRepository.evictCached(List.of(invalidation.id()));
+            }
+            transactionTemplate.executeWithoutResult(status -> replay(invalidation));
+        } catch (RuntimeException e) {
+            logger.warn("Could not apply cache invalidation {}, dropping all local caches", invalidation, e);
+            invalidateAll();
+        }
+    }
+
+    public void invalidateAll() {
+        logger.info("Dropping all local recipe and ingredient caches");
+        recipeCache.invalidateAll();
+        recipeJsonCache.invalidateAll();
+        recipeSearchCache.invalidateAll();
+        ingredientRepository.evictAllCached();
+        recipeIngredientIndex.rebuild();
+        recipeSimilarityIndex.rebuild();
+        existenceFilter.rebuild();
+        logger.info("Local recipe and ingredient caches dropped");
+    }
+
+    // A catalog load writes through COPY without per-row events, so nothing cached or indexed can be trusted after it.
+    @TransactionalEventListener
+    public void onCatalogLoaded(CatalogLoadedEvent event) {
+        invalidateAll();
+    }
+
+    private void replay(CacheInvalidation invalidation) {
+        Integer id = invalidation.id();
+        switch (invalidation.entity()) {
+            case RECIPE -> eventPublisher.publishEvent(invalidation.operation() == CacheInvalidation.Operation.SAVED
+                    ? reloadRecipe(id)
+                    : new RecipeDeletedEvent(id));
+            case INGREDIENT -> eventPublisher.publishEvent(invalidation.operation() == CacheInvalidation.Operation.SAVED
+                    ? reloadIngredient(id)
+                    : new IngredientDeletedEvent(id));
+        }
+    }
+
+    private Object reloadIngredient(Integer id) {
+        return ingredientRepository.findById(id)
+                .<Object>map(ingredient -> new IngredientsSavedEvent(List.of(id), List.of(ingredient.getName())))
+                .orElseGet(() -> new IngredientDeletedEvent(id));
+    }
+
+    // The notification only names the recipe; its committed state decides which searches and index entries change.
+    private Object reloadRecipe(Integer id) {
+        return recipeRepository.findAllByIds(List.of(id)).stream()
+                .findFirst()
+                .<Object>map(recipe -> new RecipeSavedEvent(id, recipe.getName(),
+                        recipe.getRecipeIngredients().stream().map(link -> link.getIngredient().getId()).toList(),
+                        recipe.getVegetarian(), recipe.getServings()))
+                .orElseGet(() -> new RecipeDeletedEvent(id));
+    }
+}
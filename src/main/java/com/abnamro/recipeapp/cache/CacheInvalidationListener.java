@@ -0,0 +1,188 @@
+package com.abnamro.recipeapp.cache;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Properties;
+
+// Applies the other nodes' writes to this node's caches over one dedicated LISTEN connection. The catalog tool
+// holds no caches, so it only sends.
+@Component
+@Profile("!catalog")
+@ConditionalOnProperty(name = "recipe.cache.invalidation.enabled", matchIfMissing = true)
+public class CacheInvalidationListener implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheInvalidationListener.class);
+
+    static final String APPLICATION_NAME_PREFIX = "cache-invalidation-";
+
+    private final DataSourceProperties dataSourceProperties;
+    private final CacheInvalidationChannel channel;
+    private final CacheInvalidationHandler handler;
+    private final Duration pollTimeout;
+    private final Duration reconnectMinDelay;
+    private final Duration reconnectMaxDelay;
+
+    private volatile boolean running;
+    private Thread listener;
+
+    public CacheInvalidationListener(DataSourceProperties dataSourceProperties, CacheInvalidationChannel channel,
+                                     CacheInvalidationHandler handler,
+                                     @Value("${recipe.cache.invalidation.poll-timeout:500ms}") Duration pollTimeout,
+                                     @Value("${recipe.cache.invalidation.reconnect-min-delay:1s}") Duration reconnectMinDelay,
+                                     @Value("${recipe.cache.invalidation.reconnect-max-delay:30s}") Duration reconnectMaxDelay) {
+        this.dataSourceProperties = dataSourceProperties;
+        this.channel = channel;
+        this.handler = handler;
+        this.pollTimeout = pollTimeout;
+        this.reconnectMinDelay = reconnectMinDelay;
+        this.reconnectMaxDelay = reconnectMaxDelay;
+    }
+
+    @Override
+    public void start() {
+        logger.info("Starting cache invalidation listener {} on channel {}", channel.nodeId(), channel.name());
+        running = true;
+        // Listening before the context is ready means no write after startup can be missed without a catch-up.
+        Connection connection = null;
+        try {
+            connection = listen();
+        } catch (SQLException e) {
+            logger.warn("Could not listen on cache invalidation channel {}, retrying in the background: {}", channel.name(), e.getMessage());
+        }
+        Connection initial = connection;
+        listener = Thread.ofPlatform().name("cache-invalidation-listener").daemon().start(() -> run(initial));
+        logger.info("Cache invalidation listener {} started", channel.nodeId());
+    }
+
+    @Override
+    public void stop() {
+        logger.info("Stopping cache invalidation listener {}", channel.nodeId());
+        running = false;
+        listener.interrupt();
+        try {
+            listener.join(pollTimeout.multipliedBy(2).toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.info("Cache invalidation listener {} stopped", channel.nodeId());
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void run(Connection initial) {
+        Connection connection = initial;
+        Duration delay = reconnectMinDelay;
+        // Set when notifications may have been missed or only partly applied; cleared by a successful invalidateAll.
+        boolean invalidateAllPending = false;
+        while (running) {
+            if (connection == null) {
+                try {
+                    connection = listen();
+                } catch (SQLException e) {
+                    logger.warn("Could not listen on cache invalidation channel {}, retrying in {}: {}", channel.name(), delay, e.getMessage());
+                    sleep(delay);
+                    delay = nextDelay(delay);
+                    continue;
+                }
+                // Notifications sent while disconnected are lost, so everything cached before now may be stale.
+                logger.info("Listening on cache invalidation channel {} again, catching up", channel.name());
+                delay = reconnectMinDelay;
+                invalidateAllPending = true;
+            }
+            try {
+                if (invalidateAllPending) {
+                    handler.invalidateAll();
+                    invalidateAllPending = false;
+                    delay = reconnectMinDelay;
+                }
+                receive(connection);
+            } catch (SQLException e) {
+                logger.warn("Lost cache invalidation channel {}, reconnecting in {}: {}", channel.name(), delay, e.getMessage());
+                close(connection);
+                connection = null;
+                sleep(delay);
+            } catch (RuntimeException e) {
+                // For example no pooled connection for a rebuild; the thread must survive it or invalidation stops for good.
+                logger.error("Could not apply cache invalidations from channel {}, dropping all caches again in {}", channel.name(), delay, e);
+                invalidateAllPending = true;
+                sleep(delay);
+                delay = nextDelay(delay);
+            }
+        }
+        close(connection);
+    }
+
+    private Connection listen() throws SQLException {
+        Properties properties = new Properties();
+        properties.setProperty("user", dataSourceProperties.determineUsername());
+        properties.setProperty("password", dataSourceProperties.determinePassword());
+        properties.setProperty("ApplicationName", APPLICATION_NAME_PREFIX + channel.nodeId());
+        properties.setProperty("tcpKeepAlive", "true");
+        Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(), properties);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("LISTEN " + channel.name());
+            return connection;
+        } catch (SQLException e) {
+            close(connection);
+            throw e;
+        }
+    }
+
+    private void receive(Connection connection) throws SQLException {
+        PGNotification[] notifications = connection.unwrap(PGConnection.class).getNotifications((int) pollTimeout.toMillis());
+        if (notifications == null) {
+            return;
+        }
+        for (PGNotification notification : notifications) {
+            Optional<CacheInvalidation> invalidation = CacheInvalidation.fromPayload(notification.getParameter());
+            if (invalidation.isEmpty()) {
+                logger.warn("Ignoring malformed cache invalidation: {}", notification.getParameter());
+            } else if (!invalidation.get().origin().equals(channel.nodeId())) {
+                handler.apply(invalidation.get());
+            }
+        }
+    }
+
+    private Duration nextDelay(Duration delay) {
+        Duration doubled = delay.multipliedBy(2);
+        return doubled.compareTo(reconnectMaxDelay) > 0 ? reconnectMaxDelay : doubled;
+    }
+
+    private void sleep(Duration delay) {
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    private static void close(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.warn("Could not close cache invalidation connection: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.abnamro.recipeapp.cache;
+
+import com.abnamro.recipeapp.event.IngredientsSavedEvent;
+import com.abnamro.recipeapp.event.RecipeSavedEvent;
+import com.abnamro.recipeapp.repository.IngredientRepository;
+import com.abnamro.recipeapp.repository.RecipeRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Answers lookups of ids and names that do not exist without a query: Bloom filters rule out what was never
+// written, and a short-lived cache remembers the remaining misses (deleted rows and false positives).
+@Component
+@Profile("!catalog")
+public class ExistenceFilter implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExistenceFilter.class);
+
+    static final String NAME = "lookups.notFound";
+
+    public enum Lookup { RECIPE_ID, RECIPE_NAME, INGREDIENT_ID, INGREDIENT_NAME }
+
+    private record Key(Lookup lookup, Object value) {
+    }
+
+    private final RecipeRepository recipeRepository;
+    private final IngredientRepository ingredientRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final long expectedInsertions;
+    private final double falsePositiveProbability;
+    private final Cache<Key, Boolean> notFound;
+    private final Map<Lookup, LongAdder> rejections = new EnumMap<>(Lookup.class);
+    private final AtomicLong writes = new AtomicLong();
+
+    // Null until a rebuild completes, and again after one fails; until then every lookup goes to the database.
+    private volatile Map<Lookup, BloomFilter> filters;
+    // Receives writes made while a rebuild is reading the tables, which its reads may not see.
+    private volatile Map<Lookup, BloomFilter> rebuilding;
+
+    public ExistenceFilter(RecipeRepository recipeRepository, IngredientRepository ingredientRepository,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${recipe.existence-filter.expected-insertions:1000000}") long expectedInsertions,
+                           @Value("${recipe.existence-filter.false-positive-probability:0.01}") double falsePositiveProbability,
+                           @Value("${recipe.existence-filter.not-found-maximum-size:100000}") long notFoundMaximumSize,
+                           @Value("${recipe.existence-filter.not-found-expire-after-write:30s}") Duration notFoundExpireAfterWrite) {
+        this.recipeRepository = recipeRepository;
+        this.ingredientRepository = ingredientRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveProbability = falsePositiveProbability;
+        this.notFound = Caffeine.newBuilder()
+                .maximumSize(notFoundMaximumSize)
+                .expireAfterWrite(notFoundExpireAfterWrite)
+                .recordStats()
+                .build();
+        for (Lookup lookup : Lookup.values()) {
+            rejections.put(lookup, new LongAdder());
+        }
+    }
+
+    public <T> Optional<T> find(Lookup lookup, Object value, Supplier<Optional<T>> loader) {
+        Map<Lookup, BloomFilter> current = filters;
+        if (current != null && !current.get(lookup).mightContain(value)) {
+            rejections.get(lookup).increment();
+            return Optional.empty();
+        }
+        Key key = new Key(lookup, value);
+        if (notFound.getIfPresent(key) != null) {
+            return Optional.empty();
+        }
+        long writesBefore = writes.get();
+        Optional<T> found = loader.get();
+        if (found.isEmpty()) {
+            notFound.put(key, Boolean.TRUE);
+            // A row written while the lookup ran may already have cleared this key.
+            if (writes.get() != writesBefore) {
+                notFound.invalidate(key);
+            }
+        }
+        return found;
+    }
+
+    // A failed rebuild after a catalog load or a reconnect would leave filters that rule out the new rows, so they
+    // are dropped rather than kept. The transaction is started inside the try to cover a pool with no connections.
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        logger.info("Rebuilding existence filters");
+        Map<Lookup, BloomFilter> next = new EnumMap<>(Lookup.class);
+        for (Lookup lookup : Lookup.values()) {
+            next.put(lookup, new BloomFilter(expectedInsertions, falsePositiveProbability));
+        }
+        rebuilding = next;
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                recipeRepository.forEachIdAndName(recipe -> {
+                    next.get(Lookup.RECIPE_ID).put(recipe.id());
+                    next.get(Lookup.RECIPE_NAME).put(recipe.name());
+                });
+                ingredientRepository.forEachIdAndName(ingredient -> {
+                    next.get(Lookup.INGREDIENT_ID).put(ingredient.id());
+                    next.get(Lookup.INGREDIENT_NAME).put(ingredient.name());
+                });
+            });
+            filters = next;
+            notFound.invalidateAll();
+            logger.info("Existence filters rebuilt");
+        } catch (RuntimeException e) {
+            filters = null;
+            notFound.invalidateAll();
+            logger.error("Could not rebuild existence filters, looking everything up in the database", e);
+        } finally {
+            rebuilding = null;
+        }
+    }
+
+    // Applied when the write happens, so the filters never rule out a row once it is visible, and again after
+    // commit, so a rebuild that started in between still sees it.
+    @EventListener
+    public void onRecipeSaved(RecipeSavedEvent event) {
+        remember(Lookup.RECIPE_ID, Collections.singletonList(event.recipeId()));
+        remember(Lookup.RECIPE_NAME, Collections.singletonList(event.name()));
+    }
+
+    @TransactionalEventListener
+    public void afterRecipeSaved(RecipeSavedEvent event) {
+        onRecipeSaved(event);
+    }
+
+    @EventListener
+    public void onIngredientsSaved(IngredientsSavedEvent event) {
+        remember(Lookup.INGREDIENT_ID, event.ingredientIds());
+        remember(Lookup.INGREDIENT_NAME, event.names());
+    }
+
+    @TransactionalEventListener
+    public void afterIngredientsSaved(IngredientsSavedEvent event) {
+        onIngredientsSaved(event);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, notFound, NAME);
+        rejections.forEach((lookup, rejected) -> FunctionCounter.builder("existence.filter.rejections", rejected, LongAdder::sum)
+                .tag("lookup", lookup.name())
+                .description("Lookups answered as not found by the Bloom filter without a query")
+                .register(registry));
+        Gauge.builder("existence.filter.memory", this, ExistenceFilter::sizeInBytes)
+                .description("The memory held by the Bloom filters")
+                .baseUnit(BaseUnits.BYTES)
+                .register(registry);
+    }
+
+    private void remember(Lookup lookup, Collection<?> values) {
+        writes.incrementAndGet();
+        Map<Lookup, BloomFilter> current = filters;
+        Map<Lookup, BloomFilter> next = rebuilding;
+        for (Object value : values) {
+            if (value == null) {
+                continue;
+            }
+            if (current != null) {
+                current.get(lookup).put(value);
+            }
+            if (next != null) {
+                next.get(lookup).put(value);
+            }
+            notFound.invalidate(new Key(lookup, value));
+        }
+    }
+
+    private long sizeInBytes() {
+        Map<Lookup, BloomFilter> current = filters;
+        return current == null ? 0 : current.values().stream().mapToLong(BloomFilter::sizeInBytes).sum();
+    }
+}
@@ -0,0 +1,137 @@
+package com.abnamro.recipeapp.cache;
+
+import com.abnamro.exception.ResourceNotFoundException;
+import com.abnamro.recipeapp.dto.RecipeIngredientDto;
+import com.abnamro.recipeapp.dto.Versioned;
+import com.abnamro.recipeapp.dto.recipe.RecipeDto;
+import com.abnamro.recipeapp.event.IngredientDeletedEvent;
+import com.abnamro.recipeapp.event.RecipeDeletedEvent;
+import com.abnamro.recipeapp.event.RecipeSavedEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+@Component
+public class RecipeCache implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecipeCache.class);
+
+    static final String BY_ID = "recipes.byId";
+    static final String BY_NAME = "recipes.byName";
+
+    private final Cache<Integer, Versioned<RecipeDto>> recipesById;
+    // Names only point at ids, so a recipe is cached once and every invalidation goes through recipesById.
+    private final Cache<String, Integer> recipeIdsByName;
+
+    public RecipeCache(@Value("${recipe.cache.maximum-size:10000}") long maximumSize,
+                       @Value("${recipe.cache.expire-after-write:10m}") Duration expireAfterWrite) {
+        this.recipesById = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        this.recipeIdsByName = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    public Versioned<RecipeDto> getById(Integer id, Function<Integer, Versioned<RecipeDto>> loader) {
+        return recipesById.get(id, loader);
+    }
+
+    public Optional<Long> cachedVersion(Integer id) {
+        return Optional.ofNullable(recipesById.getIfPresent(id)).map(Versioned::version);
+    }
+
+    public Versioned<RecipeDto> getByName(String name, Function<String, Integer> idLoader, Function<Integer, Versioned<RecipeDto>> loader) {
+        AtomicBoolean idLoaded = new AtomicBoolean();
+        Integer id = recipeIdsByName.get(name, key -> {
+            idLoaded.set(true);
+            return idLoader.apply(key);
+        });
+        // A freshly loaded id is current, so a miss is a real miss and is not looked up again.
+        if (idLoaded.get()) {
+            return getById(id, loader);
+        }
+        try {
+            Versioned<RecipeDto> recipe = getById(id, loader);
+            if (recipe.value().name().equals(name)) {
+                return recipe;
+            }
+        } catch (ResourceNotFoundException e) {
+            logger.info("Recipe {} cached for name {} no longer exists", id, name);
+        }
+        // The recipe was deleted or renamed after its name was cached; another one may have the name now.
+        recipeIdsByName.invalidate(name);
+        return getById(recipeIdsByName.get(name, idLoader), loader);
+    }
+
+    public void evict(Integer id) {
+        Versioned<RecipeDto> evicted = recipesById.asMap().remove(id);
+        if (evicted != null) {
+            recipeIdsByName.asMap().remove(evicted.value().name(), id);
+        }
+    }
+
+    public void invalidateAll() {
+        recipesById.invalidateAll();
+        recipeIdsByName.invalidateAll();
+    }
+
+    public CacheStats byIdStats() {
+        return recipesById.stats();
+    }
+
+    public CacheStats byNameStats() {
+        return recipeIdsByName.stats();
+    }
+
+    // The name mappings are dropped even when the recipe itself is no longer cached, so a name never keeps
+    // pointing at a recipe that was deleted or at a different recipe than the one that now has it.
+    @TransactionalEventListener
+    public void onRecipeSaved(RecipeSavedEvent event) {
+        evict(event.recipeId());
+        recipeIdsByName.invalidate(event.name());
+    }
+
+    @TransactionalEventListener
+    public void onRecipeDeleted(RecipeDeletedEvent event) {
+        evict(event.recipeId());
+        recipeIdsByName.asMap().values().removeIf(event.recipeId()::equals);
+    }
+
+    @TransactionalEventListener
+    public void onIngredientDeleted(IngredientDeletedEvent event) {
+        List<Integer> affected = recipesById.asMap().values().stream()
+                .map(Versioned::value)
+                .filter(recipe -> recipe.ingredients().stream()
+                        .map(RecipeIngredientDto::ingredientId)
+                        .anyMatch(event.ingredientId()::equals))
+                .map(RecipeDto::id)
+                .toList();
+        affected.forEach(this::evict);
+        logger.info("Evicted {} cached recipes using deleted ingredient {}", affected.size(), event.ingredientId());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, recipesById, BY_ID);
+        CaffeineCacheMetrics.monitor(registry, recipeIdsByName, BY_NAME);
+    }
+}
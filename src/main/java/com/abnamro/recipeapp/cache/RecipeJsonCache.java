@@ -0,0 +1,143 @@
+package com.abnamro.recipeapp.cache;
+
+import com.abnamro.recipeapp.dto.RecipeIngredientDto;
+import com.abnamro.recipeapp.dto.Versioned;
+import com.abnamro.recipeapp.dto.recipe.RecipeDto;
+import com.abnamro.recipeapp.event.IngredientDeletedEvent;
+import com.abnamro.recipeapp.event.RecipeDeletedEvent;
+import com.abnamro.recipeapp.event.RecipeSavedEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.unit.DataSize;
+
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+// Holds the response body of GET /recipes/{id} as UTF-8 JSON, so a hit skips building and serializing the RecipeDto.
+@Component
+public class RecipeJsonCache implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecipeJsonCache.class);
+
+    static final String NAME = "recipes.json";
+
+    // Rough per-entry cost of the key, the entry and the arrays' headers on top of the JSON itself.
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    private record RecipeJson(byte[] json, long version, int[] ingredientIds) {
+    }
+
+    private final Cache<Integer, RecipeJson> recipesById;
+    private final ObjectMapper objectMapper;
+
+    public RecipeJsonCache(@Value("${recipe.json-cache.maximum-size:64MB}") DataSize maximumSize,
+                           @Value("${recipe.json-cache.expire-after-write:10m}") Duration expireAfterWrite,
+                           ObjectMapper objectMapper) {
+        this.recipesById = Caffeine.newBuilder()
+                .maximumWeight(maximumSize.toBytes())
+                .weigher((Integer id, RecipeJson recipe) -> weight(recipe))
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        this.objectMapper = objectMapper;
+    }
+
+    public Versioned<byte[]> getById(Integer id, Function<Integer, Versioned<RecipeDto>> loader) {
+        RecipeJson recipe = recipesById.get(id, key -> serialize(loader.apply(key)));
+        return new Versioned<>(recipe.json(), recipe.version());
+    }
+
+    public Optional<Long> cachedVersion(Integer id) {
+        return Optional.ofNullable(recipesById.getIfPresent(id)).map(RecipeJson::version);
+    }
+
+    public void evict(Integer id) {
+        recipesById.invalidate(id);
+    }
+
+    public void invalidateAll() {
+        recipesById.invalidateAll();
+    }
+
+    public CacheStats stats() {
+        return recipesById.stats();
+    }
+
+    public long weightedSize() {
+        return recipesById.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L))
+                .orElse(0L);
+    }
+
+    // Caffeine evicts asynchronously; this applies pending evictions now.
+    void cleanUp() {
+        recipesById.cleanUp();
+    }
+
+    @TransactionalEventListener
+    public void onRecipeSaved(RecipeSavedEvent event) {
+        evict(event.recipeId());
+    }
+
+    @TransactionalEventListener
+    public void onRecipeDeleted(RecipeDeletedEvent event) {
+        evict(event.recipeId());
+    }
+
+    @TransactionalEventListener
+    public void onIngredientDeleted(IngredientDeletedEvent event) {
+        List<Integer> affected = recipesById.asMap().entrySet().stream()
+                .filter(entry -> Arrays.stream(entry.getValue().ingredientIds()).anyMatch(ingredientId -> ingredientId == event.ingredientId()))
+                .map(Map.Entry::getKey)
+                .toList();
+        recipesById.invalidateAll(affected);
+        logger.info("Evicted {} cached recipe responses using deleted ingredient {}", affected.size(), event.ingredientId());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, recipesById, NAME);
+        Gauge.builder("cache.hit.ratio", recipesById, cache -> cache.stats().hitRate())
+                .tag("cache", NAME)
+                .description("The ratio of cache lookups that were hits")
+                .register(registry);
+        Gauge.builder("cache.memory", this, RecipeJsonCache::weightedSize)
+                .tag("cache", NAME)
+                .description("The approximate memory held by cached entries")
+                .baseUnit(BaseUnits.BYTES)
+                .register(registry);
+    }
+
+    private RecipeJson serialize(Versioned<RecipeDto> recipe) {
+        try {
+            int[] ingredientIds = recipe.value().ingredients().stream()
+                    .mapToInt(RecipeIngredientDto::ingredientId)
+                    .toArray();
+            return new RecipeJson(objectMapper.writeValueAsBytes(recipe.value()), recipe.version(), ingredientIds);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int weight(RecipeJson recipe) {
+        return recipe.json().length + recipe.ingredientIds().length * Integer.BYTES + ENTRY_OVERHEAD_BYTES;
+    }
+}
@@ -0,0 +1,139 @@
+package com.abnamro.recipeapp.cache;
+
+import com.abnamro.recipeapp.event.IngredientDeletedEvent;
+import com.abnamro.recipeapp.event.RecipeDeletedEvent;
+import com.abnamro.recipeapp.event.RecipeSavedEvent;
+import com.abnamro.recipeapp.repository.RecipeSearchCriteria;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+@Component
+public class RecipeSearchCache implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecipeSearchCache.class);
+
+    static final String NAME = "recipes.search";
+
+    // Marks searches with too many matches to keep; they are always paged from the database.
+    private static final int[] TOO_LARGE = new int[0];
+
+    @FunctionalInterface
+    public interface Search {
+        List<Integer> findIds(RecipeSearchCriteria criteria, int afterId, int limit);
+    }
+
+    private final Cache<RecipeSearchCriteria, int[]> matchingIds;
+    private final int maximumIdsPerSearch;
+    private final AtomicLong writes = new AtomicLong();
+
+    public RecipeSearchCache(@Value("${recipe.search-cache.maximum-ids:1000000}") long maximumIds,
+                             @Value("${recipe.search-cache.maximum-ids-per-search:10000}") int maximumIdsPerSearch,
+                             @Value("${recipe.search-cache.expire-after-write:10m}") Duration expireAfterWrite) {
+        this.matchingIds = Caffeine.newBuilder()
+                .maximumWeight(maximumIds)
+                .weigher((RecipeSearchCriteria criteria, int[] ids) -> ids.length + 1)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        this.maximumIdsPerSearch = maximumIdsPerSearch;
+    }
+
+    public List<Integer> findPageIds(RecipeSearchCriteria criteria, int afterId, int limit, Search search) {
+        RecipeSearchCriteria key = criteria.canonical();
+        int[] ids = matchingIds.getIfPresent(key);
+        if (ids == null) {
+            ids = load(key, search);
+        }
+        return ids == TOO_LARGE ? search.findIds(criteria, afterId, limit) : page(ids, afterId, limit);
+    }
+
+    public void invalidateAll() {
+        writes.incrementAndGet();
+        matchingIds.invalidateAll();
+    }
+
+    public CacheStats stats() {
+        return matchingIds.stats();
+    }
+
+    @TransactionalEventListener
+    public void onRecipeSaved(RecipeSavedEvent event) {
+        evictIf(criteria -> couldMatch(criteria, event), event.recipeId());
+    }
+
+    @TransactionalEventListener
+    public void onRecipeDeleted(RecipeDeletedEvent event) {
+        evictIf(criteria -> false, event.recipeId());
+    }
+
+    @TransactionalEventListener
+    public void onIngredientDeleted(IngredientDeletedEvent event) {
+        evictIf(criteria -> mentions(criteria.includeIngredients(), event.ingredientId())
+                || mentions(criteria.excludeIngredients(), event.ingredientId()), null);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, matchingIds, NAME);
+    }
+
+    private int[] load(RecipeSearchCriteria key, Search search) {
+        long writesBefore = writes.get();
+        List<Integer> found = search.findIds(key, 0, maximumIdsPerSearch + 1);
+        int[] ids = found.size() > maximumIdsPerSearch
+                ? TOO_LARGE
+                : found.stream().mapToInt(Integer::intValue).toArray();
+        matchingIds.put(key, ids);
+        // A recipe written while the search ran may have been evicted before this entry existed.
+        if (writes.get() != writesBefore) {
+            matchingIds.invalidate(key);
+        }
+        return ids;
+    }
+
+    private void evictIf(Predicate<RecipeSearchCriteria> affected, Integer recipeId) {
+        writes.incrementAndGet();
+        List<RecipeSearchCriteria> evicted = new ArrayList<>();
+        matchingIds.asMap().forEach((criteria, ids) -> {
+            if (ids != TOO_LARGE && (affected.test(criteria) || recipeId != null && Arrays.binarySearch(ids, recipeId) >= 0)) {
+                evicted.add(criteria);
+            }
+        });
+        matchingIds.invalidateAll(evicted);
+        logger.info("Evicted {} cached recipe searches", evicted.size());
+    }
+
+    // Instruction matching is full-text search in the database, so it is assumed to match.
+    private static boolean couldMatch(RecipeSearchCriteria criteria, RecipeSavedEvent recipe) {
+        return (criteria.vegetarian() == null || criteria.vegetarian() == recipe.vegetarian())
+                && (criteria.servings() == null || criteria.servings() == recipe.servings())
+                && (criteria.includeIngredients() == null || recipe.ingredientIds().containsAll(criteria.includeIngredients()))
+                && (criteria.excludeIngredients() == null || criteria.excludeIngredients().stream().noneMatch(recipe.ingredientIds()::contains));
+    }
+
+    private static boolean mentions(List<Integer> ingredientIds, Integer ingredientId) {
+        return ingredientIds != null && ingredientIds.contains(ingredientId);
+    }
+
+    private static List<Integer> page(int[] ids, int afterId, int limit) {
+        int from = Arrays.binarySearch(ids, afterId);
+        from = from >= 0 ? from + 1 : -from - 1;
+        return Arrays.stream(ids, from, Math.min(ids.length, from + limit)).boxed().toList();
+    }
+}
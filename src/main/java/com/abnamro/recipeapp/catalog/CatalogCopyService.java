@@ -0,0 +1,258 @@
+package com.abnamro.recipeapp.catalog;
+
+import com.abnamro.recipeapp.event.CatalogLoadedEvent;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+@Service
+public class CatalogCopyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogCopyService.class);
+
+    static final String INGREDIENTS = "ingredients";
+    static final String RECIPES = "recipes";
+    static final String RECIPE_INGREDIENTS = "recipe_ingredients";
+
+    // Must match the INCREMENT BY of the id sequences: every nextval reserves a block of this many ids (pooled-lo).
+    private static final int ID_BLOCK_SIZE = 50;
+
+    private static final String CREATE_STAGING_TABLES = """
+            CREATE TEMP TABLE stage_ingredient (source_id INTEGER, name VARCHAR(255)) ON COMMIT DROP;
+            CREATE TEMP TABLE stage_recipe (source_id INTEGER, name VARCHAR(255), instructions TEXT,
+                                            is_vegetarian BOOLEAN, servings INTEGER) ON COMMIT DROP;
+            CREATE TEMP TABLE stage_recipe_ingredient (recipe_source_id INTEGER, ingredient_source_id INTEGER,
+                                                       amount DOUBLE PRECISION, unit VARCHAR(255)) ON COMMIT DROP;
+            """;
+
+    private static final String CLEAN_STAGED_INGREDIENTS = """
+            DELETE FROM stage_ingredient WHERE source_id IS NULL OR name IS NULL OR trim(name) = '';
+            DELETE FROM stage_ingredient a USING stage_ingredient b WHERE a.source_id = b.source_id AND a.ctid > b.ctid;
+            """;
+
+    private static final String CLEAN_STAGED_RECIPES = """
+            DELETE FROM stage_recipe
+            WHERE source_id IS NULL OR name IS NULL OR instructions IS NULL OR servings IS NULL OR servings <= 0;
+            DELETE FROM stage_recipe a USING stage_recipe b WHERE a.source_id = b.source_id AND a.ctid > b.ctid;
+            DELETE FROM stage_recipe a USING stage_recipe b WHERE a.name = b.name AND a.ctid > b.ctid;
+            DELETE FROM stage_recipe_ingredient s
+            WHERE s.amount IS NULL OR s.amount <= 0 OR s.unit IS NULL
+               OR NOT EXISTS (SELECT 1 FROM stage_recipe r WHERE r.source_id = s.recipe_source_id)
+               OR NOT EXISTS (SELECT 1 FROM ingredient_id_map m WHERE m.source_id = s.ingredient_source_id);
+            DELETE FROM stage_recipe_ingredient a USING stage_recipe_ingredient b
+            WHERE a.recipe_source_id = b.recipe_source_id AND a.ingredient_source_id = b.ingredient_source_id
+              AND a.ctid > b.ctid;
+            DELETE FROM stage_recipe r
+            WHERE NOT EXISTS (SELECT 1 FROM stage_recipe_ingredient s WHERE s.recipe_source_id = r.source_id);
+            """;
+
+    // Numbers the rows of a source and hands out ids from as few sequence blocks as possible:
+    // %1$s target table, %2$s source, %3$s ordering key, %4$s sequence, %5$d block size.
+    private static final String ALLOCATE_IDS = """
+            CREATE TEMP TABLE %1$s ON COMMIT DROP AS
+            WITH numbered AS (
+                SELECT src.*, row_number() OVER (ORDER BY %3$s) - 1 AS rn FROM %2$s
+            ), blocks AS (
+                SELECT row_number() OVER () - 1 AS block, nextval('%4$s') AS lo
+                FROM generate_series(1, ceil((SELECT count(*) FROM %2$s) / %5$d.0)::int)
+            )
+            SELECT n.*, (b.lo + n.rn %% %5$d)::int AS id FROM numbered n JOIN blocks b ON b.block = n.rn / %5$d
+            """;
+
+    private static final String NEW_INGREDIENTS = """
+            (SELECT DISTINCT s.name FROM stage_ingredient s
+             WHERE NOT EXISTS (SELECT 1 FROM ingredient i WHERE i.name = s.name)) AS src""";
+
+    private static final String INSERT_INGREDIENTS = """
+            INSERT INTO ingredient (ingredient_id, name)
+            SELECT id, name FROM new_ingredient
+            ON CONFLICT (name) DO NOTHING
+            """;
+
+    private static final String MAP_INGREDIENT_IDS = """
+            CREATE TEMP TABLE ingredient_id_map ON COMMIT DROP AS
+            SELECT s.source_id, i.ingredient_id FROM stage_ingredient s JOIN ingredient i ON i.name = s.name
+            """;
+
+    // Recipes are matched by name, so loading the same catalog again replaces recipes instead of adding them.
+    private static final String MAP_EXISTING_RECIPE_IDS = """
+            CREATE TEMP TABLE existing_recipe_id_map ON COMMIT DROP AS
+            SELECT s.source_id, min(r.recipe_id) AS id FROM stage_recipe s JOIN recipe r ON r.name = s.name
+            GROUP BY s.source_id
+            """;
+
+    private static final String NEW_RECIPES = """
+            (SELECT s.* FROM stage_recipe s
+             WHERE NOT EXISTS (SELECT 1 FROM existing_recipe_id_map e WHERE e.source_id = s.source_id)) AS src""";
+
+    private static final String INSERT_RECIPES = """
+            INSERT INTO recipe (recipe_id, name, instructions, is_vegetarian, servings)
+            SELECT id, name, instructions, is_vegetarian, servings FROM new_recipe
+            """;
+
+    private static final String MAP_RECIPE_IDS = """
+            CREATE TEMP TABLE recipe_id_map ON COMMIT DROP AS
+            SELECT source_id, id FROM existing_recipe_id_map
+            UNION ALL
+            SELECT source_id, id FROM new_recipe
+            """;
+
+    // Two source ingredients with the same name map to one ingredient, which a recipe may only use once.
+    private static final String MAP_RECIPE_INGREDIENTS = """
+            CREATE TEMP TABLE staged_recipe_ingredient ON COMMIT DROP AS
+            SELECT DISTINCT ON (r.id, m.ingredient_id) r.id AS recipe_id, m.ingredient_id, s.amount, s.unit
+            FROM stage_recipe_ingredient s
+            JOIN recipe_id_map r ON r.source_id = s.recipe_source_id
+            JOIN ingredient_id_map m ON m.source_id = s.ingredient_source_id
+            ORDER BY r.id, m.ingredient_id, s.ctid
+            """;
+
+    // Existing recipes whose columns or ingredients differ from the catalog; unchanged ones keep their version.
+    private static final String FIND_CHANGED_RECIPES = """
+            CREATE TEMP TABLE changed_recipe ON COMMIT DROP AS
+            SELECT e.id, s.instructions, s.is_vegetarian, s.servings
+            FROM existing_recipe_id_map e
+            JOIN stage_recipe s ON s.source_id = e.source_id
+            JOIN recipe r ON r.recipe_id = e.id
+            WHERE (r.instructions, r.is_vegetarian, r.servings) IS DISTINCT FROM (s.instructions, s.is_vegetarian, s.servings)
+               OR EXISTS ((SELECT ri.ingredient_id, ri.amount, ri.unit FROM recipe_ingredients ri WHERE ri.recipe_id = e.id
+                           EXCEPT
+                           SELECT l.ingredient_id, l.amount, l.unit FROM staged_recipe_ingredient l WHERE l.recipe_id = e.id)
+                          UNION ALL
+                          (SELECT l.ingredient_id, l.amount, l.unit FROM staged_recipe_ingredient l WHERE l.recipe_id = e.id
+                           EXCEPT
+                           SELECT ri.ingredient_id, ri.amount, ri.unit FROM recipe_ingredients ri WHERE ri.recipe_id = e.id))
+            """;
+
+    private static final String UPDATE_RECIPES = """
+            UPDATE recipe r
+            SET instructions = c.instructions, is_vegetarian = c.is_vegetarian, servings = c.servings,
+                version = r.version + 1, updated_at = now()
+            FROM changed_recipe c
+            WHERE r.recipe_id = c.id
+            """;
+
+    private static final String DELETE_CHANGED_RECIPE_INGREDIENTS = """
+            DELETE FROM recipe_ingredients WHERE recipe_id IN (SELECT id FROM changed_recipe)
+            """;
+
+    private static final String NEW_RECIPE_INGREDIENTS = """
+            (SELECT l.* FROM staged_recipe_ingredient l
+             WHERE l.recipe_id IN (SELECT id FROM new_recipe UNION ALL SELECT id FROM changed_recipe)) AS src""";
+
+    private static final String INSERT_RECIPE_INGREDIENTS = """
+            INSERT INTO recipe_ingredients (recipe_ingredient_id, recipe_id, ingredient_id, amount, unit)
+            SELECT id, recipe_id, ingredient_id, amount, unit FROM recipe_ingredient_id_map
+            """;
+
+    private static final String EXPORT_INGREDIENTS =
+            "SELECT ingredient_id, name FROM ingredient ORDER BY ingredient_id";
+    private static final String EXPORT_RECIPES =
+            "SELECT recipe_id, name, instructions, is_vegetarian, servings FROM recipe ORDER BY recipe_id";
+    private static final String EXPORT_RECIPE_INGREDIENTS =
+            "SELECT recipe_id, ingredient_id, amount, unit FROM recipe_ingredients ORDER BY recipe_id, ingredient_id";
+
+    private final DataSource dataSource;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public CatalogCopyService(DataSource dataSource, ApplicationEventPublisher eventPublisher) {
+        this.dataSource = dataSource;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Transactional
+    public CatalogLoadResult load(Path directory, CatalogFormat format) throws SQLException, IOException {
+        logger.info("Loading {} catalog from {}", format, directory);
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try (Statement statement = connection.createStatement()) {
+            CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+            statement.execute(CREATE_STAGING_TABLES);
+            long ingredientsRead = copyIn(copyManager, "stage_ingredient (source_id, name)",
+                    directory.resolve(format.fileName(INGREDIENTS)), format);
+            long recipesRead = copyIn(copyManager, "stage_recipe (source_id, name, instructions, is_vegetarian, servings)",
+                    directory.resolve(format.fileName(RECIPES)), format);
+            long recipeIngredientsRead = copyIn(copyManager, "stage_recipe_ingredient (recipe_source_id, ingredient_source_id, amount, unit)",
+                    directory.resolve(format.fileName(RECIPE_INGREDIENTS)), format);
+
+            statement.execute(CLEAN_STAGED_INGREDIENTS);
+            statement.execute(allocateIds("new_ingredient", NEW_INGREDIENTS, "src.name", "ingredient_ingredient_id_seq"));
+            long ingredientsCreated = statement.executeUpdate(INSERT_INGREDIENTS);
+            statement.execute(MAP_INGREDIENT_IDS);
+
+            statement.execute(CLEAN_STAGED_RECIPES);
+            statement.execute(MAP_EXISTING_RECIPE_IDS);
+            statement.execute(allocateIds("new_recipe", NEW_RECIPES, "src.source_id", "recipe_recipe_id_seq"));
+            long recipesCreated = statement.executeUpdate(INSERT_RECIPES);
+            statement.execute(MAP_RECIPE_IDS);
+            statement.execute(MAP_RECIPE_INGREDIENTS);
+            statement.execute(FIND_CHANGED_RECIPES);
+            long recipesUpdated = statement.executeUpdate(UPDATE_RECIPES);
+            statement.executeUpdate(DELETE_CHANGED_RECIPE_INGREDIENTS);
+            statement.execute(allocateIds("recipe_ingredient_id_map", NEW_RECIPE_INGREDIENTS,
+                    "src.recipe_id, src.ingredient_id", "recipe_ingredients_recipe_ingredient_id_seq"));
+            long recipeIngredientsLoaded = statement.executeUpdate(INSERT_RECIPE_INGREDIENTS);
+
+            CatalogLoadResult result = new CatalogLoadResult(ingredientsRead, ingredientsCreated, recipesRead, recipesCreated,
+                    recipesUpdated, recipeIngredientsRead, recipeIngredientsLoaded);
+            // Running nodes hear about the load only if it commits.
+            eventPublisher.publishEvent(new CatalogLoadedEvent(recipesCreated, recipesUpdated));
+            logger.info("Catalog loaded: {}", result);
+            return result;
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public CatalogExportResult export(Path directory, CatalogFormat format) throws SQLException, IOException {
+        logger.info("Exporting {} catalog to {}", format, directory);
+        Files.createDirectories(directory);
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+            CatalogExportResult result = new CatalogExportResult(
+                    copyOut(copyManager, EXPORT_INGREDIENTS, directory.resolve(format.fileName(INGREDIENTS)), format),
+                    copyOut(copyManager, EXPORT_RECIPES, directory.resolve(format.fileName(RECIPES)), format),
+                    copyOut(copyManager, EXPORT_RECIPE_INGREDIENTS, directory.resolve(format.fileName(RECIPE_INGREDIENTS)), format));
+            logger.info("Catalog exported: {}", result);
+            return result;
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    private long copyIn(CopyManager copyManager, String table, Path file, CatalogFormat format) throws SQLException, IOException {
+        try (InputStream input = Files.newInputStream(file)) {
+            long rows = copyManager.copyIn("COPY " + table + " FROM STDIN WITH (" + format.copyOptions() + ")", input);
+            logger.info("Staged {} rows from {}", rows, file);
+            return rows;
+        }
+    }
+
+    private long copyOut(CopyManager copyManager, String query, Path file, CatalogFormat format) throws SQLException, IOException {
+        try (OutputStream output = Files.newOutputStream(file)) {
+            long rows = copyManager.copyOut("COPY (" + query + ") TO STDOUT WITH (" + format.copyOptions() + ")", output);
+            logger.info("Exported {} rows to {}", rows, file);
+            return rows;
+        }
+    }
+
+    private static String allocateIds(String table, String source, String orderBy, String sequence) {
+        return ALLOCATE_IDS.formatted(table, source, orderBy, sequence, ID_BLOCK_SIZE);
+    }
+}
@@ -0,0 +1,7 @@
+package com.abnamro.recipeapp.catalog;
+
+public record CatalogExportResult(
+        long ingredients,
+        long recipes,
+        long recipeIngredients
+) {}
@@ -0,0 +1,31 @@
+package com.abnamro.recipeapp.catalog;
+
+public enum CatalogFormat {
+    CSV("csv", "FORMAT csv, HEADER true"),
+    TSV("tsv", "FORMAT text, HEADER true");
+
+    private final String extension;
+    private final String copyOptions;
+
+    CatalogFormat(String extension, String copyOptions) {
+        this.extension = extension;
+        this.copyOptions = copyOptions;
+    }
+
+    public String fileName(String table) {
+        return table + "." + extension;
+    }
+
+    public String copyOptions() {
+        return copyOptions;
+    }
+
+    public static CatalogFormat from(String format) {
+        for (CatalogFormat value : values()) {
+            if (value.name().equalsIgnoreCase(format)) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Unknown catalog format: " + format);
+    }
+}
@@ -0,0 +1,11 @@
+package com.abnamro.recipeapp.catalog;
+
+public record CatalogLoadResult(
+        long ingredientsRead,
+        long ingredientsCreated,
+        long recipesRead,
+        long recipesCreated,
+        long recipesUpdated,
+        long recipeIngredientsRead,
+        long recipeIngredientsLoaded
+) {}
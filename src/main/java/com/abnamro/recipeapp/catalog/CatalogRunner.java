@@ -0,0 +1,45 @@
+package com.abnamro.recipeapp.catalog;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.util.List;
+
+@Component
+@Profile("catalog")
+public class CatalogRunner implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogRunner.class);
+
+    private final CatalogCopyService catalogCopyService;
+
+    public CatalogRunner(CatalogCopyService catalogCopyService) {
+        this.catalogCopyService = catalogCopyService;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        CatalogFormat format = CatalogFormat.from(option(args, "catalog.format", "csv"));
+        String loadDirectory = option(args, "catalog.load", null);
+        String exportDirectory = option(args, "catalog.export", null);
+        if (loadDirectory == null && exportDirectory == null) {
+            throw new IllegalArgumentException("Pass --catalog.load=<directory> and/or --catalog.export=<directory>");
+        }
+        if (loadDirectory != null) {
+            logger.info("Catalog load result: {}", catalogCopyService.load(Path.of(loadDirectory), format));
+        }
+        if (exportDirectory != null) {
+            logger.info("Catalog export result: {}", catalogCopyService.export(Path.of(exportDirectory), format));
+        }
+    }
+
+    private static String option(ApplicationArguments args, String name, String defaultValue) {
+        List<String> values = args.getOptionValues(name);
+        return values == null || values.isEmpty() ? defaultValue : values.getLast();
+    }
+}
@@ -1,11 +1,14 @@
 package com.abnamro.recipeapp.controller;
 
+import com.abnamro.recipeapp.dto.PageDto;
 import com.abnamro.recipeapp.dto.ingredient.CreateIngredientDto;
 import com.abnamro.recipeapp.dto.ingredient.IngredientDto;
+import com.abnamro.recipeapp.dto.ingredient.IngredientUpsertDto;
 import com.abnamro.recipeapp.service.IngredientService;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -13,10 +16,13 @@ import org.springframework.web.bind.annotation.*;
 import java.util.List;
 
 @RestController
+@Profile("!catalog")
 @RequestMapping("/api/v1/ingredients")
 @Tag(name = "Ingredients", description = "Operations related to ingredients")
 public class IngredientController {
 
+    private static final String DEFAULT_PAGE_LIMIT = "20";
+
     private final IngredientService ingredientService;
     private static final Logger logger = LoggerFactory.getLogger(IngredientController.class);
 
@@ -32,6 +38,14 @@ public class IngredientController {
         return new ResponseEntity<>(createdIngredient, HttpStatus.CREATED);
     }
 
+    @PostMapping("/bulk")
+    public List<IngredientUpsertDto> createIngredients(@RequestBody List<String> names) {
+        logger.info("Request to create ingredients: {}", names);
+        List<IngredientUpsertDto> ingredients = ingredientService.addIngredients(names);
+        logger.info("Ingredients created or found: {}", ingredients);
+        return ingredients;
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<IngredientDto> updateIngredient(@RequestBody IngredientDto ingredient) {
         logger.info("Request to update ingredient with id {}: {}", ingredient.id(), ingredient);
@@ -65,9 +79,11 @@ public class IngredientController {
     }
 
     @GetMapping
-    public ResponseEntity<List<IngredientDto>> getAllIngredients() {
+    public ResponseEntity<PageDto<IngredientDto>> getAllIngredients(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = DEFAULT_PAGE_LIMIT) int limit) {
         logger.info("Request to get all ingredients");
-        List<IngredientDto> ingredients = ingredientService.getAllIngredients();
+        PageDto<IngredientDto> ingredients = ingredientService.getAllIngredients(cursor, limit);
         logger.info("Retrieved ingredients: {}", ingredients);
         return ResponseEntity.ok(ingredients);
     }
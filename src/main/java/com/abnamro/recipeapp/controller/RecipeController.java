@@ -1,28 +1,56 @@
 package com.abnamro.recipeapp.controller;
 
+import com.abnamro.recipeapp.dto.PageDto;
+import com.abnamro.recipeapp.dto.Versioned;
 import com.abnamro.recipeapp.dto.recipe.CreateRecipeDto;
+import com.abnamro.recipeapp.dto.recipe.MakeableRecipesRequestDto;
+import com.abnamro.recipeapp.dto.recipe.RecipeBatchDto;
 import com.abnamro.recipeapp.dto.recipe.RecipeDto;
+import com.abnamro.recipeapp.dto.recipe.RecipeFacetsDto;
+import com.abnamro.recipeapp.dto.recipe.RecipeIdsRequestDto;
+import com.abnamro.recipeapp.dto.recipe.RecipePatchDto;
 import com.abnamro.recipeapp.dto.recipe.RecipeRequestDto;
+import com.abnamro.recipeapp.dto.recipe.SimilarRecipeDto;
+import com.abnamro.recipeapp.service.RecipeImportService;
 import com.abnamro.recipeapp.service.RecipeService;
+import jakarta.servlet.http.HttpServletRequest;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
 @RestController
+@Profile("!catalog")
 @RequestMapping("/api/v1/recipes")
 @Tag(name = "Recipes", description = "Operations related to recipes")
 public class RecipeController {
 
+    private static final String DEFAULT_PAGE_LIMIT = "20";
+    private static final String DEFAULT_SIMILARITY_LIMIT = "10";
+    private static final String DEFAULT_TOP_INGREDIENTS = "10";
+    private static final String DEFAULT_VIEW = "full";
+    private static final String MERGE_PATCH_JSON = "application/merge-patch+json";
+    private static final String ANY_ETAG = "*";
+    // Never equal to a stored version, so an If-Match naming anything else fails the precondition.
+    private static final long UNMATCHED_VERSION = -1;
+
     private final RecipeService recipeService;
+    private final RecipeImportService recipeImportService;
     private static final Logger logger = LoggerFactory.getLogger(RecipeController.class);
 
-    public RecipeController(RecipeService recipeService) {
+    public RecipeController(RecipeService recipeService, RecipeImportService recipeImportService) {
         this.recipeService = recipeService;
+        this.recipeImportService = recipeImportService;
     }
 
     @PostMapping
@@ -33,12 +61,29 @@ public class RecipeController {
         return new ResponseEntity<>(createdRecipe, HttpStatus.CREATED);
     }
 
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> importRecipes(HttpServletRequest request) {
+        logger.info("Request to bulk import recipes");
+        StreamingResponseBody results = output -> recipeImportService.importRecipes(request.getInputStream(), output);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(results);
+    }
+
     @PutMapping("/{id}")
-    public ResponseEntity<RecipeDto> updateRecipe(@RequestBody RecipeDto recipe) {
-        logger.info("Request to update recipe with id {}: {}", recipe.id(), recipe);
-        RecipeDto updatedRecipe = recipeService.updateRecipe(recipe);
+    public ResponseEntity<RecipeDto> updateRecipe(@RequestBody RecipeDto recipe,
+                                                  @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        logger.info("Request to update recipe with id {} if matching {}: {}", recipe.id(), ifMatch, recipe);
+        Versioned<RecipeDto> updatedRecipe = recipeService.updateRecipe(recipe, expectedVersion(ifMatch));
         logger.info("Recipe updated successfully: {}", updatedRecipe);
-        return ResponseEntity.ok(updatedRecipe);
+        return ResponseEntity.ok().eTag(eTag(updatedRecipe.version())).body(updatedRecipe.value());
+    }
+
+    @PatchMapping(value = "/{id}", consumes = {MERGE_PATCH_JSON, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<RecipeDto> patchRecipe(@PathVariable Integer id, @RequestBody RecipePatchDto patch,
+                                                 @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        logger.info("Request to patch recipe with id {} if matching {}: {}", id, ifMatch, patch);
+        Versioned<RecipeDto> patchedRecipe = recipeService.patchRecipe(id, patch, expectedVersion(ifMatch));
+        logger.info("Recipe patched successfully: {}", patchedRecipe);
+        return ResponseEntity.ok().eTag(eTag(patchedRecipe.version())).body(patchedRecipe.value());
     }
 
     @DeleteMapping("/{id}")
@@ -49,6 +94,45 @@ public class RecipeController {
         return ResponseEntity.noContent().build();
     }
 
+    @PostMapping("/by-ids")
+    public RecipeBatchDto findRecipesByIds(@RequestBody RecipeIdsRequestDto request) {
+        logger.info("Request to get recipes by ids {}", request.ids());
+        RecipeBatchDto recipes = recipeService.getRecipesByIds(request.ids());
+        logger.info("Retrieved recipes: {}", recipes);
+        return recipes;
+    }
+
+    @PostMapping("/makeable")
+    public PageDto<RecipeDto> findMakeableRecipes(
+            @RequestBody MakeableRecipesRequestDto request,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = DEFAULT_PAGE_LIMIT) int limit) {
+        logger.info("Request to find recipes makeable from ingredients {} missing at most {}", request.ingredientIds(), request.maxMissing());
+        PageDto<RecipeDto> recipes = recipeService.findMakeableRecipes(request.ingredientIds(), request.maxMissing(), cursor, limit);
+        logger.info("Retrieved recipes: {}", recipes);
+        return recipes;
+    }
+
+    @GetMapping("/name/search")
+    public List<RecipeDto> searchRecipesByName(
+            @RequestParam("q") String query,
+            @RequestParam(defaultValue = DEFAULT_SIMILARITY_LIMIT) int limit) {
+        logger.info("Request to search recipes by name similar to {}", query);
+        List<RecipeDto> recipes = recipeService.searchByName(query, limit);
+        logger.info("Retrieved recipes: {}", recipes);
+        return recipes;
+    }
+
+    @GetMapping("/{id}/similar")
+    public List<SimilarRecipeDto> getSimilarRecipes(
+            @PathVariable Integer id,
+            @RequestParam(defaultValue = DEFAULT_SIMILARITY_LIMIT) int k) {
+        logger.info("Request to get {} recipes similar to recipe with id {}", k, id);
+        List<SimilarRecipeDto> recipes = recipeService.findSimilarRecipes(id, k);
+        logger.info("Retrieved similar recipes: {}", recipes);
+        return recipes;
+    }
+
     @GetMapping("/name/{name}")
     public RecipeDto getRecipeByName(@PathVariable String name) {
         logger.info("Request to get recipe by name {}", name);
@@ -57,66 +141,142 @@ public class RecipeController {
         return recipe;
     }
 
-    @GetMapping("/{id}")
-    public RecipeDto getRecipeById(@PathVariable Integer id) {
+    // A revalidation only needs the version, so a 304 never loads the ingredients or serializes the recipe.
+    // The body is the cached JSON, written as is.
+    @GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getRecipeById(@PathVariable Integer id, WebRequest request) {
         logger.info("Request to get recipe by id {}", id);
-        RecipeDto recipe = recipeService.getRecipeById(id);
-        logger.info("Retrieved recipe:{}",recipe);
-        return recipe;
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            String eTag = eTag(recipeService.getRecipeVersion(id));
+            // Also writes the ETag header of the 304 response.
+            if (request.checkNotModified(eTag)) {
+                logger.info("Recipe with id {} not modified since {}", id, eTag);
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+            }
+        }
+        Versioned<byte[]> recipe = recipeService.getRecipeJsonById(id);
+        logger.info("Retrieved recipe with id {} at version {}", id, recipe.version());
+        return ResponseEntity.ok()
+                .eTag(eTag(recipe.version()))
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(recipe.value());
     }
 
     @GetMapping("/vegetarian")
-    public List<RecipeDto> getVegetarianRecipes() {
+    public PageDto<RecipeDto> getVegetarianRecipes(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = DEFAULT_PAGE_LIMIT) int limit) {
         logger.info("Request to get vegetarian recipes");
-        List<RecipeDto> recipes = recipeService.findByVegetarianRecipes(true);
+        PageDto<RecipeDto> recipes = recipeService.findByVegetarianRecipes(true, cursor, limit);
         logger.info("Retrieved vegetarian recipes: {}", recipes);
         return recipes;
     }
 
     @GetMapping("/non-vegetarian")
-    public List<RecipeDto> getNonVegetarianRecipes() {
+    public PageDto<RecipeDto> getNonVegetarianRecipes(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = DEFAULT_PAGE_LIMIT) int limit) {
         logger.info("Request to get non-vegetarian recipes");
-        List<RecipeDto> recipes = recipeService.findByVegetarianRecipes(false);
+        PageDto<RecipeDto> recipes = recipeService.findByVegetarianRecipes(false, cursor, limit);
         logger.info("Retrieved non-vegetarian recipes: {}", recipes);
         return recipes;
     }
 
     @GetMapping("/servings/{servings}")
-    public List<RecipeDto> getRecipesByServings(@PathVariable Integer servings) {
+    public PageDto<RecipeDto> getRecipesByServings(
+            @PathVariable Integer servings,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = DEFAULT_PAGE_LIMIT) int limit) {
         logger.info("Request to get recipes by servings {}", servings);
-        List<RecipeDto> recipes = recipeService.findByServings(servings);
+        PageDto<RecipeDto> recipes = recipeService.findByServings(servings, cursor, limit);
         logger.info("Retrieved recipes: {}", recipes);
         return recipes;
     }
 
     @GetMapping("/instruction/{text}")
-    public List<RecipeDto> getRecipesByInstructions(@PathVariable String text) {
+    public PageDto<RecipeDto> getRecipesByInstructions(
+            @PathVariable String text,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = DEFAULT_PAGE_LIMIT) int limit) {
         logger.info("Request to get recipes by instruction containing {}", text);
-        List<RecipeDto> recipes = recipeService.findByInstructionsContaining(text);
+        PageDto<RecipeDto> recipes = recipeService.findByInstructionsContaining(text, cursor, limit);
+        logger.info("Retrieved recipes: {}", recipes);
+        return recipes;
+    }
+
+    @GetMapping(params = "ids")
+    public RecipeBatchDto getRecipesByIds(@RequestParam List<Integer> ids) {
+        logger.info("Request to get recipes by ids {}", ids);
+        RecipeBatchDto recipes = recipeService.getRecipesByIds(ids);
         logger.info("Retrieved recipes: {}", recipes);
         return recipes;
     }
 
     @GetMapping
-    public List<RecipeDto> getAllRecipes() {
-        logger.info("Request to get all recipes");
-        List<RecipeDto> recipes = recipeService.getAllRecipes();
+    public PageDto<?> getAllRecipes(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = DEFAULT_PAGE_LIMIT) int limit,
+            @RequestParam(defaultValue = DEFAULT_VIEW) String view) {
+        logger.info("Request to get all recipes with view {}", view);
+        PageDto<?> recipes = RecipeView.from(view) == RecipeView.SUMMARY
+                ? recipeService.getAllRecipeSummaries(cursor, limit)
+                : recipeService.getAllRecipes(cursor, limit);
         logger.info("Retrieved recipes: {}", recipes);
         return recipes;
     }
 
     @GetMapping("/search")
-    public ResponseEntity<List<RecipeDto>> searchRecipes(
+    public ResponseEntity<PageDto<?>> searchRecipes(
             @RequestParam(required = false) Boolean vegetarian,
             @RequestParam(required = false) Integer servings,
             @RequestParam(required = false) List<Integer> includeIngredient,
             @RequestParam(required = false) List<Integer> excludeIngredient,
-            @RequestParam(required = false) String instruction) {
+            @RequestParam(required = false) String instruction,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = DEFAULT_PAGE_LIMIT) int limit,
+            @RequestParam(defaultValue = DEFAULT_VIEW) String view) {
 
-        logger.info("Request to search recipes with parameters - vegetarian: {}, servings: {}, includeIngredients: {}, excludeIngredients: {}, instruction: {}",
-                vegetarian, servings, includeIngredient, excludeIngredient, instruction);
-        List<RecipeDto> recipes = recipeService.searchRecipes(vegetarian, servings, includeIngredient, excludeIngredient, instruction);
+        logger.info("Request to search recipes with parameters - vegetarian: {}, servings: {}, includeIngredients: {}, excludeIngredients: {}, instruction: {}, view: {}",
+                vegetarian, servings, includeIngredient, excludeIngredient, instruction, view);
+        PageDto<?> recipes = RecipeView.from(view) == RecipeView.SUMMARY
+                ? recipeService.searchRecipeSummaries(vegetarian, servings, includeIngredient, excludeIngredient, instruction, cursor, limit)
+                : recipeService.searchRecipes(vegetarian, servings, includeIngredient, excludeIngredient, instruction, cursor, limit);
         logger.info("Retrieved recipes: {}", recipes);
         return ResponseEntity.ok(recipes);
     }
-}
\ No newline at end of file
+
+    @GetMapping("/search/facets")
+    public RecipeFacetsDto searchRecipeFacets(
+            @RequestParam(required = false) Boolean vegetarian,
+            @RequestParam(required = false) Integer servings,
+            @RequestParam(required = false) List<Integer> includeIngredient,
+            @RequestParam(required = false) List<Integer> excludeIngredient,
+            @RequestParam(required = false) String instruction,
+            @RequestParam(defaultValue = DEFAULT_TOP_INGREDIENTS) int topIngredients) {
+        logger.info("Request to count search facets with parameters - vegetarian: {}, servings: {}, includeIngredients: {}, excludeIngredients: {}, instruction: {}",
+                vegetarian, servings, includeIngredient, excludeIngredient, instruction);
+        RecipeFacetsDto facets = recipeService.searchFacets(vegetarian, servings, includeIngredient, excludeIngredient, instruction, topIngredients);
+        logger.info("Retrieved search facets: {}", facets);
+        return facets;
+    }
+
+    private static String eTag(long version) {
+        return "\"" + version + "\"";
+    }
+
+    private static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals(ANY_ETAG)) {
+            return null;
+        }
+        String eTag = ifMatch.trim();
+        if (eTag.length() < 3 || !eTag.startsWith("\"") || !eTag.endsWith("\"")) {
+            return UNMATCHED_VERSION;
+        }
+        try {
+            return Long.parseLong(eTag.substring(1, eTag.length() - 1));
+        } catch (NumberFormatException e) {
+            return UNMATCHED_VERSION;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.abnamro.recipeapp.controller;
+
+import com.abnamro.exception.BadRequestException;
+
+enum RecipeView {
+    FULL,
+    SUMMARY;
+
+    static RecipeView from(String view) {
+        for (RecipeView value : values()) {
+            if (value.name().equalsIgnoreCase(view)) {
+                return value;
+            }
+        }
+        throw new BadRequestException("Unknown view: " + view);
+    }
+}
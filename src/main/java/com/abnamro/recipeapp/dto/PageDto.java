@@ -0,0 +1,6 @@
+package com.abnamro.recipeapp.dto;
+
+import java.util.List;
+
+public record PageDto<T>(List<T> items, String nextCursor) {
+}
@@ -0,0 +1,4 @@
+package com.abnamro.recipeapp.dto;
+
+public record Versioned<T>(T value, long version) {
+}
@@ -0,0 +1,7 @@
+package com.abnamro.recipeapp.dto.ingredient;
+
+public record IngredientCountDto(
+        Integer id,
+        String name,
+        long count
+) {}
@@ -0,0 +1,7 @@
+package com.abnamro.recipeapp.dto.ingredient;
+
+public record IngredientUpsertDto(
+        int id,
+        String name,
+        boolean created
+) {}
@@ -0,0 +1,8 @@
+package com.abnamro.recipeapp.dto.recipe;
+
+public record IngredientOperationDto(
+        String op,
+        Integer ingredientId,
+        Double amount,
+        String unit
+) {}
@@ -0,0 +1,8 @@
+package com.abnamro.recipeapp.dto.recipe;
+
+import java.util.List;
+
+public record RecipeBatchDto(
+        List<RecipeDto> items,
+        List<Integer> missingIds
+) {}
@@ -0,0 +1,13 @@
+package com.abnamro.recipeapp.dto.recipe;
+
+import com.abnamro.recipeapp.dto.ingredient.IngredientCountDto;
+
+import java.util.List;
+import java.util.Map;
+
+public record RecipeFacetsDto(
+        long vegetarian,
+        long nonVegetarian,
+        Map<Integer, Long> servings,
+        List<IngredientCountDto> topIngredients
+) {}
@@ -0,0 +1,7 @@
+package com.abnamro.recipeapp.dto.recipe;
+
+import java.util.List;
+
+public record RecipeIdsRequestDto(
+        List<Integer> ids
+) {}
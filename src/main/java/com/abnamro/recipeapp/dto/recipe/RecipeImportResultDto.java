@@ -0,0 +1,8 @@
+package com.abnamro.recipeapp.dto.recipe;
+
+public record RecipeImportResultDto(
+        long line,
+        Integer id,
+        String status,
+        String error
+) {}
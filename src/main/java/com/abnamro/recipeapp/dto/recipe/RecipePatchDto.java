@@ -0,0 +1,11 @@
+package com.abnamro.recipeapp.dto.recipe;
+
+import java.util.List;
+
+public record RecipePatchDto(
+        String name,
+        String instructions,
+        Boolean isVegetarian,
+        Integer servings,
+        List<IngredientOperationDto> ingredientOperations
+) {}
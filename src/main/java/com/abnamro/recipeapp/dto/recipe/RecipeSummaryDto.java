@@ -0,0 +1,9 @@
+package com.abnamro.recipeapp.dto.recipe;
+
+public record RecipeSummaryDto(
+        int id,
+        String name,
+        boolean isVegetarian,
+        int servings,
+        long ingredientCount
+) {}
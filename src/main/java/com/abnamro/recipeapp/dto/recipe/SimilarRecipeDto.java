@@ -0,0 +1,6 @@
+package com.abnamro.recipeapp.dto.recipe;
+
+public record SimilarRecipeDto(
+        RecipeDto recipe,
+        double similarity
+) {}
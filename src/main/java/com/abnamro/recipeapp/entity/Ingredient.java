@@ -1,21 +1,39 @@
 package com.abnamro.recipeapp.entity;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.UpdateTimestamp;
 
+import java.time.Instant;
 import java.util.List;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Ingredient.CACHE_REGION)
 @Table(name = "ingredient")
 public class Ingredient {
 
+    public static final String CACHE_REGION = "ingredient";
+    public static final String BY_NAME_QUERY_REGION = "ingredient-by-name";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ingredient_id_seq")
+    @SequenceGenerator(name = "ingredient_id_seq", sequenceName = "ingredient_ingredient_id_seq", allocationSize = 50)
     @Column(name = "ingredient_id", unique = true, updatable = false, nullable = false)
     private Integer id;
 
     @Column(name = "name", unique = true, nullable = false)
     private String name;
 
+    @Version
+    @Column(name = "version", nullable = false)
+    private long version;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
     @OneToMany(mappedBy = "ingredient", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
     private List<RecipeIngredient> recipeIngredients;
 
@@ -34,6 +52,14 @@ public class Ingredient {
         this.id = id;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
     public String getName() {
         return name;
     }
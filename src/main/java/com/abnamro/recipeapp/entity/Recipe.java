@@ -1,15 +1,29 @@
 package com.abnamro.recipeapp.entity;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.UpdateTimestamp;
 
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@DynamicUpdate
 @Table(name = "recipe")
+@NamedEntityGraph(
+        name = Recipe.WITH_INGREDIENTS_GRAPH,
+        attributeNodes = @NamedAttributeNode(value = "recipeIngredients", subgraph = "recipeIngredients.ingredient"),
+        subgraphs = @NamedSubgraph(name = "recipeIngredients.ingredient", attributeNodes = @NamedAttributeNode("ingredient"))
+)
 public class Recipe {
 
+    public static final String WITH_INGREDIENTS_GRAPH = "Recipe.withIngredients";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "recipe_id_seq")
+    @SequenceGenerator(name = "recipe_id_seq", sequenceName = "recipe_recipe_id_seq", allocationSize = 50)
     @Column(name = "recipe_id", unique = true, updatable = false, nullable = false)
     private Integer id;
 
@@ -19,14 +33,27 @@ public class Recipe {
     @Column(name = "instructions", columnDefinition = "TEXT", nullable = false)
     private String instructions;
 
+    // Generated by the database from instructions; only mapped so full-text filters can reach it.
+    @Column(name = "instructions_tsv", columnDefinition = "tsvector", insertable = false, updatable = false)
+    private String instructionsVector;
+
     @Column(name = "is_vegetarian")
     private boolean vegetarian;
 
     @Column(name = "servings")
     private int servings;
 
+    @Version
+    @Column(name = "version", nullable = false)
+    private long version;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
     @OneToMany(mappedBy = "recipe", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
-    private List<RecipeIngredient> recipeIngredients;
+    @BatchSize(size = 100)
+    private List<RecipeIngredient> recipeIngredients = new ArrayList<>();
 
     public Recipe() {
     }
@@ -47,6 +74,19 @@ public class Recipe {
         this.id = id;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    // Ingredient rows live in their own table; touching the recipe makes it dirty so its version is bumped with them.
+    public void touch() {
+        this.updatedAt = Instant.now();
+    }
+
     public String getName() {
         return name;
     }
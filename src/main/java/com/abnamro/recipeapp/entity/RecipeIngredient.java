@@ -1,8 +1,10 @@
 package com.abnamro.recipeapp.entity;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.DynamicUpdate;
 
 @Entity
+@DynamicUpdate
 @Table(name = "recipe_ingredients", uniqueConstraints = {
         @UniqueConstraint(columnNames = {"recipe_id", "ingredient_id"})
 })
@@ -10,7 +12,8 @@ public class RecipeIngredient {
 
     @Id
     @Column(name = "recipe_ingredient_id", unique = true, updatable = false, nullable = false)
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "recipe_ingredient_id_seq")
+    @SequenceGenerator(name = "recipe_ingredient_id_seq", sequenceName = "recipe_ingredients_recipe_ingredient_id_seq", allocationSize = 50)
     private Integer recipeIngredientId;
 
     @ManyToOne
@@ -0,0 +1,6 @@
+package com.abnamro.recipeapp.event;
+
+import java.util.List;
+
+public record IngredientsSavedEvent(List<Integer> ingredientIds, List<String> names) {
+}
@@ -0,0 +1,4 @@
+package com.abnamro.recipeapp.event;
+
+public record RecipeDeletedEvent(Integer recipeId) {
+}
@@ -0,0 +1,6 @@
+package com.abnamro.recipeapp.event;
+
+import java.util.List;
+
+public record RecipeSavedEvent(Integer recipeId, String name, List<Integer> ingredientIds, boolean vegetarian, int servings) {
+}
@@ -0,0 +1,232 @@
+package com.abnamro.recipeapp.index;
+
+import com.abnamro.recipeapp.event.IngredientDeletedEvent;
+import com.abnamro.recipeapp.event.RecipeDeletedEvent;
+import com.abnamro.recipeapp.event.RecipeSavedEvent;
+import com.abnamro.recipeapp.repository.RecipeIngredientRepository;
+import com.abnamro.recipeapp.repository.RecipeRepository;
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+@Component
+@Profile("!catalog")
+public class RecipeIngredientIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecipeIngredientIndex.class);
+
+    private final RecipeRepository recipeRepository;
+    private final RecipeIngredientRepository recipeIngredientRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, RoaringBitmap> recipesByIngredient = new HashMap<>();
+    // The reverse of recipesByIngredient, so a write only touches the bitmaps of the recipe's own ingredients.
+    // Sorted and distinct; RecipeSimilarityIndex reads it instead of keeping a copy.
+    private final Map<Integer, int[]> ingredientsByRecipe = new HashMap<>();
+    private final RoaringBitmap allRecipes = new RoaringBitmap();
+    private volatile boolean ready;
+
+    public RecipeIngredientIndex(RecipeRepository recipeRepository, RecipeIngredientRepository recipeIngredientRepository,
+                                 PlatformTransactionManager transactionManager) {
+        this.recipeRepository = recipeRepository;
+        this.recipeIngredientRepository = recipeIngredientRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    // The transaction is started inside the try, so a pool that cannot hand out a connection also leaves the
+    // index unavailable instead of serving the bitmaps from before the failed rebuild. Runs before
+    // RecipeSimilarityIndex, which is built from this index.
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void rebuild() {
+        logger.info("Rebuilding recipe ingredient index");
+        lock.writeLock().lock();
+        try {
+            recipesByIngredient.clear();
+            ingredientsByRecipe.clear();
+            allRecipes.clear();
+            transactionTemplate.executeWithoutResult(status -> {
+                recipeRepository.forEachId(allRecipes::add);
+                recipeIngredientRepository.forEachLink(link -> {
+                    recipesByIngredient.computeIfAbsent(link.ingredientId(), id -> new RoaringBitmap()).add(link.recipeId());
+                    ingredientsByRecipe.merge(link.recipeId(), new int[]{link.ingredientId()}, RecipeIngredientIndex::concat);
+                });
+            });
+            ingredientsByRecipe.replaceAll((recipeId, ingredientIds) -> Arrays.stream(ingredientIds).distinct().sorted().toArray());
+            allRecipes.runOptimize();
+            recipesByIngredient.values().forEach(RoaringBitmap::runOptimize);
+            ready = true;
+            logger.info("Recipe ingredient index rebuilt with {} recipes and {} ingredients",
+                    allRecipes.getCardinality(), recipesByIngredient.size());
+        } catch (RuntimeException e) {
+            ready = false;
+            logger.error("Could not rebuild recipe ingredient index, falling back to database search", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Optional<RoaringBitmap> candidates(Collection<Integer> includeIngredients, Collection<Integer> excludeIngredients) {
+        if (!ready) {
+            return Optional.empty();
+        }
+        lock.readLock().lock();
+        try {
+            RoaringBitmap candidates = includeIngredients == null || includeIngredients.isEmpty()
+                    ? allRecipes.clone()
+                    : containingAll(includeIngredients);
+            if (excludeIngredients != null) {
+                for (Integer ingredientId : excludeIngredients) {
+                    RoaringBitmap excluded = recipesByIngredient.get(ingredientId);
+                    if (excluded != null) {
+                        candidates.andNot(excluded);
+                    }
+                }
+            }
+            return Optional.of(candidates);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    int[] ingredientsOf(int recipeId) {
+        lock.readLock().lock();
+        try {
+            return ingredientsByRecipe.get(recipeId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    RoaringBitmap recipesUsing(int ingredientId) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap recipes = recipesByIngredient.get(ingredientId);
+            return recipes == null ? new RoaringBitmap() : recipes.clone();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Returns false without calling the consumer while the index is unavailable.
+    boolean forEachRecipe(BiConsumer<Integer, int[]> consumer) {
+        lock.readLock().lock();
+        try {
+            if (!ready) {
+                return false;
+            }
+            ingredientsByRecipe.forEach(consumer);
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The index is updated before RecipeSearchCache evicts, so a search reloaded after the eviction sees the write,
+    // and after RecipeSimilarityIndex, which reads the previous ingredients from here.
+    @TransactionalEventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE + 1)
+    public void onRecipeSaved(RecipeSavedEvent event) {
+        lock.writeLock().lock();
+        try {
+            removeRecipe(event.recipeId());
+            allRecipes.add(event.recipeId());
+            for (Integer ingredientId : event.ingredientIds()) {
+                recipesByIngredient.computeIfAbsent(ingredientId, id -> new RoaringBitmap()).add(event.recipeId());
+            }
+            ingredientsByRecipe.put(event.recipeId(), event.ingredientIds().stream().mapToInt(Integer::intValue).distinct().sorted().toArray());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE + 1)
+    public void onRecipeDeleted(RecipeDeletedEvent event) {
+        lock.writeLock().lock();
+        try {
+            removeRecipe(event.recipeId());
+            allRecipes.remove(event.recipeId());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE + 1)
+    public void onIngredientDeleted(IngredientDeletedEvent event) {
+        lock.writeLock().lock();
+        try {
+            RoaringBitmap recipes = recipesByIngredient.remove(event.ingredientId());
+            if (recipes != null) {
+                recipes.forEach((int recipeId) -> ingredientsByRecipe.computeIfPresent(recipeId, (id, ingredientIds) ->
+                        Arrays.stream(ingredientIds).filter(ingredientId -> ingredientId != event.ingredientId()).toArray()));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private RoaringBitmap containingAll(Collection<Integer> ingredientIds) {
+        List<RoaringBitmap> bitmaps = new ArrayList<>();
+        for (Integer ingredientId : ingredientIds) {
+            RoaringBitmap recipes = recipesByIngredient.get(ingredientId);
+            if (recipes == null) {
+                return new RoaringBitmap();
+            }
+            bitmaps.add(recipes);
+        }
+        bitmaps.sort(Comparator.comparingLong(RoaringBitmap::getLongCardinality));
+        RoaringBitmap candidates = bitmaps.get(0).clone();
+        for (int i = 1; i < bitmaps.size() && !candidates.isEmpty(); i++) {
+            candidates.and(bitmaps.get(i));
+        }
+        return candidates;
+    }
+
+    private void removeRecipe(int recipeId) {
+        int[] ingredientIds = ingredientsByRecipe.remove(recipeId);
+        if (ingredientIds == null) {
+            return;
+        }
+        for (int ingredientId : ingredientIds) {
+            RoaringBitmap recipes = recipesByIngredient.get(ingredientId);
+            if (recipes != null && recipes.checkedRemove(recipeId) && recipes.isEmpty()) {
+                recipesByIngredient.remove(ingredientId);
+            }
+        }
+    }
+
+    private static int[] concat(int[] first, int[] second) {
+        int[] both = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, both, first.length, second.length);
+        return both;
+    }
+}
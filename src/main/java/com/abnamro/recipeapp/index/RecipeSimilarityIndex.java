@@ -0,0 +1,255 @@
+package com.abnamro.recipeapp.index;
+
+import com.abnamro.recipeapp.event.IngredientDeletedEvent;
+import com.abnamro.recipeapp.event.RecipeDeletedEvent;
+import com.abnamro.recipeapp.event.RecipeSavedEvent;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Keeps only the LSH buckets; each recipe's ingredients are read from RecipeIngredientIndex.
+@Component
+@Profile("!catalog")
+public class RecipeSimilarityIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecipeSimilarityIndex.class);
+
+    // 20 bands of 3 rows put the LSH threshold around a Jaccard similarity of 0.37.
+    static final int BANDS = 20;
+    static final int ROWS = 3;
+    private static final long PRIME = (1L << 31) - 1;
+    private static final long SEED = 42L;
+
+    private static final Comparator<SimilarRecipe> BY_SIMILARITY = Comparator
+            .comparingDouble(SimilarRecipe::similarity).reversed()
+            .thenComparingInt(SimilarRecipe::recipeId);
+
+    private final RecipeIngredientIndex recipeIngredientIndex;
+
+    private final long[] hashMultipliers = new long[BANDS * ROWS];
+    private final long[] hashOffsets = new long[BANDS * ROWS];
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private List<Map<Long, RoaringBitmap>> buckets = emptyBuckets();
+    private volatile boolean ready;
+
+    public record SimilarRecipe(int recipeId, double similarity) {
+    }
+
+    public RecipeSimilarityIndex(RecipeIngredientIndex recipeIngredientIndex) {
+        this.recipeIngredientIndex = recipeIngredientIndex;
+        Random random = new Random(SEED);
+        for (int i = 0; i < hashMultipliers.length; i++) {
+            hashMultipliers[i] = 1 + random.nextInt(Integer.MAX_VALUE - 1);
+            hashOffsets[i] = random.nextInt(Integer.MAX_VALUE);
+        }
+    }
+
+    // Built into fresh buckets that only replace the current ones on success.
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        logger.info("Rebuilding recipe similarity index");
+        lock.writeLock().lock();
+        try {
+            List<Map<Long, RoaringBitmap>> next = emptyBuckets();
+            AtomicInteger recipes = new AtomicInteger();
+            boolean built = recipeIngredientIndex.forEachRecipe((recipeId, ingredients) -> {
+                addRecipe(next, recipeId, ingredients);
+                recipes.incrementAndGet();
+            });
+            if (built) {
+                buckets = next;
+                ready = true;
+                logger.info("Recipe similarity index rebuilt with {} recipes", recipes.get());
+            } else {
+                ready = false;
+                logger.error("Could not rebuild recipe similarity index, the recipe ingredient index is unavailable");
+            }
+        } catch (RuntimeException e) {
+            ready = false;
+            logger.error("Could not rebuild recipe similarity index", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Empty while either index is unavailable.
+    public Optional<List<SimilarRecipe>> findSimilar(int recipeId, int k) {
+        if (!ready || !recipeIngredientIndex.isReady()) {
+            return Optional.empty();
+        }
+        lock.readLock().lock();
+        try {
+            int[] ingredients = recipeIngredientIndex.ingredientsOf(recipeId);
+            if (ingredients == null) {
+                return Optional.of(List.of());
+            }
+            RoaringBitmap candidates = new RoaringBitmap();
+            long[] signature = signature(ingredients);
+            for (int band = 0; band < BANDS; band++) {
+                RoaringBitmap bucket = buckets.get(band).get(bandKey(signature, band));
+                if (bucket != null) {
+                    candidates.or(bucket);
+                }
+            }
+            candidates.remove(recipeId);
+
+            PriorityQueue<SimilarRecipe> top = new PriorityQueue<>(k + 1, BY_SIMILARITY.reversed());
+            IntIterator iterator = candidates.getIntIterator();
+            while (iterator.hasNext()) {
+                int candidateId = iterator.next();
+                int[] candidateIngredients = recipeIngredientIndex.ingredientsOf(candidateId);
+                double similarity = candidateIngredients == null ? 0 : jaccard(ingredients, candidateIngredients);
+                if (similarity > 0) {
+                    top.add(new SimilarRecipe(candidateId, similarity));
+                    if (top.size() > k) {
+                        top.poll();
+                    }
+                }
+            }
+            List<SimilarRecipe> similar = new ArrayList<>(top);
+            similar.sort(BY_SIMILARITY);
+            return Optional.of(similar);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Runs before RecipeIngredientIndex, so the recipe's previous ingredients can still be read from it.
+    @TransactionalEventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onRecipeSaved(RecipeSavedEvent event) {
+        lock.writeLock().lock();
+        try {
+            removeRecipe(event.recipeId(), recipeIngredientIndex.ingredientsOf(event.recipeId()));
+            addRecipe(buckets, event.recipeId(), event.ingredientIds().stream().mapToInt(Integer::intValue).distinct().sorted().toArray());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onRecipeDeleted(RecipeDeletedEvent event) {
+        lock.writeLock().lock();
+        try {
+            removeRecipe(event.recipeId(), recipeIngredientIndex.ingredientsOf(event.recipeId()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onIngredientDeleted(IngredientDeletedEvent event) {
+        lock.writeLock().lock();
+        try {
+            IntIterator recipeIds = recipeIngredientIndex.recipesUsing(event.ingredientId()).getIntIterator();
+            while (recipeIds.hasNext()) {
+                int recipeId = recipeIds.next();
+                int[] ingredients = recipeIngredientIndex.ingredientsOf(recipeId);
+                removeRecipe(recipeId, ingredients);
+                if (ingredients != null) {
+                    addRecipe(buckets, recipeId, Arrays.stream(ingredients)
+                            .filter(ingredientId -> ingredientId != event.ingredientId())
+                            .toArray());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addRecipe(List<Map<Long, RoaringBitmap>> into, int recipeId, int[] ingredients) {
+        if (ingredients.length == 0) {
+            return;
+        }
+        long[] signature = signature(ingredients);
+        for (int band = 0; band < BANDS; band++) {
+            into.get(band).computeIfAbsent(bandKey(signature, band), key -> new RoaringBitmap()).add(recipeId);
+        }
+    }
+
+    private void removeRecipe(int recipeId, int[] ingredients) {
+        if (ingredients == null || ingredients.length == 0) {
+            return;
+        }
+        long[] signature = signature(ingredients);
+        for (int band = 0; band < BANDS; band++) {
+            Map<Long, RoaringBitmap> bandBuckets = buckets.get(band);
+            long key = bandKey(signature, band);
+            RoaringBitmap bucket = bandBuckets.get(key);
+            if (bucket != null && bucket.checkedRemove(recipeId) && bucket.isEmpty()) {
+                bandBuckets.remove(key);
+            }
+        }
+    }
+
+    private static List<Map<Long, RoaringBitmap>> emptyBuckets() {
+        List<Map<Long, RoaringBitmap>> buckets = new ArrayList<>(BANDS);
+        for (int band = 0; band < BANDS; band++) {
+            buckets.add(new HashMap<>());
+        }
+        return buckets;
+    }
+
+    private long[] signature(int[] ingredients) {
+        long[] signature = new long[hashMultipliers.length];
+        Arrays.fill(signature, Long.MAX_VALUE);
+        for (int ingredientId : ingredients) {
+            for (int i = 0; i < signature.length; i++) {
+                long hash = (hashMultipliers[i] * ingredientId + hashOffsets[i]) % PRIME;
+                if (hash < signature[i]) {
+                    signature[i] = hash;
+                }
+            }
+        }
+        return signature;
+    }
+
+    private static long bandKey(long[] signature, int band) {
+        long key = 1;
+        for (int row = band * ROWS; row < (band + 1) * ROWS; row++) {
+            key = 31 * key + signature[row];
+        }
+        return key;
+    }
+
+    static double jaccard(int[] first, int[] second) {
+        int i = 0;
+        int j = 0;
+        int intersection = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] == second[j]) {
+                intersection++;
+                i++;
+                j++;
+            } else if (first[i] < second[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return (double) intersection / (first.length + second.length - intersection);
+    }
+}
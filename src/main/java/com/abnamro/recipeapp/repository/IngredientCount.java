@@ -0,0 +1,4 @@
+package com.abnamro.recipeapp.repository;
+
+public record IngredientCount(Integer ingredientId, String name, long count) {
+}
@@ -2,8 +2,10 @@ package com.abnamro.recipeapp.repository;
 
 import com.abnamro.recipeapp.entity.Ingredient;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface IngredientRepository {
     Ingredient save(Ingredient ingredient);
@@ -12,11 +14,23 @@ public interface IngredientRepository {
 
     Optional<Ingredient> findById(Integer id);
 
+    List<Ingredient> findAllByIds(Collection<Integer> ids);
+
     Optional<Ingredient> findByName(String name);
 
-    List<Ingredient> findAll();
+    List<Ingredient> findAllByNames(Collection<String> names);
+
+    List<Ingredient> insertMissing(Collection<String> names);
+
+    List<Ingredient> findAll(int afterId, int limit);
 
     void deleteById(Integer id);
 
     boolean existsById(Integer id);
+
+    void forEachIdAndName(Consumer<IdAndName> consumer);
+
+    void evictCached(Collection<Integer> ids);
+
+    void evictAllCached();
 }
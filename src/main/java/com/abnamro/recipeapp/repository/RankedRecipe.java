@@ -0,0 +1,6 @@
+package com.abnamro.recipeapp.repository;
+
+import com.abnamro.recipeapp.entity.Recipe;
+
+public record RankedRecipe(Recipe recipe, float rank) {
+}
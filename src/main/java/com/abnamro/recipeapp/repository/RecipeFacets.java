@@ -0,0 +1,11 @@
+package com.abnamro.recipeapp.repository;
+
+import java.util.List;
+import java.util.Map;
+
+public record RecipeFacets(
+        Map<Boolean, Long> vegetarianCounts,
+        Map<Integer, Long> servingsCounts,
+        List<IngredientCount> topIngredients
+) {
+}
@@ -0,0 +1,4 @@
+package com.abnamro.recipeapp.repository;
+
+public record RecipeIngredientLink(Integer recipeId, Integer ingredientId) {
+}
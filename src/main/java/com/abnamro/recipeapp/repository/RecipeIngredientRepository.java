@@ -2,6 +2,13 @@ package com.abnamro.recipeapp.repository;
 
 import com.abnamro.recipeapp.entity.RecipeIngredient;
 
+import java.util.List;
+import java.util.function.Consumer;
+
 public interface RecipeIngredientRepository {
     void save(RecipeIngredient recipeIngredient);
+
+    void saveAll(List<RecipeIngredient> recipeIngredients);
+
+    void forEachLink(Consumer<RecipeIngredientLink> consumer);
 }
@@ -2,8 +2,11 @@ package com.abnamro.recipeapp.repository;
 
 import com.abnamro.recipeapp.entity.Recipe;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 public interface RecipeRepository {
 
@@ -13,17 +16,33 @@ public interface RecipeRepository {
 
     boolean notExistsById(Integer id);
 
-    List<Recipe> findAll();
-
     void deleteById(Integer id);
 
     void update(Recipe recipe);
 
     Optional<Recipe> findByName(String name);
 
-    List<Recipe> findByVegetarian(boolean vegetarian);
+    Optional<Integer> findIdByName(String name);
+
+    Optional<Long> findVersionById(Integer id);
+
+    List<Recipe> findAllByIds(List<Integer> ids);
+
+    List<RecipeSummary> findSummariesByIds(List<Integer> ids);
+
+    List<Integer> searchIds(RecipeSearchCriteria criteria, int afterId, int limit);
+
+    RecipeFacets facets(RecipeSearchCriteria criteria, int topIngredients);
+
+    List<Integer> searchIdsWithin(RecipeSearchCriteria criteria, Collection<Integer> ids, int limit);
+
+    void forEachId(IntConsumer consumer);
+
+    void forEachIdAndName(Consumer<IdAndName> consumer);
+
+    List<Recipe> findMakeable(Collection<Integer> ingredientIds, int maxMissing, int afterId, int limit);
 
-    List<Recipe> findByServings(int servings);
+    List<RankedRecipe> searchInstructions(String text, float afterRank, int afterId, int limit);
 
-    List<Recipe> findByInstructionsContaining(String text);
+    List<RankedRecipe> searchNames(String query, int limit);
 }
\ No newline at end of file
@@ -0,0 +1,50 @@
+package com.abnamro.recipeapp.repository;
+
+import java.util.List;
+import java.util.Locale;
+
+public record RecipeSearchCriteria(
+        Boolean vegetarian,
+        Integer servings,
+        List<Integer> includeIngredients,
+        List<Integer> excludeIngredients,
+        String instruction
+) {
+
+    public boolean hasIngredientFilters() {
+        return (includeIngredients != null && !includeIngredients.isEmpty())
+                || (excludeIngredients != null && !excludeIngredients.isEmpty());
+    }
+
+    public RecipeSearchCriteria withoutIngredientFilters() {
+        return new RecipeSearchCriteria(vegetarian, servings, null, null, instruction);
+    }
+
+    // Equal searches get equal criteria: ingredient lists sorted and de-duplicated, instruction text trimmed and lower-cased.
+    public RecipeSearchCriteria canonical() {
+        return new RecipeSearchCriteria(vegetarian, servings, canonical(includeIngredients), canonical(excludeIngredients),
+                instruction == null || instruction.isBlank() ? null : instruction.trim().toLowerCase(Locale.ROOT));
+    }
+
+    public static RecipeSearchCriteria all() {
+        return new RecipeSearchCriteria(null, null, null, null, null);
+    }
+
+    public static RecipeSearchCriteria vegetarian(boolean vegetarian) {
+        return new RecipeSearchCriteria(vegetarian, null, null, null, null);
+    }
+
+    public static RecipeSearchCriteria servings(int servings) {
+        return new RecipeSearchCriteria(null, servings, null, null, null);
+    }
+
+    public static RecipeSearchCriteria instruction(String instruction) {
+        return new RecipeSearchCriteria(null, null, null, null, instruction);
+    }
+
+    private static List<Integer> canonical(List<Integer> ingredientIds) {
+        return ingredientIds == null || ingredientIds.isEmpty()
+                ? null
+                : ingredientIds.stream().distinct().sorted().toList();
+    }
+}
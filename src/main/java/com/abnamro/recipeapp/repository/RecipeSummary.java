@@ -0,0 +1,4 @@
+package com.abnamro.recipeapp.repository;
+
+public record RecipeSummary(Integer id, String name, Boolean vegetarian, Integer servings, long ingredientCount) {
+}
@@ -0,0 +1,20 @@
+package com.abnamro.recipeapp.repository.jpa;
+
+import org.hibernate.boot.model.FunctionContributions;
+import org.hibernate.boot.model.FunctionContributor;
+import org.hibernate.type.BasicType;
+import org.hibernate.type.StandardBasicTypes;
+
+public class FullTextSearchFunctionContributor implements FunctionContributor {
+
+    public static final String FTS_MATCH = "fts_match";
+
+    @Override
+    public void contributeFunctions(FunctionContributions functionContributions) {
+        BasicType<Boolean> booleanType = functionContributions.getTypeConfiguration()
+                .getBasicTypeRegistry()
+                .resolve(StandardBasicTypes.BOOLEAN);
+        functionContributions.getFunctionRegistry()
+                .registerPattern(FTS_MATCH, "(?1 @@ websearch_to_tsquery('english', ?2))", booleanType);
+    }
+}
@@ -1,14 +1,57 @@
 package com.abnamro.recipeapp.repository.jpa;
 
 import com.abnamro.recipeapp.entity.Ingredient;
+import com.abnamro.recipeapp.repository.IdAndName;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface JpaIngredientRepository extends JpaRepository<Ingredient, Integer> {
+public interface JpaIngredientRepository extends JpaRepository<Ingredient, Integer>, JpaIngredientRepositoryCustom {
     @Query("SELECT i FROM Ingredient i WHERE i.name = :name")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = Ingredient.BY_NAME_QUERY_REGION)
+    })
     Optional<Ingredient> findByName(@Param("name") String name);
+
+    List<Ingredient> findByIdGreaterThanOrderByIdAsc(int afterId, Limit limit);
+
+    List<Ingredient> findByNameIn(Collection<String> names);
+
+    @Query("SELECT new com.abnamro.recipeapp.repository.IdAndName(i.id, i.name) FROM Ingredient i")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "10000"))
+    Stream<IdAndName> streamAllIdsAndNames();
+
+    // Ids are handed out from pooled-lo blocks of 50 so a batch takes one nextval per 50 names, like Hibernate does.
+    @Query(value = """
+            WITH new_ingredient AS (
+                SELECT n.name, row_number() OVER (ORDER BY n.name) - 1 AS rn
+                FROM (SELECT DISTINCT name FROM unnest(CAST(:names AS varchar[])) AS name) n
+                WHERE NOT EXISTS (SELECT 1 FROM ingredient i WHERE i.name = n.name)
+            ), blocks AS (
+                SELECT row_number() OVER () - 1 AS block, nextval('ingredient_ingredient_id_seq') AS lo
+                FROM generate_series(1, CAST(ceil((SELECT count(*) FROM new_ingredient) / 50.0) AS int))
+            )
+            INSERT INTO ingredient (ingredient_id, name)
+            SELECT b.lo + n.rn % 50, n.name FROM new_ingredient n JOIN blocks b ON b.block = n.rn / 50
+            ON CONFLICT (name) DO NOTHING
+            RETURNING ingredient_id, name, version, updated_at""", nativeQuery = true)
+    List<Ingredient> insertMissingNames(@Param("names") String[] names);
+
+    // Deleting an ingredient removes it from recipes without loading them, so their versions are bumped here.
+    @Modifying
+    @Query(value = """
+            UPDATE recipe SET version = version + 1, updated_at = now()
+            WHERE recipe_id IN (SELECT recipe_id FROM recipe_ingredients WHERE ingredient_id = :ingredientId)""", nativeQuery = true)
+    int touchRecipesUsing(@Param("ingredientId") Integer ingredientId);
 }
@@ -0,0 +1,16 @@
+package com.abnamro.recipeapp.repository.jpa;
+
+import com.abnamro.recipeapp.entity.Ingredient;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface JpaIngredientRepositoryCustom {
+    List<Ingredient> findAllCachedById(Collection<Integer> ids);
+
+    void evictNameQueries();
+
+    void evictCached(Collection<Integer> ids);
+
+    void evictAllCached();
+}
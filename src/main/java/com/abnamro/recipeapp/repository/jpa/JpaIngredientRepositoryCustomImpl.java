@@ -0,0 +1,70 @@
+package com.abnamro.recipeapp.repository.jpa;
+
+import com.abnamro.recipeapp.entity.Ingredient;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Cache;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+public class JpaIngredientRepositoryCustomImpl implements JpaIngredientRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Unlike findAllById, multiLoad takes ids from the second-level cache and only queries the ones it misses.
+    @Override
+    @Transactional(readOnly = true)
+    public List<Ingredient> findAllCachedById(Collection<Integer> ids) {
+        return entityManager.unwrap(Session.class)
+                .byMultipleIds(Ingredient.class)
+                .with(CacheMode.NORMAL)
+                .multiLoad(List.copyOf(ids))
+                .stream()
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    // Native inserts are invisible to Hibernate's query-space tracking, so cached "no such name" results are dropped
+    // once the new rows are visible to other transactions.
+    @Override
+    public void evictNameQueries() {
+        Cache cache = secondLevelCache();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cache.evictQueryRegion(Ingredient.BY_NAME_QUERY_REGION);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cache.evictQueryRegion(Ingredient.BY_NAME_QUERY_REGION);
+            }
+        });
+    }
+
+    @Override
+    public void evictCached(Collection<Integer> ids) {
+        Cache cache = secondLevelCache();
+        ids.forEach(id -> cache.evictEntityData(Ingredient.class, id));
+        cache.evictQueryRegion(Ingredient.BY_NAME_QUERY_REGION);
+    }
+
+    @Override
+    public void evictAllCached() {
+        Cache cache = secondLevelCache();
+        cache.evictEntityData(Ingredient.class);
+        cache.evictQueryRegions();
+    }
+
+    private Cache secondLevelCache() {
+        return entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getCache();
+    }
+}
@@ -1,13 +1,18 @@
 package com.abnamro.recipeapp.repository.jpa;
 
 import com.abnamro.recipeapp.entity.Ingredient;
+import com.abnamro.recipeapp.repository.IdAndName;
 import com.abnamro.recipeapp.repository.IngredientRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Repository
 public class JpaIngredientRepositoryService implements IngredientRepository {
@@ -52,9 +57,28 @@ public class JpaIngredientRepositoryService implements IngredientRepository {
     }
 
     @Override
-    public List<Ingredient> findAll() {
-        logger.info("Finding all ingredients");
-        List<Ingredient> ingredients = jpaIngredientRepository.findAll();
+    public List<Ingredient> findAllByNames(Collection<String> names) {
+        logger.info("Finding ingredients by names: {}", names);
+        List<Ingredient> ingredients = jpaIngredientRepository.findByNameIn(names);
+        logger.info("Ingredients found: {}", ingredients);
+        return ingredients;
+    }
+
+    @Override
+    public List<Ingredient> insertMissing(Collection<String> names) {
+        logger.info("Inserting ingredients that do not exist yet: {}", names);
+        List<Ingredient> ingredients = jpaIngredientRepository.insertMissingNames(names.toArray(String[]::new));
+        if (!ingredients.isEmpty()) {
+            jpaIngredientRepository.evictNameQueries();
+        }
+        logger.info("Ingredients inserted: {}", ingredients);
+        return ingredients;
+    }
+
+    @Override
+    public List<Ingredient> findAll(int afterId, int limit) {
+        logger.info("Finding ingredients after id {} with limit {}", afterId, limit);
+        List<Ingredient> ingredients = jpaIngredientRepository.findByIdGreaterThanOrderByIdAsc(afterId, Limit.of(limit));
         logger.info("Ingredients found: {}", ingredients);
         return ingredients;
     }
@@ -62,10 +86,19 @@ public class JpaIngredientRepositoryService implements IngredientRepository {
     @Override
     public void deleteById(Integer id) {
         logger.info("Deleting ingredient by id: {}", id);
+        jpaIngredientRepository.touchRecipesUsing(id);
         jpaIngredientRepository.deleteById(id);
         logger.info("Ingredient with id {} deleted", id);
     }
 
+    @Override
+    public List<Ingredient> findAllByIds(Collection<Integer> ids) {
+        logger.info("Finding ingredients by ids: {}", ids);
+        List<Ingredient> ingredients = jpaIngredientRepository.findAllCachedById(ids);
+        logger.info("Ingredients found: {}", ingredients);
+        return ingredients;
+    }
+
     @Override
     public boolean existsById(Integer id) {
         logger.info("Checking if ingredient exists by id: {}", id);
@@ -73,4 +106,27 @@ public class JpaIngredientRepositoryService implements IngredientRepository {
         logger.info("Ingredient exists: {}", exists);
         return exists;
     }
+
+    @Override
+    public void forEachIdAndName(Consumer<IdAndName> consumer) {
+        logger.info("Streaming all ingredient ids and names");
+        try (Stream<IdAndName> ingredients = jpaIngredientRepository.streamAllIdsAndNames()) {
+            ingredients.forEach(consumer);
+        }
+        logger.info("Ingredient ids and names streamed");
+    }
+
+    @Override
+    public void evictCached(Collection<Integer> ids) {
+        logger.info("Evicting cached ingredients by ids: {}", ids);
+        jpaIngredientRepository.evictCached(ids);
+        logger.info("Cached ingredients evicted");
+    }
+
+    @Override
+    public void evictAllCached() {
+        logger.info("Evicting all cached ingredients");
+        jpaIngredientRepository.evictAllCached();
+        logger.info("All cached ingredients evicted");
+    }
 }
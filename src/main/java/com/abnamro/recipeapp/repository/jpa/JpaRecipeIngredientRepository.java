@@ -1,7 +1,18 @@
 package com.abnamro.recipeapp.repository.jpa;
 
 import com.abnamro.recipeapp.entity.RecipeIngredient;
+import com.abnamro.recipeapp.repository.RecipeIngredientLink;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import java.util.stream.Stream;
 
 public interface JpaRecipeIngredientRepository extends JpaRepository<RecipeIngredient, Integer> {
+
+    @Query("SELECT new com.abnamro.recipeapp.repository.RecipeIngredientLink(ri.recipe.id, ri.ingredient.id) FROM RecipeIngredient ri")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "10000"))
+    Stream<RecipeIngredientLink> streamAllLinks();
 }
\ No newline at end of file
@@ -1,11 +1,16 @@
 package com.abnamro.recipeapp.repository.jpa;
 
 import com.abnamro.recipeapp.entity.RecipeIngredient;
+import com.abnamro.recipeapp.repository.RecipeIngredientLink;
 import com.abnamro.recipeapp.repository.RecipeIngredientRepository;
 import org.springframework.stereotype.Repository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
 @Repository
 public class JpaRecipeIngredientRepositoryService implements RecipeIngredientRepository {
 
@@ -23,4 +28,20 @@ public class JpaRecipeIngredientRepositoryService implements RecipeIngredientRep
         jpaRecipeIngredientRepository.save(recipeIngredient);
         logger.info("Recipe ingredient saved: {}", recipeIngredient);
     }
+
+    @Override
+    public void saveAll(List<RecipeIngredient> recipeIngredients) {
+        logger.info("Saving {} recipe ingredients", recipeIngredients.size());
+        jpaRecipeIngredientRepository.saveAll(recipeIngredients);
+        logger.info("Recipe ingredients saved: {}", recipeIngredients);
+    }
+
+    @Override
+    public void forEachLink(Consumer<RecipeIngredientLink> consumer) {
+        logger.info("Streaming all recipe ingredient links");
+        try (Stream<RecipeIngredientLink> links = jpaRecipeIngredientRepository.streamAllLinks()) {
+            links.forEach(consumer);
+        }
+        logger.info("Recipe ingredient links streamed");
+    }
 }
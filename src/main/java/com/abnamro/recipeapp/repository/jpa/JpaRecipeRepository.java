@@ -1,20 +1,104 @@
 package com.abnamro.recipeapp.repository.jpa;
 
 import com.abnamro.recipeapp.entity.Recipe;
+import com.abnamro.recipeapp.repository.IdAndName;
+import com.abnamro.recipeapp.repository.RecipeSummary;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface JpaRecipeRepository extends JpaRepository<Recipe, Integer> {
-    List<Recipe> findByVegetarian(boolean vegetarian);
+public interface JpaRecipeRepository extends JpaRepository<Recipe, Integer>, JpaSpecificationExecutor<Recipe>, JpaRecipeRepositoryCustom {
+    @EntityGraph(Recipe.WITH_INGREDIENTS_GRAPH)
+    List<Recipe> findAllWithIngredientsByIdIn(Collection<Integer> ids, Sort sort);
 
-    List<Recipe> findByServings(int servings);
+    @Query("""
+            SELECT new com.abnamro.recipeapp.repository.RecipeSummary(r.id, r.name, r.vegetarian, r.servings, COUNT(ri))
+            FROM Recipe r LEFT JOIN r.recipeIngredients ri
+            WHERE r.id IN :ids
+            GROUP BY r.id, r.name, r.vegetarian, r.servings
+            """)
+    List<RecipeSummary> findSummariesByIdIn(@Param("ids") Collection<Integer> ids);
 
-    List<Recipe> findByInstructionsContainingIgnoreCase(String text);
+    @Query(value = """
+            SELECT ranked.id, ranked.rank
+            FROM (SELECT r.recipe_id AS id, ts_rank(r.instructions_tsv, q.query) AS rank
+                  FROM recipe r, websearch_to_tsquery('english', :text) AS q(query)
+                  WHERE r.instructions_tsv @@ q.query) ranked
+            WHERE ranked.rank < :afterRank OR (ranked.rank = :afterRank AND ranked.id > :afterId)
+            ORDER BY ranked.rank DESC, ranked.id
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<RankedRecipeId> findRankedIdsByInstructions(@Param("text") String text,
+                                                     @Param("afterRank") float afterRank,
+                                                     @Param("afterId") int afterId,
+                                                     @Param("limit") int limit);
+
+    @Query(value = """
+            SELECT r.recipe_id AS id, word_similarity(:query, r.name) AS rank
+            FROM recipe r
+            WHERE :query <% r.name
+            ORDER BY rank DESC, r.recipe_id
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<RankedRecipeId> findRankedIdsByNameSimilarTo(@Param("query") String query, @Param("limit") int limit);
+
+    @Query(value = """
+            SELECT ri.recipe_id
+            FROM recipe_ingredients ri
+            WHERE ri.recipe_id > :afterId
+            GROUP BY ri.recipe_id
+            HAVING COUNT(*) - COUNT(*) FILTER (WHERE ri.ingredient_id IN (:ingredientIds)) <= :maxMissing
+            ORDER BY ri.recipe_id
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<Integer> findMakeableIds(@Param("ingredientIds") Collection<Integer> ingredientIds,
+                                  @Param("maxMissing") int maxMissing,
+                                  @Param("afterId") int afterId,
+                                  @Param("limit") int limit);
+
+    // Only groups the recipes that use one of the ingredients, so it misses recipes sharing none of them.
+    @Query(value = """
+            SELECT ri.recipe_id
+            FROM recipe_ingredients ri
+            WHERE ri.recipe_id IN (SELECT pantry.recipe_id
+                                   FROM recipe_ingredients pantry
+                                   WHERE pantry.ingredient_id IN (:ingredientIds)
+                                     AND pantry.recipe_id > :afterId)
+            GROUP BY ri.recipe_id
+            HAVING COUNT(*) - COUNT(*) FILTER (WHERE ri.ingredient_id IN (:ingredientIds)) <= :maxMissing
+            ORDER BY ri.recipe_id
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<Integer> findMakeableIdsUsingAny(@Param("ingredientIds") Collection<Integer> ingredientIds,
+                                          @Param("maxMissing") int maxMissing,
+                                          @Param("afterId") int afterId,
+                                          @Param("limit") int limit);
+
+    @Query("SELECT r.id FROM Recipe r")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "10000"))
+    Stream<Integer> streamAllIds();
+
+    @Query("SELECT new com.abnamro.recipeapp.repository.IdAndName(r.id, r.name) FROM Recipe r")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "10000"))
+    Stream<IdAndName> streamAllIdsAndNames();
 
     @Query("SELECT i FROM Recipe i WHERE i.name = :name")
     Optional<Recipe> findByName(@Param("name") String name);
+
+    @Query("SELECT r.id FROM Recipe r WHERE r.name = :name")
+    Optional<Integer> findIdByName(@Param("name") String name);
+
+    @Query("SELECT r.version FROM Recipe r WHERE r.id = :id")
+    Optional<Long> findVersionById(@Param("id") Integer id);
 }
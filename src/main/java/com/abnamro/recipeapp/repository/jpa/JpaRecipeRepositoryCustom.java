@@ -0,0 +1,18 @@
+package com.abnamro.recipeapp.repository.jpa;
+
+import com.abnamro.recipeapp.entity.Recipe;
+import com.abnamro.recipeapp.repository.IngredientCount;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+import java.util.Map;
+
+public interface JpaRecipeRepositoryCustom {
+    List<Integer> findIds(Specification<Recipe> specification, int limit);
+
+    Map<Boolean, Long> countByVegetarian(Specification<Recipe> specification);
+
+    Map<Integer, Long> countByServings(Specification<Recipe> specification);
+
+    List<IngredientCount> countTopIngredients(Specification<Recipe> specification, int limit);
+}
@@ -0,0 +1,94 @@
+package com.abnamro.recipeapp.repository.jpa;
+
+import com.abnamro.recipeapp.entity.Ingredient;
+import com.abnamro.recipeapp.entity.Recipe;
+import com.abnamro.recipeapp.entity.RecipeIngredient;
+import com.abnamro.recipeapp.repository.IngredientCount;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class JpaRecipeRepositoryCustomImpl implements JpaRecipeRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Integer> findIds(Specification<Recipe> specification, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Integer> query = cb.createQuery(Integer.class);
+        Root<Recipe> root = query.from(Recipe.class);
+        query.select(root.get("id")).orderBy(cb.asc(root.get("id")));
+        if (specification != null) {
+            query.where(specification.toPredicate(root, query, cb));
+        }
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    public Map<Boolean, Long> countByVegetarian(Specification<Recipe> specification) {
+        return countBy(specification, "vegetarian", Boolean.class);
+    }
+
+    @Override
+    public Map<Integer, Long> countByServings(Specification<Recipe> specification) {
+        return countBy(specification, "servings", Integer.class);
+    }
+
+    @Override
+    public List<IngredientCount> countTopIngredients(Specification<Recipe> specification, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Recipe> root = query.from(Recipe.class);
+        Join<Recipe, RecipeIngredient> recipeIngredient = root.join("recipeIngredients");
+        Join<RecipeIngredient, Ingredient> ingredient = recipeIngredient.join("ingredient");
+        Path<Integer> id = ingredient.get("id");
+        Path<String> name = ingredient.get("name");
+        Expression<Long> count = cb.count(root);
+        query.multiselect(id, name, count)
+                .groupBy(id, name)
+                .orderBy(cb.desc(count), cb.asc(id));
+        where(query, root, cb, specification);
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList().stream()
+                .map(tuple -> new IngredientCount(tuple.get(id), tuple.get(name), tuple.get(count)))
+                .toList();
+    }
+
+    private <T> Map<T, Long> countBy(Specification<Recipe> specification, String attribute, Class<T> type) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Recipe> root = query.from(Recipe.class);
+        Path<T> value = root.get(attribute);
+        Expression<Long> count = cb.count(root);
+        query.multiselect(value, count)
+                .groupBy(value)
+                .orderBy(cb.asc(value));
+        where(query, root, cb, specification);
+        Map<T, Long> counts = new LinkedHashMap<>();
+        for (Tuple tuple : entityManager.createQuery(query).getResultList()) {
+            counts.put(tuple.get(value), tuple.get(count));
+        }
+        return counts;
+    }
+
+    private static void where(CriteriaQuery<?> query, Root<Recipe> root, CriteriaBuilder cb, Specification<Recipe> specification) {
+        if (specification != null) {
+            Predicate predicate = specification.toPredicate(root, query, cb);
+            if (predicate != null) {
+                query.where(predicate);
+            }
+        }
+    }
+}
@@ -1,13 +1,27 @@
 package com.abnamro.recipeapp.repository.jpa;
 
 import com.abnamro.recipeapp.entity.Recipe;
+import com.abnamro.recipeapp.repository.IdAndName;
+import com.abnamro.recipeapp.repository.RankedRecipe;
+import com.abnamro.recipeapp.repository.RecipeFacets;
 import com.abnamro.recipeapp.repository.RecipeRepository;
+import com.abnamro.recipeapp.repository.RecipeSearchCriteria;
+import com.abnamro.recipeapp.repository.RecipeSummary;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Repository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Repository
 public class JpaRecipeRepositoryService implements RecipeRepository {
@@ -43,14 +57,6 @@ public class JpaRecipeRepositoryService implements RecipeRepository {
         return notExists;
     }
 
-    @Override
-    public List<Recipe> findAll() {
-        logger.info("Finding all recipes");
-        List<Recipe> recipes = jpaRecipeRepository.findAll();
-        logger.info("Recipes found: {}", recipes);
-        return recipes;
-    }
-
     @Override
     public void deleteById(Integer id) {
         logger.info("Deleting recipe by id: {}", id);
@@ -61,39 +67,165 @@ public class JpaRecipeRepositoryService implements RecipeRepository {
     @Override
     public void update(Recipe recipe) {
         logger.info("Updating recipe: {}", recipe);
-        jpaRecipeRepository.save(recipe);
+        jpaRecipeRepository.saveAndFlush(recipe);
         logger.info("Recipe updated: {}", recipe);
     }
 
     @Override
-    public List<Recipe> findByVegetarian(boolean vegetarian) {
-        logger.info("Finding recipes by vegetarian status: {}", vegetarian);
-        List<Recipe> recipes = jpaRecipeRepository.findByVegetarian(vegetarian);
+    public Optional<Recipe> findByName(String name) {
+        logger.info("Finding recipe by name: {}", name);
+        Optional<Recipe> recipe = jpaRecipeRepository.findByName(name);
+        logger.info("Recipe found: {}", recipe);
+        return recipe;
+    }
+
+    @Override
+    public Optional<Integer> findIdByName(String name) {
+        logger.info("Finding recipe id by name: {}", name);
+        Optional<Integer> id = jpaRecipeRepository.findIdByName(name);
+        logger.info("Recipe id found: {}", id);
+        return id;
+    }
+
+    @Override
+    public Optional<Long> findVersionById(Integer id) {
+        logger.info("Finding recipe version by id: {}", id);
+        Optional<Long> version = jpaRecipeRepository.findVersionById(id);
+        logger.info("Recipe version found: {}", version);
+        return version;
+    }
+
+    @Override
+    public List<Recipe> findAllByIds(List<Integer> ids) {
+        logger.info("Finding recipes by ids: {}", ids);
+        List<Recipe> recipes = findInOrder(ids);
         logger.info("Recipes found: {}", recipes);
         return recipes;
     }
 
     @Override
-    public List<Recipe> findByServings(int servings) {
-        logger.info("Finding recipes by servings: {}", servings);
-        List<Recipe> recipes = jpaRecipeRepository.findByServings(servings);
+    public List<RecipeSummary> findSummariesByIds(List<Integer> ids) {
+        logger.info("Finding recipe summaries by ids: {}", ids);
+        List<RecipeSummary> summaries = List.of();
+        if (!ids.isEmpty()) {
+            Map<Integer, RecipeSummary> summariesById = jpaRecipeRepository.findSummariesByIdIn(ids).stream()
+                    .collect(Collectors.toMap(RecipeSummary::id, Function.identity()));
+            summaries = ids.stream()
+                    .distinct()
+                    .filter(summariesById::containsKey)
+                    .map(summariesById::get)
+                    .toList();
+        }
+        logger.info("Recipe summaries found: {}", summaries);
+        return summaries;
+    }
+
+    @Override
+    public List<Integer> searchIds(RecipeSearchCriteria criteria, int afterId, int limit) {
+        logger.info("Searching recipe ids by criteria: {} after id {} with limit {}", criteria, afterId, limit);
+        Specification<Recipe> specification = RecipeSpecifications.matching(criteria)
+                .and(RecipeSpecifications.idGreaterThan(afterId));
+        List<Integer> ids = jpaRecipeRepository.findIds(specification, limit);
+        logger.info("Recipe ids found: {}", ids);
+        return ids;
+    }
+
+    @Override
+    public RecipeFacets facets(RecipeSearchCriteria criteria, int topIngredients) {
+        logger.info("Counting recipe facets for criteria: {} with {} top ingredients", criteria, topIngredients);
+        Specification<Recipe> specification = RecipeSpecifications.matching(criteria);
+        RecipeFacets facets = new RecipeFacets(
+                jpaRecipeRepository.countByVegetarian(specification),
+                jpaRecipeRepository.countByServings(specification),
+                jpaRecipeRepository.countTopIngredients(specification, topIngredients));
+        logger.info("Recipe facets counted: {}", facets);
+        return facets;
+    }
+
+    @Override
+    public List<Integer> searchIdsWithin(RecipeSearchCriteria criteria, Collection<Integer> ids, int limit) {
+        logger.info("Searching recipe ids by criteria: {} within {} candidate ids with limit {}", criteria, ids.size(), limit);
+        Specification<Recipe> specification = RecipeSpecifications.matching(criteria)
+                .and(RecipeSpecifications.idIn(ids));
+        List<Integer> matchingIds = jpaRecipeRepository.findIds(specification, limit);
+        logger.info("Recipe ids found: {}", matchingIds);
+        return matchingIds;
+    }
+
+    @Override
+    public List<Recipe> findMakeable(Collection<Integer> ingredientIds, int maxMissing, int afterId, int limit) {
+        logger.info("Finding recipes makeable from ingredients {} missing at most {} after id {} with limit {}", ingredientIds, maxMissing, afterId, limit);
+        // Every recipe has at least one ingredient, so with nothing missing it must use one of the given ones.
+        List<Integer> ids = maxMissing == 0
+                ? jpaRecipeRepository.findMakeableIdsUsingAny(ingredientIds, maxMissing, afterId, limit)
+                : jpaRecipeRepository.findMakeableIds(ingredientIds, maxMissing, afterId, limit);
+        List<Recipe> recipes = ids.isEmpty()
+                ? List.of()
+                : jpaRecipeRepository.findAllWithIngredientsByIdIn(ids, Sort.by("id"));
         logger.info("Recipes found: {}", recipes);
         return recipes;
     }
 
     @Override
-    public Optional<Recipe> findByName(String name) {
-        logger.info("Finding recipe by name: {}", name);
-        Optional<Recipe> recipe = jpaRecipeRepository.findByName(name);
-        logger.info("Recipe found: {}", recipe);
-        return recipe;
+    public void forEachId(IntConsumer consumer) {
+        logger.info("Streaming all recipe ids");
+        try (Stream<Integer> ids = jpaRecipeRepository.streamAllIds()) {
+            ids.forEach(consumer::accept);
+        }
+        logger.info("Recipe ids streamed");
     }
 
     @Override
-    public List<Recipe> findByInstructionsContaining(String text) {
-        logger.info("Finding recipes by instructions containing: {}", text);
-        List<Recipe> recipes = jpaRecipeRepository.findByInstructionsContainingIgnoreCase(text);
+    public void forEachIdAndName(Consumer<IdAndName> consumer) {
+        logger.info("Streaming all recipe ids and names");
+        try (Stream<IdAndName> recipes = jpaRecipeRepository.streamAllIdsAndNames()) {
+            recipes.forEach(consumer);
+        }
+        logger.info("Recipe ids and names streamed");
+    }
+
+    @Override
+    public List<RankedRecipe> searchInstructions(String text, float afterRank, int afterId, int limit) {
+        logger.info("Searching recipes by instructions matching: {} after rank {} and id {} with limit {}", text, afterRank, afterId, limit);
+        List<RankedRecipe> recipes = loadRanked(jpaRecipeRepository.findRankedIdsByInstructions(text, afterRank, afterId, limit));
+        logger.info("Recipes found: {}", recipes);
+        return recipes;
+    }
+
+    @Override
+    public List<RankedRecipe> searchNames(String query, int limit) {
+        logger.info("Searching recipes by name similar to: {} with limit {}", query, limit);
+        List<RankedRecipe> recipes = loadRanked(jpaRecipeRepository.findRankedIdsByNameSimilarTo(query, limit));
         logger.info("Recipes found: {}", recipes);
         return recipes;
     }
+
+    private List<RankedRecipe> loadRanked(List<RankedRecipeId> rankedIds) {
+        if (rankedIds.isEmpty()) {
+            return List.of();
+        }
+        Map<Integer, Recipe> recipesById = findByIds(rankedIds.stream().map(RankedRecipeId::getId).toList());
+        return rankedIds.stream()
+                .filter(rankedId -> recipesById.containsKey(rankedId.getId()))
+                .map(rankedId -> new RankedRecipe(recipesById.get(rankedId.getId()), rankedId.getRank()))
+                .toList();
+    }
+
+    private List<Recipe> findInOrder(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Integer, Recipe> recipesById = findByIds(ids);
+        return ids.stream()
+                .distinct()
+                .filter(recipesById::containsKey)
+                .map(recipesById::get)
+                .toList();
+    }
+
+    private Map<Integer, Recipe> findByIds(List<Integer> ids) {
+        return jpaRecipeRepository.findAllWithIngredientsByIdIn(ids, Sort.by("id"))
+                .stream()
+                .collect(Collectors.toMap(Recipe::getId, Function.identity()));
+    }
 }
@@ -0,0 +1,7 @@
+package com.abnamro.recipeapp.repository.jpa;
+
+public interface RankedRecipeId {
+    Integer getId();
+
+    Float getRank();
+}
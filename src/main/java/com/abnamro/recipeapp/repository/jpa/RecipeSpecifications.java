@@ -0,0 +1,87 @@
+package com.abnamro.recipeapp.repository.jpa;
+
+import com.abnamro.recipeapp.entity.Recipe;
+import com.abnamro.recipeapp.entity.RecipeIngredient;
+import com.abnamro.recipeapp.repository.RecipeSearchCriteria;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Collection;
+import java.util.List;
+
+public final class RecipeSpecifications {
+
+    private RecipeSpecifications() {
+    }
+
+    public static Specification<Recipe> matching(RecipeSearchCriteria criteria) {
+        Specification<Recipe> specification = Specification.where(null);
+        if (criteria.vegetarian() != null) {
+            specification = specification.and(isVegetarian(criteria.vegetarian()));
+        }
+        if (criteria.servings() != null) {
+            specification = specification.and(hasServings(criteria.servings()));
+        }
+        if (criteria.includeIngredients() != null) {
+            for (Integer ingredientId : distinct(criteria.includeIngredients())) {
+                specification = specification.and(containsIngredient(ingredientId));
+            }
+        }
+        if (criteria.excludeIngredients() != null && !criteria.excludeIngredients().isEmpty()) {
+            specification = specification.and(containsNoneOfIngredients(distinct(criteria.excludeIngredients())));
+        }
+        if (criteria.instruction() != null && !criteria.instruction().isBlank()) {
+            specification = specification.and(instructionsMatch(criteria.instruction()));
+        }
+        return specification;
+    }
+
+    public static Specification<Recipe> idGreaterThan(int afterId) {
+        return (root, query, cb) -> cb.greaterThan(root.get("id"), afterId);
+    }
+
+    public static Specification<Recipe> idIn(Collection<Integer> ids) {
+        return (root, query, cb) -> root.get("id").in(ids);
+    }
+
+    public static Specification<Recipe> isVegetarian(boolean vegetarian) {
+        return (root, query, cb) -> cb.equal(root.get("vegetarian"), vegetarian);
+    }
+
+    public static Specification<Recipe> hasServings(int servings) {
+        return (root, query, cb) -> cb.equal(root.get("servings"), servings);
+    }
+
+    public static Specification<Recipe> containsIngredient(Integer ingredientId) {
+        return (root, query, cb) -> {
+            Subquery<Integer> subquery = query.subquery(Integer.class);
+            Root<RecipeIngredient> recipeIngredient = subquery.from(RecipeIngredient.class);
+            subquery.select(cb.literal(1)).where(
+                    cb.equal(recipeIngredient.get("recipe"), root),
+                    cb.equal(recipeIngredient.get("ingredient").get("id"), ingredientId));
+            return cb.exists(subquery);
+        };
+    }
+
+    public static Specification<Recipe> containsNoneOfIngredients(List<Integer> ingredientIds) {
+        return (root, query, cb) -> {
+            Subquery<Integer> subquery = query.subquery(Integer.class);
+            Root<RecipeIngredient> recipeIngredient = subquery.from(RecipeIngredient.class);
+            subquery.select(cb.literal(1)).where(
+                    cb.equal(recipeIngredient.get("recipe"), root),
+                    recipeIngredient.get("ingredient").get("id").in(ingredientIds));
+            return cb.not(cb.exists(subquery));
+        };
+    }
+
+    public static Specification<Recipe> instructionsMatch(String text) {
+        return (root, query, cb) -> cb.isTrue(cb.function(FullTextSearchFunctionContributor.FTS_MATCH, Boolean.class,
+                root.get("instructionsVector"), ((HibernateCriteriaBuilder) cb).value(text)));
+    }
+
+    private static List<Integer> distinct(List<Integer> ids) {
+        return ids.stream().distinct().toList();
+    }
+}
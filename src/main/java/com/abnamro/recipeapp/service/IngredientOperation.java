@@ -0,0 +1,18 @@
+package com.abnamro.recipeapp.service;
+
+import com.abnamro.exception.BadRequestException;
+
+enum IngredientOperation {
+    ADD,
+    CHANGE,
+    REMOVE;
+
+    static IngredientOperation from(String op) {
+        for (IngredientOperation value : values()) {
+            if (value.name().equalsIgnoreCase(op)) {
+                return value;
+            }
+        }
+        throw new BadRequestException("Unknown ingredient operation: " + op);
+    }
+}
@@ -1,48 +1,99 @@
 package com.abnamro.recipeapp.service;
 
+import com.abnamro.exception.BadRequestException;
 import com.abnamro.exception.DuplicateResourceException;
 import com.abnamro.exception.ValidationException;
+import com.abnamro.recipeapp.cache.ExistenceFilter;
+import com.abnamro.recipeapp.dto.PageDto;
 import com.abnamro.recipeapp.dto.ingredient.CreateIngredientDto;
 import com.abnamro.recipeapp.dto.ingredient.IngredientDto;
+import com.abnamro.recipeapp.dto.ingredient.IngredientUpsertDto;
 import com.abnamro.recipeapp.entity.Ingredient;
 import com.abnamro.exception.ResourceNotFoundException;
+import com.abnamro.recipeapp.event.IngredientDeletedEvent;
+import com.abnamro.recipeapp.event.IngredientsSavedEvent;
 import com.abnamro.recipeapp.repository.IngredientRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
+@Profile("!catalog")
 public class IngredientService {
 
     private static final Logger logger = LoggerFactory.getLogger(IngredientService.class);
 
+    static final int MAX_BULK_SIZE = 1000;
+
     IngredientRepository ingredientRepository;
+    private final ExistenceFilter existenceFilter;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public IngredientService(IngredientRepository ingredientRepository) {
+    public IngredientService(IngredientRepository ingredientRepository, ExistenceFilter existenceFilter, ApplicationEventPublisher eventPublisher) {
         this.ingredientRepository = ingredientRepository;
+        this.existenceFilter = existenceFilter;
+        this.eventPublisher = eventPublisher;
     }
 
     @Transactional
     public CreateIngredientDto addIngredient(CreateIngredientDto ingredientDto) {
         logger.info("Request to add ingredient: {}", ingredientDto);
-        if (ingredientRepository.findByName(ingredientDto.name()).isPresent()) {
-            throw new DuplicateResourceException("Ingredient with name " + ingredientDto.name() + " already exists.");
-        }
+        validateName(ingredientDto.name());
 
-        if (ingredientDto.name() == null || ingredientDto.name().trim().isEmpty()) {
-            throw new ValidationException("Ingredient name must not be empty.");
+        List<Ingredient> inserted = ingredientRepository.insertMissing(List.of(ingredientDto.name()));
+        if (inserted.isEmpty()) {
+            throw new DuplicateResourceException("Ingredient with name " + ingredientDto.name() + " already exists.");
         }
-
-        Ingredient ingredient = new Ingredient();
-        ingredient.setName(ingredientDto.name());
-        CreateIngredientDto createdIngredient = convertToCreateIngredientDto(ingredientRepository.save(ingredient));
+        eventPublisher.publishEvent(new IngredientsSavedEvent(List.of(inserted.getFirst().getId()), List.of(inserted.getFirst().getName())));
+        CreateIngredientDto createdIngredient = convertToCreateIngredientDto(inserted.getFirst());
         logger.info("Ingredient added successfully: {}", createdIngredient);
         return createdIngredient;
     }
 
+    @Transactional
+    public List<IngredientUpsertDto> addIngredients(List<String> names) {
+        logger.info("Request to add {} ingredients", names == null ? 0 : names.size());
+        if (names == null || names.isEmpty()) {
+            throw new ValidationException("At least one ingredient name is required.");
+        }
+        if (names.size() > MAX_BULK_SIZE) {
+            throw new BadRequestException("At most " + MAX_BULK_SIZE + " ingredients can be added at once.");
+        }
+        names.forEach(this::validateName);
+
+        List<String> distinctNames = names.stream().distinct().toList();
+        Map<String, Ingredient> inserted = ingredientRepository.insertMissing(distinctNames).stream()
+                .collect(Collectors.toMap(Ingredient::getName, Function.identity()));
+        if (!inserted.isEmpty()) {
+            eventPublisher.publishEvent(new IngredientsSavedEvent(inserted.values().stream().map(Ingredient::getId).toList(),
+                    List.copyOf(inserted.keySet())));
+        }
+        List<String> existingNames = distinctNames.stream().filter(name -> !inserted.containsKey(name)).toList();
+        Map<String, Ingredient> existing = existingNames.isEmpty() ? Map.of() : ingredientRepository.findAllByNames(existingNames).stream()
+                .collect(Collectors.toMap(Ingredient::getName, Function.identity()));
+
+        List<IngredientUpsertDto> ingredients = new ArrayList<>(distinctNames.size());
+        for (String name : distinctNames) {
+            Ingredient ingredient = inserted.get(name);
+            if (ingredient != null) {
+                ingredients.add(new IngredientUpsertDto(ingredient.getId(), name, true));
+            } else if (existing.containsKey(name)) {
+                ingredients.add(new IngredientUpsertDto(existing.get(name).getId(), name, false));
+            }
+        }
+        logger.info("Ingredients added: {} created, {} already existing", inserted.size(), existing.size());
+        return ingredients;
+    }
+
     @Transactional
     public IngredientDto updateIngredient(IngredientDto ingredient) {
         logger.info("Request to update ingredient with id {}: {}", ingredient.id(), ingredient);
@@ -55,6 +106,7 @@ public class IngredientService {
 
         existingIngredient.setName(ingredient.name());
         IngredientDto updatedIngredient = convertToIngredientDto(ingredientRepository.save(existingIngredient));
+        eventPublisher.publishEvent(new IngredientsSavedEvent(List.of(updatedIngredient.id()), List.of(updatedIngredient.name())));
         logger.info("Ingredient updated successfully: {}", updatedIngredient);
         return updatedIngredient;
     }
@@ -65,13 +117,16 @@ public class IngredientService {
         if (!ingredientRepository.existsById(id))
             throw new ResourceNotFoundException("Ingredient with id " + id + " does not exist!");
         ingredientRepository.deleteById(id);
+        eventPublisher.publishEvent(new IngredientDeletedEvent(id));
         logger.info("Ingredient with id {} deleted successfully", id);
     }
 
     @Transactional(readOnly = true)
-    public List<IngredientDto> getAllIngredients() {
-        logger.info("Request to get all ingredients");
-        List<IngredientDto> ingredients = ingredientRepository.findAll().stream().map(this::convertToIngredientDto).toList();
+    public PageDto<IngredientDto> getAllIngredients(String cursor, int limit) {
+        logger.info("Request to get all ingredients after cursor {} with limit {}", cursor, limit);
+        KeysetPagination.validateLimit(limit);
+        List<Ingredient> rows = ingredientRepository.findAll(KeysetPagination.afterId(cursor), limit + 1);
+        PageDto<IngredientDto> ingredients = KeysetPagination.toPage(rows, limit, Ingredient::getId, this::convertToIngredientDto);
         logger.info("Retrieved ingredients: {}", ingredients);
         return ingredients;
     }
@@ -79,7 +134,8 @@ public class IngredientService {
     @Transactional(readOnly = true)
     public IngredientDto getIngredientById(int id) {
         logger.info("Request to get ingredient by id {}", id);
-        IngredientDto ingredientDto = ingredientRepository.findById(id).map(this::convertToIngredientDto)
+        IngredientDto ingredientDto = existenceFilter.find(ExistenceFilter.Lookup.INGREDIENT_ID, id, () -> ingredientRepository.findById(id))
+                .map(this::convertToIngredientDto)
                 .orElseThrow(() -> new ResourceNotFoundException("Ingredient with id " + id + " does not found!"));
         logger.info("Retrieved ingredient: {}", ingredientDto);
         return ingredientDto;
@@ -88,10 +144,17 @@ public class IngredientService {
     @Transactional(readOnly = true)
     public IngredientDto getIngredientByName(String name) {
         logger.info("Request to get ingredients by name containing {}", name);
-        return ingredientRepository.findByName(name).map(this::convertToIngredientDto)
+        return existenceFilter.find(ExistenceFilter.Lookup.INGREDIENT_NAME, name, () -> ingredientRepository.findByName(name))
+                .map(this::convertToIngredientDto)
                 .orElseThrow(() -> new ResourceNotFoundException("Ingredient with name " + name + " does not found!"));
     }
 
+    private void validateName(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            throw new ValidationException("Ingredient name must not be empty.");
+        }
+    }
+
     private IngredientDto convertToIngredientDto(Ingredient ingredient) {
         return new IngredientDto(ingredient.getId(), ingredient.getName());
     }
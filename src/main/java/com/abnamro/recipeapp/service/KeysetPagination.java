@@ -0,0 +1,90 @@
+package com.abnamro.recipeapp.service;
+
+import com.abnamro.exception.BadRequestException;
+import com.abnamro.recipeapp.dto.PageDto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+final class KeysetPagination {
+
+    static final int MAX_LIMIT = 100;
+
+    private static final String CURSOR_PREFIX = "id:";
+    private static final String RANKED_CURSOR_PREFIX = "rank:";
+
+    record RankedPosition(float rank, int afterId) {
+        static final RankedPosition START = new RankedPosition(Float.POSITIVE_INFINITY, 0);
+    }
+
+    private KeysetPagination() {
+    }
+
+    static int afterId(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (decoded.startsWith(CURSOR_PREFIX)) {
+                int afterId = Integer.parseInt(decoded.substring(CURSOR_PREFIX.length()));
+                if (afterId >= 0) {
+                    return afterId;
+                }
+            }
+        } catch (IllegalArgumentException ignored) {
+            // falls through to the error below
+        }
+        throw new BadRequestException("Invalid cursor: " + cursor);
+    }
+
+    static RankedPosition rankedPosition(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return RankedPosition.START;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (decoded.startsWith(RANKED_CURSOR_PREFIX)) {
+                String[] parts = decoded.substring(RANKED_CURSOR_PREFIX.length()).split(":", 2);
+                float rank = Float.parseFloat(parts[0]);
+                int afterId = Integer.parseInt(parts[1]);
+                if (Float.isFinite(rank) && afterId >= 0) {
+                    return new RankedPosition(rank, afterId);
+                }
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException ignored) {
+            // falls through to the error below
+        }
+        throw new BadRequestException("Invalid cursor: " + cursor);
+    }
+
+    static void validateLimit(int limit) {
+        if (limit <= 0 || limit > MAX_LIMIT) {
+            throw new BadRequestException("Limit must be between 1 and " + MAX_LIMIT + ".");
+        }
+    }
+
+    static <E, D> PageDto<D> toPage(List<E> rows, int limit, ToIntFunction<E> id, Function<E, D> mapper) {
+        return toPageWithCursor(rows, limit, row -> encode(id.applyAsInt(row)), mapper);
+    }
+
+    static <E, D> PageDto<D> toPageWithCursor(List<E> rows, int limit, Function<E, String> cursor, Function<E, D> mapper) {
+        boolean hasMore = rows.size() > limit;
+        List<E> pageRows = hasMore ? rows.subList(0, limit) : rows;
+        String nextCursor = hasMore ? cursor.apply(pageRows.getLast()) : null;
+        return new PageDto<>(pageRows.stream().map(mapper).toList(), nextCursor);
+    }
+
+    static String encode(int lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((CURSOR_PREFIX + lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String encodeRanked(float rank, int lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((RANKED_CURSOR_PREFIX + rank + ":" + lastId).getBytes(StandardCharsets.UTF_8));
+    }
+}
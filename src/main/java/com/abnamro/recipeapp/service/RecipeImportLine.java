@@ -0,0 +1,6 @@
+package com.abnamro.recipeapp.service;
+
+import com.abnamro.recipeapp.dto.recipe.RecipeRequestDto;
+
+public record RecipeImportLine(long lineNumber, RecipeRequestDto recipe) {
+}
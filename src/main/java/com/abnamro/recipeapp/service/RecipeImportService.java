@@ -0,0 +1,111 @@
+package com.abnamro.recipeapp.service;
+
+import com.abnamro.recipeapp.dto.recipe.RecipeImportResultDto;
+import com.abnamro.recipeapp.dto.recipe.RecipeRequestDto;
+import com.abnamro.recipeapp.entity.Ingredient;
+import com.abnamro.recipeapp.repository.IngredientRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Service
+@Profile("!catalog")
+public class RecipeImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecipeImportService.class);
+
+    private static final int DICTIONARY_PAGE_SIZE = 1000;
+
+    private final RecipeService recipeService;
+    private final IngredientRepository ingredientRepository;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+
+    public RecipeImportService(RecipeService recipeService, IngredientRepository ingredientRepository, ObjectMapper objectMapper,
+                               @Value("${recipe.import.chunk-size:1000}") int chunkSize) {
+        this.recipeService = recipeService;
+        this.ingredientRepository = ingredientRepository;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+    }
+
+    public void importRecipes(InputStream input, OutputStream output) throws IOException {
+        logger.info("Request to import recipes in chunks of {}", chunkSize);
+        Map<Integer, Ingredient> ingredients = loadIngredients();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        List<RecipeImportLine> chunk = new ArrayList<>(chunkSize);
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                chunk.add(new RecipeImportLine(lineNumber, objectMapper.readValue(line, RecipeRequestDto.class)));
+            } catch (JsonProcessingException e) {
+                write(output, new RecipeImportResultDto(lineNumber, null, RecipeService.IMPORT_FAILED, "Malformed recipe: " + e.getOriginalMessage()));
+            }
+            if (chunk.size() == chunkSize) {
+                importChunk(chunk, ingredients, output);
+                chunk = new ArrayList<>(chunkSize);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            importChunk(chunk, ingredients, output);
+        }
+        output.flush();
+        logger.info("Recipe import finished after {} lines", lineNumber);
+    }
+
+    private Map<Integer, Ingredient> loadIngredients() {
+        Map<Integer, Ingredient> ingredients = new HashMap<>();
+        List<Ingredient> page = ingredientRepository.findAll(0, DICTIONARY_PAGE_SIZE);
+        while (!page.isEmpty()) {
+            page.forEach(ingredient -> ingredients.put(ingredient.getId(), ingredient));
+            page = page.size() < DICTIONARY_PAGE_SIZE
+                    ? List.of()
+                    : ingredientRepository.findAll(page.getLast().getId(), DICTIONARY_PAGE_SIZE);
+        }
+        logger.info("Loaded {} ingredients for recipe import", ingredients.size());
+        return ingredients;
+    }
+
+    private void importChunk(List<RecipeImportLine> chunk, Map<Integer, Ingredient> ingredients, OutputStream output) throws IOException {
+        List<RecipeImportResultDto> results;
+        try {
+            results = recipeService.importRecipes(chunk, ingredients);
+        } catch (DataAccessException e) {
+            logger.error("Could not import recipes from lines {} to {}", chunk.getFirst().lineNumber(), chunk.getLast().lineNumber(), e);
+            String error = "Chunk could not be stored: " + e.getMostSpecificCause().getMessage();
+            results = chunk.stream()
+                    .map(line -> new RecipeImportResultDto(line.lineNumber(), null, RecipeService.IMPORT_FAILED, error))
+                    .toList();
+        }
+        for (RecipeImportResultDto result : results) {
+            write(output, result);
+        }
+        output.flush();
+    }
+
+    private void write(OutputStream output, RecipeImportResultDto result) throws IOException {
+        output.write(objectMapper.writeValueAsBytes(result));
+        output.write('\n');
+    }
+}
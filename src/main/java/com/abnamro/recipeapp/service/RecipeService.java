@@ -1,44 +1,101 @@
 package com.abnamro.recipeapp.service;
 
 import com.abnamro.exception.BadRequestException;
+import com.abnamro.exception.DuplicateResourceException;
+import com.abnamro.exception.PreconditionFailedException;
+import com.abnamro.exception.ServiceUnavailableException;
 import com.abnamro.exception.ValidationException;
+import com.abnamro.recipeapp.cache.ExistenceFilter;
+import com.abnamro.recipeapp.cache.RecipeCache;
+import com.abnamro.recipeapp.cache.RecipeJsonCache;
+import com.abnamro.recipeapp.cache.RecipeSearchCache;
+import com.abnamro.recipeapp.dto.PageDto;
+import com.abnamro.recipeapp.dto.Versioned;
 import com.abnamro.recipeapp.dto.recipe.CreateRecipeDto;
+import com.abnamro.recipeapp.dto.recipe.IngredientOperationDto;
+import com.abnamro.recipeapp.dto.ingredient.IngredientCountDto;
+import com.abnamro.recipeapp.dto.recipe.RecipeBatchDto;
 import com.abnamro.recipeapp.dto.recipe.RecipeDto;
+import com.abnamro.recipeapp.dto.recipe.RecipeFacetsDto;
+import com.abnamro.recipeapp.dto.recipe.RecipeImportResultDto;
+import com.abnamro.recipeapp.dto.recipe.RecipePatchDto;
 import com.abnamro.recipeapp.dto.RecipeIngredientDto;
 import com.abnamro.recipeapp.dto.recipe.RecipeRequestDto;
+import com.abnamro.recipeapp.dto.recipe.RecipeSummaryDto;
+import com.abnamro.recipeapp.dto.recipe.SimilarRecipeDto;
 import com.abnamro.recipeapp.entity.Ingredient;
 import com.abnamro.recipeapp.entity.Recipe;
 import com.abnamro.recipeapp.entity.RecipeIngredient;
 import com.abnamro.exception.ResourceNotFoundException;
+import com.abnamro.recipeapp.event.RecipeDeletedEvent;
+import com.abnamro.recipeapp.event.RecipeSavedEvent;
+import com.abnamro.recipeapp.index.RecipeIngredientIndex;
+import com.abnamro.recipeapp.index.RecipeSimilarityIndex;
 import com.abnamro.recipeapp.repository.IngredientRepository;
+import com.abnamro.recipeapp.repository.RankedRecipe;
+import com.abnamro.recipeapp.repository.RecipeFacets;
 import com.abnamro.recipeapp.repository.RecipeRepository;
 import com.abnamro.recipeapp.repository.RecipeIngredientRepository;
-import jakarta.persistence.EntityManager;
-import jakarta.persistence.PersistenceContext;
+import com.abnamro.recipeapp.repository.RecipeSearchCriteria;
+import com.abnamro.recipeapp.repository.RecipeSummary;
 import org.slf4j.Logger;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
+@Profile("!catalog")
 public class RecipeService {
 
     private static final Logger logger = LoggerFactory.getLogger(RecipeService.class);
 
+    private static final int CANDIDATE_BATCH_SIZE = 500;
+    static final int MAX_BATCH_IDS = 500;
+    static final String IMPORT_CREATED = "CREATED";
+    static final String IMPORT_FAILED = "FAILED";
+
     private final RecipeRepository recipeRepository;
     private final RecipeIngredientRepository recipeIngredientRepository;
     private final IngredientRepository ingredientRepository;
-
-    @PersistenceContext
-    private EntityManager entityManager;
-
-    public RecipeService(RecipeRepository recipeRepository, RecipeIngredientRepository recipeIngredientRepository, IngredientRepository ingredientRepository) {
+    private final RecipeIngredientIndex recipeIngredientIndex;
+    private final RecipeSimilarityIndex recipeSimilarityIndex;
+    private final RecipeCache recipeCache;
+    private final RecipeJsonCache recipeJsonCache;
+    private final RecipeSearchCache recipeSearchCache;
+    private final ExistenceFilter existenceFilter;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public RecipeService(RecipeRepository recipeRepository, RecipeIngredientRepository recipeIngredientRepository, IngredientRepository ingredientRepository,
+                         RecipeIngredientIndex recipeIngredientIndex, RecipeSimilarityIndex recipeSimilarityIndex,
+                         RecipeCache recipeCache, RecipeJsonCache recipeJsonCache, RecipeSearchCache recipeSearchCache,
+                         ExistenceFilter existenceFilter, ApplicationEventPublisher eventPublisher) {
         this.recipeRepository = recipeRepository;
         this.recipeIngredientRepository = recipeIngredientRepository;
         this.ingredientRepository = ingredientRepository;
+        this.recipeIngredientIndex = recipeIngredientIndex;
+        this.recipeSimilarityIndex = recipeSimilarityIndex;
+        this.recipeCache = recipeCache;
+        this.recipeJsonCache = recipeJsonCache;
+        this.recipeSearchCache = recipeSearchCache;
+        this.existenceFilter = existenceFilter;
+        this.eventPublisher = eventPublisher;
     }
 
     @Transactional
@@ -47,13 +104,8 @@ public class RecipeService {
         CreateRecipeDto recipe = recipeRequest.recipe();
         List<RecipeIngredientDto> recipeIngredients = recipeRequest.recipeIngredients();
 
-        if (recipe.servings() <= 0) {
-            throw new BadRequestException("Servings must be greater than zero.");
-        }
-
-        if (recipeIngredients == null || recipeIngredients.isEmpty()) {
-            throw new ValidationException("Recipe must have at least one ingredient.");
-        }
+        validateRecipe(recipe.servings(), recipeIngredients);
+        Map<Integer, Ingredient> ingredients = resolveIngredients(recipeIngredients);
 
         Recipe newRecipe = new Recipe();
         newRecipe.setName(recipe.name());
@@ -62,69 +114,103 @@ public class RecipeService {
         newRecipe.setVegetarian(recipe.isVegetarian());
         recipeRepository.save(newRecipe);
 
-        for (var recipeIngredient : recipeIngredients) {
-            Ingredient ingredient = ingredientRepository.findById(recipeIngredient.ingredientId()).orElseThrow(() -> new ResourceNotFoundException("Ingredient with id: " + recipeIngredient.ingredientId() + " does not found!"));
-
-            RecipeIngredient newRecipeIngredient = new RecipeIngredient();
-            newRecipeIngredient.setRecipe(newRecipe);
-            newRecipeIngredient.setIngredient(ingredient);
-            newRecipeIngredient.setAmount(recipeIngredient.amount());
-            newRecipeIngredient.setUnit(recipeIngredient.unit());
-
-            if (newRecipeIngredient.getAmount() <= 0) {
-                throw new ValidationException("Ingredient amount must be greater than zero.");
-            }
-
-            recipeIngredientRepository.save(newRecipeIngredient);
-        }
+        recipeIngredientRepository.saveAll(toRecipeIngredients(newRecipe, recipeIngredients, ingredients));
+        eventPublisher.publishEvent(new RecipeSavedEvent(newRecipe.getId(), newRecipe.getName(), ingredientIds(recipeIngredients), newRecipe.getVegetarian(), newRecipe.getServings()));
         logger.info("Recipe added successfully: {}", recipe);
         return recipe;
     }
 
     @Transactional
-    public RecipeDto updateRecipe(RecipeDto recipeDto) {
-        if (recipeDto.servings() <= 0) {
-            throw new BadRequestException("Servings must be greater than zero.");
-        }
+    public List<RecipeImportResultDto> importRecipes(List<RecipeImportLine> lines, Map<Integer, Ingredient> ingredients) {
+        logger.info("Request to import {} recipes starting at line {}", lines.size(), lines.getFirst().lineNumber());
+        List<RecipeImportResultDto> results = new ArrayList<>(lines.size());
+        List<RecipeIngredient> recipeIngredients = new ArrayList<>();
+        for (RecipeImportLine line : lines) {
+            RecipeRequestDto recipeRequest = line.recipe();
+            try {
+                validateImport(recipeRequest, ingredients);
+            } catch (BadRequestException | ValidationException | ResourceNotFoundException e) {
+                results.add(new RecipeImportResultDto(line.lineNumber(), null, IMPORT_FAILED, e.getMessage()));
+                continue;
+            }
 
-        if (recipeDto.ingredients() == null || recipeDto.ingredients().isEmpty()) {
-            throw new ValidationException("Recipe must have at least one ingredient.");
+            CreateRecipeDto recipe = recipeRequest.recipe();
+            Recipe newRecipe = new Recipe();
+            newRecipe.setName(recipe.name());
+            newRecipe.setInstructions(recipe.instructions());
+            newRecipe.setServings(recipe.servings());
+            newRecipe.setVegetarian(recipe.isVegetarian());
+            recipeRepository.save(newRecipe);
+
+            recipeIngredients.addAll(toRecipeIngredients(newRecipe, recipeRequest.recipeIngredients(), ingredients));
+            eventPublisher.publishEvent(new RecipeSavedEvent(newRecipe.getId(), newRecipe.getName(), ingredientIds(recipeRequest.recipeIngredients()),
+                    newRecipe.getVegetarian(), newRecipe.getServings()));
+            results.add(new RecipeImportResultDto(line.lineNumber(), newRecipe.getId(), IMPORT_CREATED, null));
         }
+        recipeIngredientRepository.saveAll(recipeIngredients);
+        logger.info("Imported {} recipes", results.stream().filter(result -> result.id() != null).count());
+        return results;
+    }
 
-        logger.info("Request to update recipe with id {}: {}", recipeDto.id(), recipeDto);
-        Recipe existingRecipe = recipeRepository.findById(recipeDto.id()).orElseThrow(() -> new ResourceNotFoundException("Recipe with id: " + recipeDto.id() + " does not found!"));
-
-        logger.info("Deleting existing ingredients for recipe id {}", recipeDto.id());
-        existingRecipe.getRecipeIngredients().clear();
+    // expectedVersion comes from If-Match; null updates whatever version is current.
+    @Transactional
+    public Versioned<RecipeDto> updateRecipe(RecipeDto recipeDto, Long expectedVersion) {
+        validateRecipe(recipeDto.servings(), recipeDto.ingredients());
 
-        if (entityManager != null) {
-            entityManager.flush();
-            entityManager.clear();
+        logger.info("Request to update recipe with id {} at version {}: {}", recipeDto.id(), expectedVersion, recipeDto);
+        Recipe existingRecipe = recipeRepository.findById(recipeDto.id()).orElseThrow(() -> new ResourceNotFoundException("Recipe with id: " + recipeDto.id() + " does not found!"));
+        if (expectedVersion != null && existingRecipe.getVersion() != expectedVersion) {
+            throw new PreconditionFailedException("Recipe with id: " + recipeDto.id() + " is at version " + existingRecipe.getVersion()
+                    + ", not " + expectedVersion + ".");
         }
 
-        existingRecipe.setServings(recipeDto.servings());
-        existingRecipe.setVegetarian(recipeDto.isVegetarian());
-        existingRecipe.setName(recipeDto.name());
-        existingRecipe.setInstructions(recipeDto.instructions());
-        recipeRepository.update(existingRecipe);
-
-        for (var recipeIngredient : recipeDto.ingredients()) {
-            Ingredient ingredient = ingredientRepository.findById(recipeIngredient.ingredientId()).orElseThrow(() -> new ResourceNotFoundException("Ingredient with id: " + recipeIngredient.ingredientId() + " does not found!"));
+        boolean scalarChanged = hasScalarChanges(existingRecipe, recipeDto);
+        if (scalarChanged) {
+            existingRecipe.setServings(recipeDto.servings());
+            existingRecipe.setVegetarian(recipeDto.isVegetarian());
+            existingRecipe.setName(recipeDto.name());
+            existingRecipe.setInstructions(recipeDto.instructions());
+        }
+        boolean ingredientsChanged = mergeRecipeIngredients(existingRecipe, recipeDto.ingredients());
+        if (scalarChanged || ingredientsChanged) {
+            existingRecipe.touch();
+            recipeRepository.update(existingRecipe);
+            eventPublisher.publishEvent(new RecipeSavedEvent(recipeDto.id(), existingRecipe.getName(), ingredientIds(recipeDto.ingredients()), recipeDto.isVegetarian(), recipeDto.servings()));
+        }
+        Versioned<RecipeDto> updatedRecipe = new Versioned<>(recipeDto, existingRecipe.getVersion());
+        logger.info("Recipe updated successfully: {}", updatedRecipe);
+        return updatedRecipe;
+    }
 
-            RecipeIngredient newRecipeIngredient = new RecipeIngredient();
-            newRecipeIngredient.setRecipe(existingRecipe);
-            newRecipeIngredient.setIngredient(ingredient);
-            newRecipeIngredient.setAmount(recipeIngredient.amount());
-            newRecipeIngredient.setUnit(recipeIngredient.unit());
+    // expectedVersion comes from If-Match, as for updateRecipe.
+    @Transactional
+    public Versioned<RecipeDto> patchRecipe(Integer id, RecipePatchDto patch, Long expectedVersion) {
+        logger.info("Request to patch recipe with id {} at version {}: {}", id, expectedVersion, patch);
+        validatePatch(patch);
+        Recipe existingRecipe = recipeRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("Recipe with id: " + id + " does not found!"));
+        if (expectedVersion != null && existingRecipe.getVersion() != expectedVersion) {
+            throw new PreconditionFailedException("Recipe with id: " + id + " is at version " + existingRecipe.getVersion()
+                    + ", not " + expectedVersion + ".");
+        }
 
-            if (newRecipeIngredient.getAmount() <= 0) {
-                throw new ValidationException("Ingredient amount must be greater than zero.");
-            }
+        boolean recipeChanged = applyScalarPatch(existingRecipe, patch);
+        List<IngredientOperationDto> operations = patch.ingredientOperations() == null ? List.of() : patch.ingredientOperations();
+        applyIngredientOperations(existingRecipe, operations);
+        if (existingRecipe.getRecipeIngredients().isEmpty()) {
+            throw new ValidationException("Recipe must have at least one ingredient.");
+        }
 
-            recipeIngredientRepository.save(newRecipeIngredient);
+        if (recipeChanged || !operations.isEmpty()) {
+            existingRecipe.touch();
+            recipeRepository.update(existingRecipe);
+            List<Integer> ingredientIds = existingRecipe.getRecipeIngredients().stream()
+                    .map(recipeIngredient -> recipeIngredient.getIngredient().getId())
+                    .toList();
+            eventPublisher.publishEvent(new RecipeSavedEvent(id, existingRecipe.getName(), ingredientIds, existingRecipe.getVegetarian(), existingRecipe.getServings()));
         }
-        logger.info("Recipe updated successfully: {}", recipeDto);
-        return recipeDto;
+        Versioned<RecipeDto> patchedRecipe = new Versioned<>(convertToRecipeDto(existingRecipe), existingRecipe.getVersion());
+        logger.info("Recipe patched successfully: {}", patchedRecipe);
+        return patchedRecipe;
     }
 
     @Transactional
@@ -133,98 +219,453 @@ public class RecipeService {
         if (recipeRepository.notExistsById(id))
             throw new ResourceNotFoundException("Recipe with id " + id + " not found");
         recipeRepository.deleteById(id);
+        eventPublisher.publishEvent(new RecipeDeletedEvent(id));
         logger.info("Recipe with id {} deleted successfully", id);
     }
 
     @Transactional(readOnly = true)
-    public List<RecipeDto> getAllRecipes() {
-        logger.info("Request to get all recipes");
-        List<Recipe> recipes = recipeRepository.findAll();
-        List<RecipeDto> recipeDto = recipes.stream()
-                .map(this::convertToRecipeDto)
-                .toList();
-        logger.info("Retrieved recipes: {}", recipeDto);
-        return recipeDto;
+    public PageDto<RecipeDto> getAllRecipes(String cursor, int limit) {
+        logger.info("Request to get all recipes after cursor {} with limit {}", cursor, limit);
+        PageDto<RecipeDto> recipes = findPage(RecipeSearchCriteria.all(), cursor, limit);
+        logger.info("Retrieved recipes: {}", recipes);
+        return recipes;
     }
 
     @Transactional(readOnly = true)
-    public List<RecipeDto> searchRecipes(Boolean vegetarian, Integer servings, List<Integer> includeIngredients, List<Integer> excludeIngredients, String instruction) {
-        logger.info("Request to search recipes with parameters - vegetarian: {}, servings: {}, includeIngredients: {}, excludeIngredients: {}, instruction: {}",
-                vegetarian, servings, includeIngredients, excludeIngredients, instruction);
-        List<Recipe> recipes = recipeRepository.findAll();
-        if (vegetarian != null) {
-            recipes = recipes.stream().filter(r -> r.getVegetarian() == vegetarian).toList();
-        }
-        if (servings != null) {
-            recipes = recipes.stream().filter(r -> r.getServings() == servings).toList();
-        }
-        if (includeIngredients != null && !includeIngredients.isEmpty()) {
-            recipes = recipes.stream().filter(r ->
-                    includeIngredients.stream().allMatch(ingredient ->
-                            r.getRecipeIngredients().stream()
-                                    .anyMatch(ri -> ri.getIngredient().getId().equals(ingredient))
-                    )
-            ).toList();
-        }
-        if (excludeIngredients != null && !excludeIngredients.isEmpty()) {
-            recipes = recipes.stream().filter(r ->
-                    excludeIngredients.stream().noneMatch(ingredient ->
-                            r.getRecipeIngredients().stream()
-                                    .anyMatch(ri -> ri.getIngredient().getId().equals(ingredient))
-                    )
-            ).toList();
-        }
-        if (instruction != null && !instruction.isEmpty()) {
-            recipes = recipes.stream().filter(r -> r.getInstructions().toLowerCase().contains(instruction.toLowerCase())).toList();
-        }
-        List<RecipeDto> recipeDtos = recipes.stream().map(this::convertToRecipeDto).toList();
+    public PageDto<RecipeSummaryDto> getAllRecipeSummaries(String cursor, int limit) {
+        logger.info("Request to get all recipe summaries after cursor {} with limit {}", cursor, limit);
+        PageDto<RecipeSummaryDto> summaries = findSummaryPage(RecipeSearchCriteria.all(), cursor, limit);
+        logger.info("Retrieved recipe summaries: {}", summaries);
+        return summaries;
+    }
+
+    @Transactional(readOnly = true)
+    public PageDto<RecipeDto> searchRecipes(Boolean vegetarian, Integer servings, List<Integer> includeIngredients, List<Integer> excludeIngredients, String instruction, String cursor, int limit) {
+        logger.info("Request to search recipes with parameters - vegetarian: {}, servings: {}, includeIngredients: {}, excludeIngredients: {}, instruction: {}, cursor: {}, limit: {}",
+                vegetarian, servings, includeIngredients, excludeIngredients, instruction, cursor, limit);
+        RecipeSearchCriteria criteria = new RecipeSearchCriteria(vegetarian, servings, includeIngredients, excludeIngredients, instruction);
+        PageDto<RecipeDto> recipeDtos = findPage(criteria, cursor, limit);
         logger.info("Retrieved recipes: {}", recipeDtos);
         return recipeDtos;
     }
 
     @Transactional(readOnly = true)
-    public List<RecipeDto> findByVegetarianRecipes(boolean isVegetarian) {
+    public PageDto<RecipeSummaryDto> searchRecipeSummaries(Boolean vegetarian, Integer servings, List<Integer> includeIngredients, List<Integer> excludeIngredients, String instruction, String cursor, int limit) {
+        logger.info("Request to search recipe summaries with parameters - vegetarian: {}, servings: {}, includeIngredients: {}, excludeIngredients: {}, instruction: {}, cursor: {}, limit: {}",
+                vegetarian, servings, includeIngredients, excludeIngredients, instruction, cursor, limit);
+        RecipeSearchCriteria criteria = new RecipeSearchCriteria(vegetarian, servings, includeIngredients, excludeIngredients, instruction);
+        PageDto<RecipeSummaryDto> summaries = findSummaryPage(criteria, cursor, limit);
+        logger.info("Retrieved recipe summaries: {}", summaries);
+        return summaries;
+    }
+
+    @Transactional(readOnly = true)
+    public RecipeFacetsDto searchFacets(Boolean vegetarian, Integer servings, List<Integer> includeIngredients, List<Integer> excludeIngredients, String instruction, int topIngredients) {
+        logger.info("Request to count search facets with parameters - vegetarian: {}, servings: {}, includeIngredients: {}, excludeIngredients: {}, instruction: {}, topIngredients: {}",
+                vegetarian, servings, includeIngredients, excludeIngredients, instruction, topIngredients);
+        if (topIngredients < 1 || topIngredients > KeysetPagination.MAX_LIMIT) {
+            throw new BadRequestException("topIngredients must be between 1 and " + KeysetPagination.MAX_LIMIT + ".");
+        }
+        RecipeSearchCriteria criteria = new RecipeSearchCriteria(vegetarian, servings, includeIngredients, excludeIngredients, instruction);
+        RecipeFacets facets = recipeRepository.facets(criteria, topIngredients);
+        RecipeFacetsDto facetsDto = new RecipeFacetsDto(
+                facets.vegetarianCounts().getOrDefault(true, 0L),
+                facets.vegetarianCounts().getOrDefault(false, 0L),
+                facets.servingsCounts(),
+                facets.topIngredients().stream()
+                        .map(ingredient -> new IngredientCountDto(ingredient.ingredientId(), ingredient.name(), ingredient.count()))
+                        .toList());
+        logger.info("Retrieved search facets: {}", facetsDto);
+        return facetsDto;
+    }
+
+    @Transactional(readOnly = true)
+    public PageDto<RecipeDto> findMakeableRecipes(List<Integer> ingredientIds, Integer maxMissing, String cursor, int limit) {
+        logger.info("Request to find recipes makeable from ingredients {} missing at most {}", ingredientIds, maxMissing);
+        if (ingredientIds == null || ingredientIds.isEmpty()) {
+            throw new BadRequestException("At least one ingredient id is required.");
+        }
+        int tolerance = maxMissing == null ? 0 : maxMissing;
+        if (tolerance < 0) {
+            throw new BadRequestException("Missing ingredient tolerance must not be negative.");
+        }
+        KeysetPagination.validateLimit(limit);
+        List<Recipe> rows = recipeRepository.findMakeable(ingredientIds.stream().distinct().toList(), tolerance,
+                KeysetPagination.afterId(cursor), limit + 1);
+        PageDto<RecipeDto> recipes = KeysetPagination.toPage(rows, limit, Recipe::getId, this::convertToRecipeDto);
+        logger.info("Retrieved recipes: {}", recipes);
+        return recipes;
+    }
+
+    @Transactional(readOnly = true)
+    public PageDto<RecipeDto> findByVegetarianRecipes(boolean isVegetarian, String cursor, int limit) {
         logger.info("Request to find recipes by vegetarian status: {}", isVegetarian);
-        List<RecipeDto> recipes = recipeRepository.findByVegetarian(isVegetarian).stream().map(this::convertToRecipeDto)
-                .toList();
+        PageDto<RecipeDto> recipes = findPage(RecipeSearchCriteria.vegetarian(isVegetarian), cursor, limit);
         logger.info("Retrieved vegetarian recipes: {}", recipes);
         return recipes;
     }
 
-    @Transactional(readOnly = true)
     public RecipeDto getRecipeByName(String name) {
         logger.info("Request to find recipes by name {}", name);
-        Recipe recipe = recipeRepository.findByName(name).orElseThrow(() -> new ResourceNotFoundException("Recipe with name: " + name + " does not found!"));
+        RecipeDto recipe = recipeCache.getByName(name, this::loadRecipeIdByName, this::loadRecipeById).value();
         logger.info("Retrieved recipe: {}", recipe);
-        return convertToRecipeDto(recipe);
+        return recipe;
     }
 
     @Transactional(readOnly = true)
+    public List<RecipeDto> searchByName(String query, int limit) {
+        logger.info("Request to search recipes by name similar to {}", query);
+        if (query == null || query.isBlank()) {
+            throw new BadRequestException("Search query must not be empty.");
+        }
+        KeysetPagination.validateLimit(limit);
+        List<RecipeDto> recipes = recipeRepository.searchNames(query.trim(), limit).stream()
+                .map(ranked -> convertToRecipeDto(ranked.recipe()))
+                .toList();
+        logger.info("Retrieved recipes: {}", recipes);
+        return recipes;
+    }
+
     public RecipeDto getRecipeById(Integer id) {
+        return getVersionedRecipeById(id).value();
+    }
+
+    public Versioned<RecipeDto> getVersionedRecipeById(Integer id) {
         logger.info("Request to find recipes by id {}", id);
-        Recipe recipe = recipeRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("Recipe with id: " + id + " does not found!"));
+        Versioned<RecipeDto> recipe = recipeCache.getById(id, this::loadRecipeById);
         logger.info("Retrieved recipe: {}", recipe);
-        return convertToRecipeDto(recipe);
+        return recipe;
+    }
+
+    // Loaded straight from the repository rather than through recipeCache, so a hot recipe is not held twice.
+    public Versioned<byte[]> getRecipeJsonById(Integer id) {
+        logger.info("Request to find recipe JSON by id {}", id);
+        Versioned<byte[]> recipe = recipeJsonCache.getById(id, this::loadRecipeById);
+        logger.info("Retrieved {} bytes of recipe JSON for id {} at version {}", recipe.value().length, id, recipe.version());
+        return recipe;
+    }
+
+    // Enough to answer a conditional GET: read from the caches or the recipe row alone, never the ingredient rows.
+    public long getRecipeVersion(Integer id) {
+        logger.info("Request to get version of recipe with id {}", id);
+        long version = recipeJsonCache.cachedVersion(id)
+                .or(() -> recipeCache.cachedVersion(id))
+                .or(() -> existenceFilter.find(ExistenceFilter.Lookup.RECIPE_ID, id, () -> recipeRepository.findVersionById(id)))
+                .orElseThrow(() -> new ResourceNotFoundException("Recipe with id: " + id + " does not found!"));
+        logger.info("Recipe with id {} is at version {}", id, version);
+        return version;
     }
 
     @Transactional(readOnly = true)
-    public List<RecipeDto> findByServings(int servings) {
-        logger.info("Request to find recipes by servings: {}", servings);
-        List<RecipeDto> recipes = recipeRepository.findByServings(servings).stream().map(this::convertToRecipeDto)
+    public RecipeBatchDto getRecipesByIds(List<Integer> ids) {
+        logger.info("Request to find recipes by ids {}", ids);
+        if (ids == null || ids.isEmpty()) {
+            throw new BadRequestException("At least one recipe id is required.");
+        }
+        if (ids.stream().anyMatch(Objects::isNull)) {
+            throw new BadRequestException("Recipe ids must not be null.");
+        }
+        List<Integer> distinctIds = ids.stream().distinct().toList();
+        if (distinctIds.size() > MAX_BATCH_IDS) {
+            throw new BadRequestException("At most " + MAX_BATCH_IDS + " recipe ids can be requested at once.");
+        }
+        List<RecipeDto> recipes = recipeRepository.findAllByIds(distinctIds).stream()
+                .map(this::convertToRecipeDto)
                 .toList();
+        Set<Integer> foundIds = recipes.stream().map(RecipeDto::id).collect(Collectors.toSet());
+        RecipeBatchDto batch = new RecipeBatchDto(recipes, distinctIds.stream().filter(id -> !foundIds.contains(id)).toList());
+        logger.info("Retrieved recipes: {}", batch);
+        return batch;
+    }
+
+    @Transactional(readOnly = true)
+    public List<SimilarRecipeDto> findSimilarRecipes(Integer id, int k) {
+        logger.info("Request to find {} recipes similar to recipe with id {}", k, id);
+        if (k < 1 || k > KeysetPagination.MAX_LIMIT) {
+            throw new BadRequestException("k must be between 1 and " + KeysetPagination.MAX_LIMIT + ".");
+        }
+        if (recipeRepository.notExistsById(id)) {
+            throw new ResourceNotFoundException("Recipe with id " + id + " not found");
+        }
+        List<RecipeSimilarityIndex.SimilarRecipe> similar = recipeSimilarityIndex.findSimilar(id, k)
+                .orElseThrow(() -> new ServiceUnavailableException("Similar recipes are unavailable until the recipe indexes are rebuilt."));
+        Map<Integer, Recipe> recipesById = recipeRepository.findAllByIds(similar.stream().map(RecipeSimilarityIndex.SimilarRecipe::recipeId).toList())
+                .stream()
+                .collect(Collectors.toMap(Recipe::getId, Function.identity()));
+        List<SimilarRecipeDto> recipes = similar.stream()
+                .filter(candidate -> recipesById.containsKey(candidate.recipeId()))
+                .map(candidate -> new SimilarRecipeDto(convertToRecipeDto(recipesById.get(candidate.recipeId())), candidate.similarity()))
+                .toList();
+        logger.info("Retrieved similar recipes: {}", recipes);
+        return recipes;
+    }
+
+    @Transactional(readOnly = true)
+    public PageDto<RecipeDto> findByServings(int servings, String cursor, int limit) {
+        logger.info("Request to find recipes by servings: {}", servings);
+        PageDto<RecipeDto> recipes = findPage(RecipeSearchCriteria.servings(servings), cursor, limit);
         logger.info("Retrieved recipes: {}", recipes);
         return recipes;
     }
 
     @Transactional(readOnly = true)
-    public List<RecipeDto> findByInstructionsContaining(String text) {
-        logger.info("Request to find recipes by instructions containing: {}", text);
-        List<RecipeDto> recipes = recipeRepository.findByInstructionsContaining(text).stream().map(this::convertToRecipeDto)
-                .toList();
+    public PageDto<RecipeDto> findByInstructionsContaining(String text, String cursor, int limit) {
+        logger.info("Request to find recipes by instructions matching: {}", text);
+        KeysetPagination.validateLimit(limit);
+        KeysetPagination.RankedPosition position = KeysetPagination.rankedPosition(cursor);
+        List<RankedRecipe> rankedRecipes = recipeRepository.searchInstructions(text, position.rank(), position.afterId(), limit + 1);
+        PageDto<RecipeDto> recipes = KeysetPagination.toPageWithCursor(rankedRecipes, limit,
+                ranked -> KeysetPagination.encodeRanked(ranked.rank(), ranked.recipe().getId()),
+                ranked -> convertToRecipeDto(ranked.recipe()));
         logger.info("Retrieved recipes: {}", recipes);
         return recipes;
     }
 
+    private PageDto<RecipeDto> findPage(RecipeSearchCriteria criteria, String cursor, int limit) {
+        KeysetPagination.validateLimit(limit);
+        List<Recipe> recipes = recipeRepository.findAllByIds(findPageIds(criteria, KeysetPagination.afterId(cursor), limit + 1));
+        return KeysetPagination.toPage(recipes, limit, Recipe::getId, this::convertToRecipeDto);
+    }
+
+    private PageDto<RecipeSummaryDto> findSummaryPage(RecipeSearchCriteria criteria, String cursor, int limit) {
+        KeysetPagination.validateLimit(limit);
+        List<RecipeSummary> summaries = recipeRepository.findSummariesByIds(findPageIds(criteria, KeysetPagination.afterId(cursor), limit + 1));
+        return KeysetPagination.toPage(summaries, limit, RecipeSummary::id, this::convertToRecipeSummaryDto);
+    }
+
+    private List<Integer> findPageIds(RecipeSearchCriteria criteria, int afterId, int limit) {
+        return recipeSearchCache.findPageIds(criteria, afterId, limit, this::searchIds);
+    }
+
+    private List<Integer> searchIds(RecipeSearchCriteria criteria, int afterId, int limit) {
+        Optional<RoaringBitmap> candidates = criteria.hasIngredientFilters()
+                ? recipeIngredientIndex.candidates(criteria.includeIngredients(), criteria.excludeIngredients())
+                : Optional.empty();
+        return candidates.isPresent()
+                ? searchCandidates(criteria.withoutIngredientFilters(), candidates.get(), afterId, limit)
+                : recipeRepository.searchIds(criteria, afterId, limit);
+    }
+
+    private List<Integer> searchCandidates(RecipeSearchCriteria criteria, RoaringBitmap candidates, int afterId, int limit) {
+        PeekableIntIterator iterator = candidates.getIntIterator();
+        iterator.advanceIfNeeded(afterId + 1);
+        List<Integer> ids = new ArrayList<>();
+        while (ids.size() < limit && iterator.hasNext()) {
+            List<Integer> batch = new ArrayList<>(CANDIDATE_BATCH_SIZE);
+            while (batch.size() < CANDIDATE_BATCH_SIZE && iterator.hasNext()) {
+                batch.add(iterator.next());
+            }
+            ids.addAll(recipeRepository.searchIdsWithin(criteria, batch, limit - ids.size()));
+        }
+        return ids;
+    }
+
+    private void validateRecipe(int servings, List<RecipeIngredientDto> recipeIngredients) {
+        if (servings <= 0) {
+            throw new BadRequestException("Servings must be greater than zero.");
+        }
+
+        if (recipeIngredients == null || recipeIngredients.isEmpty()) {
+            throw new ValidationException("Recipe must have at least one ingredient.");
+        }
+
+        Set<Integer> ingredientIds = new HashSet<>();
+        for (var recipeIngredient : recipeIngredients) {
+            if (recipeIngredient.amount() <= 0) {
+                throw new ValidationException("Ingredient amount must be greater than zero.");
+            }
+            if (!ingredientIds.add(recipeIngredient.ingredientId())) {
+                throw new ValidationException("Ingredient with id: " + recipeIngredient.ingredientId() + " is listed more than once.");
+            }
+        }
+    }
+
+    private boolean hasScalarChanges(Recipe recipe, RecipeDto recipeDto) {
+        return !Objects.equals(recipe.getName(), recipeDto.name())
+                || !Objects.equals(recipe.getInstructions(), recipeDto.instructions())
+                || recipe.getVegetarian() != recipeDto.isVegetarian()
+                || recipe.getServings() != recipeDto.servings();
+    }
+
+    private boolean mergeRecipeIngredients(Recipe recipe, List<RecipeIngredientDto> recipeIngredients) {
+        Map<Integer, RecipeIngredientDto> requested = recipeIngredients.stream()
+                .collect(Collectors.toMap(RecipeIngredientDto::ingredientId, Function.identity()));
+        Map<Integer, RecipeIngredient> existing = new HashMap<>();
+        boolean changed = false;
+        Iterator<RecipeIngredient> iterator = recipe.getRecipeIngredients().iterator();
+        while (iterator.hasNext()) {
+            RecipeIngredient recipeIngredient = iterator.next();
+            RecipeIngredientDto change = requested.get(recipeIngredient.getIngredient().getId());
+            if (change == null) {
+                iterator.remove();
+                changed = true;
+                continue;
+            }
+            existing.put(change.ingredientId(), recipeIngredient);
+            if (Double.compare(recipeIngredient.getAmount(), change.amount()) != 0) {
+                recipeIngredient.setAmount(change.amount());
+                changed = true;
+            }
+            if (!Objects.equals(recipeIngredient.getUnit(), change.unit())) {
+                recipeIngredient.setUnit(change.unit());
+                changed = true;
+            }
+        }
+
+        List<RecipeIngredientDto> added = recipeIngredients.stream()
+                .filter(recipeIngredient -> !existing.containsKey(recipeIngredient.ingredientId()))
+                .toList();
+        addRecipeIngredients(recipe, added);
+        return changed || !added.isEmpty();
+    }
+
+    private void validatePatch(RecipePatchDto patch) {
+        if (patch.servings() != null && patch.servings() <= 0) {
+            throw new BadRequestException("Servings must be greater than zero.");
+        }
+        if (patch.name() != null && patch.name().isBlank()) {
+            throw new ValidationException("Recipe name must not be blank.");
+        }
+        if (patch.instructions() != null && patch.instructions().isBlank()) {
+            throw new ValidationException("Recipe instructions must not be blank.");
+        }
+        if (patch.ingredientOperations() == null) {
+            return;
+        }
+
+        Set<Integer> ingredientIds = new HashSet<>();
+        for (var operation : patch.ingredientOperations()) {
+            IngredientOperation kind = IngredientOperation.from(operation.op());
+            if (operation.ingredientId() == null) {
+                throw new ValidationException("Ingredient operation " + operation.op() + " requires an ingredientId.");
+            }
+            if (!ingredientIds.add(operation.ingredientId())) {
+                throw new ValidationException("Ingredient with id: " + operation.ingredientId() + " is listed more than once.");
+            }
+            if (kind == IngredientOperation.ADD && (operation.amount() == null || operation.unit() == null)) {
+                throw new ValidationException("Adding ingredient with id: " + operation.ingredientId() + " requires an amount and a unit.");
+            }
+            if (kind != IngredientOperation.REMOVE && operation.amount() != null && operation.amount() <= 0) {
+                throw new ValidationException("Ingredient amount must be greater than zero.");
+            }
+        }
+    }
+
+    private boolean applyScalarPatch(Recipe recipe, RecipePatchDto patch) {
+        boolean changed = false;
+        if (patch.name() != null && !patch.name().equals(recipe.getName())) {
+            recipe.setName(patch.name());
+            changed = true;
+        }
+        if (patch.instructions() != null && !patch.instructions().equals(recipe.getInstructions())) {
+            recipe.setInstructions(patch.instructions());
+            changed = true;
+        }
+        if (patch.isVegetarian() != null && patch.isVegetarian() != recipe.getVegetarian()) {
+            recipe.setVegetarian(patch.isVegetarian());
+            changed = true;
+        }
+        if (patch.servings() != null && patch.servings() != recipe.getServings()) {
+            recipe.setServings(patch.servings());
+            changed = true;
+        }
+        return changed;
+    }
+
+    private void applyIngredientOperations(Recipe recipe, List<IngredientOperationDto> operations) {
+        Map<Integer, RecipeIngredient> existing = recipe.getRecipeIngredients().stream()
+                .collect(Collectors.toMap(recipeIngredient -> recipeIngredient.getIngredient().getId(), Function.identity()));
+        List<RecipeIngredientDto> added = new ArrayList<>();
+        for (var operation : operations) {
+            RecipeIngredient current = existing.get(operation.ingredientId());
+            IngredientOperation kind = IngredientOperation.from(operation.op());
+            if (kind == IngredientOperation.ADD) {
+                if (current != null) {
+                    throw new DuplicateResourceException("Ingredient with id: " + operation.ingredientId() + " is already part of recipe with id: " + recipe.getId());
+                }
+                added.add(new RecipeIngredientDto(operation.amount(), operation.unit(), operation.ingredientId()));
+                continue;
+            }
+            if (current == null) {
+                throw new ResourceNotFoundException("Ingredient with id: " + operation.ingredientId() + " is not part of recipe with id: " + recipe.getId());
+            }
+            if (kind == IngredientOperation.REMOVE) {
+                recipe.getRecipeIngredients().remove(current);
+                continue;
+            }
+            if (operation.amount() != null) {
+                current.setAmount(operation.amount());
+            }
+            if (operation.unit() != null) {
+                current.setUnit(operation.unit());
+            }
+        }
+        addRecipeIngredients(recipe, added);
+    }
+
+    private void addRecipeIngredients(Recipe recipe, List<RecipeIngredientDto> added) {
+        if (added.isEmpty()) {
+            return;
+        }
+        logger.info("Adding ingredients {} to recipe id {}", ingredientIds(added), recipe.getId());
+        List<RecipeIngredient> newRecipeIngredients = toRecipeIngredients(recipe, added, resolveIngredients(added));
+        recipe.getRecipeIngredients().addAll(newRecipeIngredients);
+        recipeIngredientRepository.saveAll(newRecipeIngredients);
+    }
+
+    private void validateImport(RecipeRequestDto recipeRequest, Map<Integer, Ingredient> ingredients) {
+        if (recipeRequest.recipe() == null) {
+            throw new ValidationException("Recipe is missing.");
+        }
+        validateRecipe(recipeRequest.recipe().servings(), recipeRequest.recipeIngredients());
+        List<Integer> missingIds = ingredientIds(recipeRequest.recipeIngredients()).stream()
+                .filter(id -> !ingredients.containsKey(id))
+                .toList();
+        if (!missingIds.isEmpty()) {
+            throw new ResourceNotFoundException("Ingredients with ids: " + missingIds + " do not exist!");
+        }
+    }
+
+    private Map<Integer, Ingredient> resolveIngredients(List<RecipeIngredientDto> recipeIngredients) {
+        List<Integer> ids = ingredientIds(recipeIngredients);
+        Map<Integer, Ingredient> ingredients = ingredientRepository.findAllByIds(ids).stream()
+                .collect(Collectors.toMap(Ingredient::getId, Function.identity()));
+        List<Integer> missingIds = ids.stream().filter(id -> !ingredients.containsKey(id)).toList();
+        if (!missingIds.isEmpty()) {
+            throw new ResourceNotFoundException("Ingredients with ids: " + missingIds + " do not exist!");
+        }
+        return ingredients;
+    }
+
+    private List<RecipeIngredient> toRecipeIngredients(Recipe recipe, List<RecipeIngredientDto> recipeIngredients, Map<Integer, Ingredient> ingredients) {
+        return recipeIngredients.stream()
+                .map(recipeIngredient -> {
+                    RecipeIngredient newRecipeIngredient = new RecipeIngredient();
+                    newRecipeIngredient.setRecipe(recipe);
+                    newRecipeIngredient.setIngredient(ingredients.get(recipeIngredient.ingredientId()));
+                    newRecipeIngredient.setAmount(recipeIngredient.amount());
+                    newRecipeIngredient.setUnit(recipeIngredient.unit());
+                    return newRecipeIngredient;
+                })
+                .toList();
+    }
+
+    private List<Integer> ingredientIds(List<RecipeIngredientDto> recipeIngredients) {
+        return recipeIngredients.stream().map(RecipeIngredientDto::ingredientId).toList();
+    }
+
+    // Cache loaders: the recipe and its ingredients come back in one query, so no transaction is held open.
+    private Versioned<RecipeDto> loadRecipeById(Integer id) {
+        return existenceFilter.find(ExistenceFilter.Lookup.RECIPE_ID, id, () -> recipeRepository.findAllByIds(List.of(id)).stream().findFirst())
+                .map(recipe -> new Versioned<>(convertToRecipeDto(recipe), recipe.getVersion()))
+                .orElseThrow(() -> new ResourceNotFoundException("Recipe with id: " + id + " does not found!"));
+    }
+
+    private Integer loadRecipeIdByName(String name) {
+        return existenceFilter.find(ExistenceFilter.Lookup.RECIPE_NAME, name, () -> recipeRepository.findIdByName(name))
+                .orElseThrow(() -> new ResourceNotFoundException("Recipe with name: " + name + " does not found!"));
+    }
+
     private RecipeDto convertToRecipeDto(Recipe recipe) {
         return new RecipeDto(
                 recipe.getId(),
@@ -239,6 +680,16 @@ public class RecipeService {
         );
     }
 
+    private RecipeSummaryDto convertToRecipeSummaryDto(RecipeSummary summary) {
+        return new RecipeSummaryDto(
+                summary.id(),
+                summary.name(),
+                summary.vegetarian(),
+                summary.servings(),
+                summary.ingredientCount()
+        );
+    }
+
     private RecipeIngredientDto convertToRecipeIngredientDto(RecipeIngredient ingredient) {
         return new RecipeIngredientDto(
                 ingredient.getAmount(),
@@ -0,0 +1,4 @@
+ALTER TABLE recipe
+    ADD COLUMN instructions_tsv TSVECTOR GENERATED ALWAYS AS (to_tsvector('english', instructions)) STORED;
+
+CREATE INDEX idx_recipe_instructions_tsv ON recipe USING GIN (instructions_tsv);
@@ -0,0 +1,5 @@
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX idx_recipe_name ON recipe (name);
+
+CREATE INDEX idx_recipe_name_trgm ON recipe USING GIN (name gin_trgm_ops);
@@ -0,0 +1,6 @@
+-- Hibernate reserves blocks of ids with the pooled-lo optimizer; the increment must match the entities' allocationSize.
+ALTER SEQUENCE ingredient_ingredient_id_seq INCREMENT BY 50;
+
+ALTER SEQUENCE recipe_recipe_id_seq INCREMENT BY 50;
+
+ALTER SEQUENCE recipe_ingredients_recipe_ingredient_id_seq INCREMENT BY 50;
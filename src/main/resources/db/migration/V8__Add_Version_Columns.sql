@@ -0,0 +1,8 @@
+-- Bumped on every write; HTTP ETags are derived from version and JPA uses it for optimistic locking.
+ALTER TABLE recipe
+    ADD COLUMN version BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN updated_at TIMESTAMPTZ NOT NULL DEFAULT now();
+
+ALTER TABLE ingredient
+    ADD COLUMN version BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN updated_at TIMESTAMPTZ NOT NULL DEFAULT now();
@@ -0,0 +1,2 @@
+-- Lets pantry searches find the recipes using any of a set of ingredients without scanning every recipe's rows.
+CREATE INDEX idx_recipe_ingredients_ingredient ON recipe_ingredients (ingredient_id, recipe_id);
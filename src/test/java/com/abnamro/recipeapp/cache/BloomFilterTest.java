@@ -0,0 +1,58 @@
+package com.abnamro.recipeapp.cache;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    @Test
+    @DisplayName("Should never rule out a value that was put")
+    void mightContain_shouldHaveNoFalseNegatives() {
+        // Given
+        BloomFilter underTest = new BloomFilter(10_000, 0.01);
+
+        // When
+        for (int id = 1; id <= 10_000; id++) {
+            underTest.put(id);
+            underTest.put("Recipe " + id);
+        }
+
+        // Then
+        for (int id = 1; id <= 10_000; id++) {
+            assertTrue(underTest.mightContain(id));
+            assertTrue(underTest.mightContain("Recipe " + id));
+        }
+    }
+
+    @Test
+    @DisplayName("Should keep false positives close to the configured probability")
+    void mightContain_shouldRespectFalsePositiveProbability() {
+        // Given
+        BloomFilter underTest = new BloomFilter(10_000, 0.01);
+        for (int id = 1; id <= 10_000; id++) {
+            underTest.put(id);
+        }
+
+        // When
+        long falsePositives = 0;
+        for (int id = 10_001; id <= 110_000; id++) {
+            if (underTest.mightContain(id)) {
+                falsePositives++;
+            }
+        }
+
+        // Then
+        assertTrue(falsePositives < 2_000, "False positives: " + falsePositives);
+        assertTrue(underTest.sizeInBytes() < 16_000);
+    }
+
+    @Test
+    @DisplayName("Should reject sizes it cannot satisfy")
+    void constructor_shouldRejectInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(1000, 0));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(1000, 1));
+    }
+}
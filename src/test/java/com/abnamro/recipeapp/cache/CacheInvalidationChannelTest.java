@@ -0,0 +1,87 @@
+package com.abnamro.recipeapp.cache;
+
+import com.abnamro.recipeapp.event.IngredientsSavedEvent;
+import com.abnamro.recipeapp.event.RecipeDeletedEvent;
+import com.abnamro.recipeapp.event.RecipeSavedEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class CacheInvalidationChannelTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private CacheInvalidationChannel underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CacheInvalidationChannel(jdbcTemplate, "recipe_cache_invalidation");
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clear();
+    }
+
+    @Test
+    @DisplayName("Should send all notifications of a transaction in one statement before it commits")
+    void publish_shouldBatchNotificationsPerTransaction() {
+        // Given
+        underTest.onRecipeSaved(new RecipeSavedEvent(1, "Pasta", List.of(10), true, 2));
+        underTest.onRecipeSaved(new RecipeSavedEvent(2, "Soup", List.of(10), true, 2));
+        underTest.onRecipeSaved(new RecipeSavedEvent(1, "Pasta", List.of(11), true, 2));
+        underTest.onIngredientsSaved(new IngredientsSavedEvent(List.of(10, 11), List.of("Basil", "Tomato")));
+        underTest.onRecipeDeleted(new RecipeDeletedEvent(3));
+        verifyNoInteractions(jdbcTemplate);
+
+        // When
+        TransactionSynchronizationUtils.triggerBeforeCommit(false);
+
+        // Then
+        ArgumentCaptor<String[]> payloads = ArgumentCaptor.forClass(String[].class);
+        verify(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), eq("recipe_cache_invalidation"), payloads.capture());
+        String node = underTest.nodeId();
+        assertArrayEquals(new String[]{
+                node + ":RECIPE:SAVED:1",
+                node + ":RECIPE:SAVED:2",
+                node + ":INGREDIENT:SAVED:10",
+                node + ":INGREDIENT:SAVED:11",
+                node + ":RECIPE:DELETED:3"
+        }, payloads.getValue());
+    }
+
+    @Test
+    @DisplayName("Should not send replayed changes back out")
+    void publish_shouldSkipReadOnlyTransactions() {
+        // Given
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        underTest.onRecipeDeleted(new RecipeDeletedEvent(3));
+
+        // When
+        TransactionSynchronizationUtils.triggerBeforeCommit(true);
+
+        // Then
+        verifyNoInteractions(jdbcTemplate);
+    }
+}
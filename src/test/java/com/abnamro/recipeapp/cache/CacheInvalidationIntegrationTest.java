@@ -0,0 +1,223 @@
+package com.abnamro.recipeapp.cache;
+
+import com.abnamro.AssignmentApplication;
+import com.abnamro.exception.ResourceNotFoundException;
+import com.abnamro.recipeapp.catalog.CatalogCopyService;
+import com.abnamro.recipeapp.catalog.CatalogFormat;
+import com.abnamro.recipeapp.dto.RecipeIngredientDto;
+import com.abnamro.recipeapp.dto.ingredient.CreateIngredientDto;
+import com.abnamro.recipeapp.dto.recipe.CreateRecipeDto;
+import com.abnamro.recipeapp.dto.recipe.RecipeDto;
+import com.abnamro.recipeapp.dto.recipe.RecipeRequestDto;
+import com.abnamro.recipeapp.service.IngredientService;
+import com.abnamro.recipeapp.service.RecipeService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+// Runs two nodes against the same database; each one only learns about the other's writes through the channel.
+class CacheInvalidationIntegrationTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(15);
+
+    private static ConfigurableApplicationContext nodeA;
+    private static ConfigurableApplicationContext nodeB;
+
+    private Integer recipeId;
+
+    @TempDir
+    private Path directory;
+
+    @BeforeAll
+    static void startNodes() {
+        nodeA = startNode();
+        nodeB = startNode();
+    }
+
+    @AfterAll
+    static void stopNodes() {
+        nodeA.close();
+        nodeB.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        String name = "Invalidation Recipe " + UUID.randomUUID();
+        recipeService(nodeA).addRecipe(new RecipeRequestDto(new CreateRecipeDto(name, "Stir", true, 2),
+                List.of(new RecipeIngredientDto(1.0, "cup", 18))));
+        recipeId = recipeService(nodeA).getRecipeByName(name).id();
+    }
+
+    @AfterEach
+    void tearDown() {
+        recipeService(nodeA).deleteRecipe(recipeId);
+    }
+
+    @Test
+    @DisplayName("Should evict a recipe cached on another node after it is updated")
+    void updateRecipe_shouldEvictRecipeOnOtherNode() {
+        // Given
+        RecipeDto cached = recipeService(nodeB).getRecipeById(recipeId);
+
+        // When
+        rename(cached, "Renamed " + UUID.randomUUID());
+
+        // Then
+        await().atMost(TIMEOUT).untilAsserted(() ->
+                assertNotEquals(cached.name(), recipeService(nodeB).getRecipeById(recipeId).name()));
+    }
+
+    @Test
+    @DisplayName("Should evict an ingredient from another node's second-level cache after it is deleted")
+    void deleteIngredient_shouldEvictIngredientOnOtherNode() {
+        // Given
+        String name = "invalidation-ingredient-" + UUID.randomUUID();
+        ingredientService(nodeA).addIngredient(new CreateIngredientDto(name));
+        // nodeB's existence filter learns about the new name from the notification.
+        int ingredientId = await().atMost(TIMEOUT).until(() -> {
+            try {
+                return ingredientService(nodeB).getIngredientByName(name).id();
+            } catch (ResourceNotFoundException e) {
+                return null;
+            }
+        }, Objects::nonNull);
+        ingredientService(nodeB).getIngredientById(ingredientId);
+
+        // When
+        ingredientService(nodeA).deleteById(ingredientId);
+
+        // Then
+        await().atMost(TIMEOUT).untilAsserted(() -> {
+            assertThrows(ResourceNotFoundException.class, () -> ingredientService(nodeB).getIngredientById(ingredientId));
+            assertThrows(ResourceNotFoundException.class, () -> ingredientService(nodeB).getIngredientByName(name));
+        });
+    }
+
+    @Test
+    @DisplayName("Should catch up on writes missed while the listen connection was down")
+    void reconnect_shouldDropCachesWrittenWhileDisconnected() {
+        // Given
+        RecipeDto cached = recipeService(nodeB).getRecipeById(recipeId);
+        String applicationName = CacheInvalidationListener.APPLICATION_NAME_PREFIX + nodeB.getBean(CacheInvalidationChannel.class).nodeId();
+        JdbcTemplate jdbcTemplate = nodeA.getBean(JdbcTemplate.class);
+        jdbcTemplate.queryForList("SELECT pg_terminate_backend(pid) FROM pg_stat_activity WHERE application_name = ?", applicationName);
+        await().atMost(TIMEOUT).until(() -> jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM pg_stat_activity WHERE application_name = ?", Integer.class, applicationName) == 0);
+
+        // When
+        rename(cached, "Renamed " + UUID.randomUUID());
+
+        // Then
+        await().atMost(TIMEOUT).untilAsserted(() ->
+                assertNotEquals(cached.name(), recipeService(nodeB).getRecipeById(recipeId).name()));
+    }
+
+    @Test
+    @DisplayName("Should find recipes from a catalog loaded on another node in ingredient searches")
+    void loadCatalog_shouldRebuildIndexesOnOtherNode() throws Exception {
+        // Given
+        String ingredientName = "catalog-ingredient-" + UUID.randomUUID();
+        String recipeName = "Catalog Recipe " + UUID.randomUUID();
+        ingredientService(nodeA).addIngredient(new CreateIngredientDto(ingredientName));
+        int ingredientId = ingredientService(nodeA).getIngredientByName(ingredientName).id();
+        assertTrue(searchByIngredient(nodeB, ingredientId).isEmpty());
+        writeCatalog(ingredientName, recipeName);
+
+        try {
+            // When
+            nodeA.getBean(CatalogCopyService.class).load(directory, CatalogFormat.CSV);
+
+            // Then
+            await().atMost(TIMEOUT).untilAsserted(() ->
+                    assertEquals(List.of(recipeName), searchByIngredient(nodeB, ingredientId)));
+        } finally {
+            recipeService(nodeA).deleteRecipe(recipeService(nodeA).getRecipeByName(recipeName).id());
+            ingredientService(nodeA).deleteById(ingredientId);
+        }
+    }
+
+    @Test
+    @DisplayName("Should find a recipe from a catalog load on nodes that already looked it up and missed")
+    void loadCatalog_shouldRebuildExistenceFiltersOnWarmNodes() throws Exception {
+        // Given
+        String ingredientName = "catalog-ingredient-" + UUID.randomUUID();
+        String recipeName = "Catalog Recipe " + UUID.randomUUID();
+        writeCatalog(ingredientName, recipeName);
+        assertThrows(ResourceNotFoundException.class, () -> recipeService(nodeA).getRecipeByName(recipeName));
+        assertThrows(ResourceNotFoundException.class, () -> recipeService(nodeB).getRecipeByName(recipeName));
+
+        try {
+            // When
+            nodeA.getBean(CatalogCopyService.class).load(directory, CatalogFormat.CSV);
+
+            // Then
+            assertEquals(recipeName, recipeService(nodeA).getRecipeByName(recipeName).name());
+            await().atMost(TIMEOUT).untilAsserted(() ->
+                    assertEquals(recipeName, recipeService(nodeB).getRecipeByName(recipeName).name()));
+        } finally {
+            recipeService(nodeA).deleteRecipe(recipeService(nodeA).getRecipeByName(recipeName).id());
+            ingredientService(nodeA).deleteById(ingredientService(nodeA).getIngredientByName(ingredientName).id());
+        }
+    }
+
+    private List<String> searchByIngredient(ConfigurableApplicationContext node, int ingredientId) {
+        return recipeService(node).searchRecipes(null, null, List.of(ingredientId), null, null, null, 20).items().stream()
+                .map(RecipeDto::name)
+                .toList();
+    }
+
+    private void writeCatalog(String ingredientName, String recipeName) throws IOException {
+        Files.writeString(directory.resolve("ingredients.csv"), """
+                source_id,name
+                1,%s
+                """.formatted(ingredientName));
+        Files.writeString(directory.resolve("recipes.csv"), """
+                source_id,name,instructions,is_vegetarian,servings
+                1,%s,Stir.,true,2
+                """.formatted(recipeName));
+        Files.writeString(directory.resolve("recipe_ingredients.csv"), """
+                recipe_id,ingredient_id,amount,unit
+                1,1,1,cup
+                """);
+    }
+
+    private void rename(RecipeDto recipe, String name) {
+        recipeService(nodeA).updateRecipe(new RecipeDto(recipe.id(), name, recipe.instructions(), recipe.isVegetarian(),
+                recipe.servings(), recipe.ingredients()), null);
+    }
+
+    private static RecipeService recipeService(ConfigurableApplicationContext node) {
+        return node.getBean(RecipeService.class);
+    }
+
+    private static IngredientService ingredientService(ConfigurableApplicationContext node) {
+        return node.getBean(IngredientService.class);
+    }
+
+    private static ConfigurableApplicationContext startNode() {
+        return new SpringApplicationBuilder(AssignmentApplication.class)
+                .properties("server.port=0",
+                        "recipe.cache.invalidation.poll-timeout=100ms",
+                        // Long enough for the test to write while the node is still disconnected.
+                        "recipe.cache.invalidation.reconnect-min-delay=2s")
+                .run();
+    }
+}
@@ -0,0 +1,65 @@
+package com.abnamro.recipeapp.cache;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.time.Duration;
+
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+// Listens on its own channel so the application's listener does not see these notifications.
+@SpringBootTest
+class CacheInvalidationListenerTest {
+
+    private static final String CHANNEL = "cache_invalidation_listener_test";
+    private static final Duration DELAY = Duration.ofMillis(100);
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    @Autowired
+    private DataSourceProperties dataSourceProperties;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    @DisplayName("Should keep listening and catch up after applying an invalidation fails")
+    void run_shouldSurviveFailedInvalidation() {
+        // Given
+        CacheInvalidationHandler handler = mock(CacheInvalidationHandler.class);
+        CacheInvalidation catalogLoaded = new CacheInvalidation("other", CacheInvalidation.Entity.CATALOG, CacheInvalidation.Operation.LOADED, 0);
+        CacheInvalidation recipeDeleted = new CacheInvalidation("other", CacheInvalidation.Entity.RECIPE, CacheInvalidation.Operation.DELETED, 5);
+        doThrow(new CannotCreateTransactionException("pool exhausted")).doNothing().when(handler).invalidateAll();
+        doAnswer(invocation -> {
+            handler.invalidateAll();
+            return null;
+        }).when(handler).apply(catalogLoaded);
+        CacheInvalidationListener underTest = new CacheInvalidationListener(dataSourceProperties,
+                new CacheInvalidationChannel(jdbcTemplate, CHANNEL), handler, DELAY, DELAY, DELAY);
+        underTest.start();
+
+        try {
+            // When
+            send(catalogLoaded);
+            verify(handler, timeout(TIMEOUT_MILLIS).times(2)).invalidateAll();
+            send(recipeDeleted);
+
+            // Then
+            verify(handler, timeout(TIMEOUT_MILLIS)).apply(recipeDeleted);
+        } finally {
+            underTest.stop();
+        }
+    }
+
+    private void send(CacheInvalidation invalidation) {
+        jdbcTemplate.queryForList("SELECT pg_notify(?, ?)", CHANNEL, invalidation.toPayload());
+    }
+}
@@ -0,0 +1,34 @@
+package com.abnamro.recipeapp.cache;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheInvalidationTest {
+
+    @Test
+    @DisplayName("Should read back the invalidation it was written from")
+    void fromPayload_shouldRoundTrip() {
+        // Given
+        CacheInvalidation invalidation = new CacheInvalidation("node1", CacheInvalidation.Entity.RECIPE,
+                CacheInvalidation.Operation.SAVED, 42);
+
+        // When
+        Optional<CacheInvalidation> read = CacheInvalidation.fromPayload(invalidation.toPayload());
+
+        // Then
+        assertEquals("node1:RECIPE:SAVED:42", invalidation.toPayload());
+        assertEquals(Optional.of(invalidation), read);
+    }
+
+    @Test
+    @DisplayName("Should reject malformed payloads")
+    void fromPayload_shouldRejectMalformedPayloads() {
+        assertTrue(CacheInvalidation.fromPayload("node1:RECIPE:SAVED").isEmpty());
+        assertTrue(CacheInvalidation.fromPayload("node1:MENU:SAVED:42").isEmpty());
+        assertTrue(CacheInvalidation.fromPayload("node1:RECIPE:SAVED:forty-two").isEmpty());
+    }
+}
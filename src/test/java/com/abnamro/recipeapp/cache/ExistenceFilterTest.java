@@ -0,0 +1,188 @@
+package com.abnamro.recipeapp.cache;
+
+import com.abnamro.recipeapp.event.IngredientsSavedEvent;
+import com.abnamro.recipeapp.event.RecipeSavedEvent;
+import com.abnamro.recipeapp.repository.IdAndName;
+import com.abnamro.recipeapp.repository.IngredientRepository;
+import com.abnamro.recipeapp.repository.RecipeRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+
+@ExtendWith(MockitoExtension.class)
+class ExistenceFilterTest {
+
+    @Mock
+    private RecipeRepository recipeRepository;
+
+    @Mock
+    private IngredientRepository ingredientRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ExistenceFilter underTest;
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        underTest = new ExistenceFilter(recipeRepository, ingredientRepository, transactionManager, 1000, 0.01, 100, Duration.ofSeconds(30));
+    }
+
+    @Test
+    @DisplayName("Should answer lookups of values that were never written without loading")
+    void find_shouldRejectValuesNotInFilter() {
+        // Given
+        givenRecipes(new IdAndName(1, "Pasta"));
+        underTest.rebuild();
+
+        // When
+        Optional<String> missing = underTest.find(ExistenceFilter.Lookup.RECIPE_NAME, "Unicorn Stew", this::loadNothing);
+        Optional<String> present = underTest.find(ExistenceFilter.Lookup.RECIPE_ID, 1, () -> load("Pasta"));
+
+        // Then
+        assertEquals(Optional.empty(), missing);
+        assertEquals(Optional.of("Pasta"), present);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    @DisplayName("Should remember misses so a repeated lookup does not load again")
+    void find_shouldCacheNotFound() {
+        // Given
+        givenRecipes(new IdAndName(1, "Pasta"));
+        underTest.rebuild();
+
+        // When
+        underTest.find(ExistenceFilter.Lookup.RECIPE_ID, 1, this::loadNothing);
+        Optional<String> cached = underTest.find(ExistenceFilter.Lookup.RECIPE_ID, 1, this::loadNothing);
+
+        // Then
+        assertEquals(Optional.empty(), cached);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    @DisplayName("Should find a saved recipe that was remembered as missing")
+    void onRecipeSaved_shouldClearNotFoundAndAddToFilter() {
+        // Given
+        givenRecipes(new IdAndName(2, "Soup"));
+        underTest.rebuild();
+        underTest.find(ExistenceFilter.Lookup.RECIPE_ID, 2, this::loadNothing);
+
+        // When
+        underTest.onRecipeSaved(new RecipeSavedEvent(2, "Salad", List.of(10), true, 1));
+
+        // Then
+        assertEquals(Optional.of("Salad"), underTest.find(ExistenceFilter.Lookup.RECIPE_ID, 2, () -> load("Salad")));
+        assertEquals(Optional.of("Salad"), underTest.find(ExistenceFilter.Lookup.RECIPE_NAME, "Salad", () -> load("Salad")));
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    @DisplayName("Should keep ingredients saved while the filters are being rebuilt")
+    void rebuild_shouldKeepWritesMadeDuringRebuild() {
+        // Given
+        doAnswer(invocation -> {
+            underTest.onIngredientsSaved(new IngredientsSavedEvent(List.of(7), List.of("Basil")));
+            invocation.<Consumer<IdAndName>>getArgument(0).accept(new IdAndName(1, "Tomato"));
+            return null;
+        }).when(ingredientRepository).forEachIdAndName(any());
+
+        // When
+        underTest.rebuild();
+
+        // Then
+        assertEquals(Optional.of("Basil"), underTest.find(ExistenceFilter.Lookup.INGREDIENT_ID, 7, () -> load("Basil")));
+        assertEquals(Optional.of("Basil"), underTest.find(ExistenceFilter.Lookup.INGREDIENT_NAME, "Basil", () -> load("Basil")));
+        assertEquals(Optional.of("Tomato"), underTest.find(ExistenceFilter.Lookup.INGREDIENT_NAME, "Tomato", () -> load("Tomato")));
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    @DisplayName("Should look up rows written since the last rebuild when the next rebuild fails")
+    void rebuild_shouldFallBackToDatabaseWhenRebuildFails() {
+        // Given
+        givenRecipes(new IdAndName(1, "Pasta"));
+        underTest.rebuild();
+        // Recipe 2 arrives through a catalog load, which writes no per-row events.
+        assertEquals(Optional.empty(), underTest.find(ExistenceFilter.Lookup.RECIPE_ID, 2, () -> load("Soup")));
+        doThrow(new CannotCreateTransactionException("pool exhausted")).when(transactionManager).getTransaction(any());
+
+        // When
+        underTest.rebuild();
+
+        // Then
+        assertEquals(Optional.of("Soup"), underTest.find(ExistenceFilter.Lookup.RECIPE_ID, 2, () -> load("Soup")));
+        assertEquals(Optional.of("Soup"), underTest.find(ExistenceFilter.Lookup.RECIPE_NAME, "Soup", () -> load("Soup")));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    @DisplayName("Should load every lookup until the filters are built")
+    void find_shouldLoadBeforeFirstRebuild() {
+        // When
+        underTest.find(ExistenceFilter.Lookup.INGREDIENT_NAME, "Unicorn", this::loadNothing);
+
+        // Then
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    @DisplayName("Should publish rejections, negative cache hits and filter memory as metrics")
+    void bindTo_shouldRegisterMetrics() {
+        // Given
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        underTest.bindTo(registry);
+        givenRecipes(new IdAndName(1, "Pasta"));
+        underTest.rebuild();
+
+        // When
+        underTest.find(ExistenceFilter.Lookup.RECIPE_NAME, "Unicorn Stew", this::loadNothing);
+        underTest.find(ExistenceFilter.Lookup.RECIPE_ID, 1, this::loadNothing);
+        underTest.find(ExistenceFilter.Lookup.RECIPE_ID, 1, this::loadNothing);
+
+        // Then
+        assertEquals(1.0, registry.get("existence.filter.rejections").tag("lookup", "RECIPE_NAME").functionCounter().count());
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", ExistenceFilter.NAME).tag("result", "hit").functionCounter().count());
+        assertTrue(registry.get("existence.filter.memory").gauge().value() > 0);
+    }
+
+    private void givenRecipes(IdAndName... recipes) {
+        doAnswer(invocation -> {
+            Consumer<IdAndName> consumer = invocation.getArgument(0);
+            for (IdAndName recipe : recipes) {
+                consumer.accept(recipe);
+            }
+            return null;
+        }).when(recipeRepository).forEachIdAndName(any());
+    }
+
+    private Optional<String> load(String value) {
+        loads.incrementAndGet();
+        return Optional.of(value);
+    }
+
+    private Optional<String> loadNothing() {
+        loads.incrementAndGet();
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,205 @@
+package com.abnamro.recipeapp.cache;
+
+import com.abnamro.exception.ResourceNotFoundException;
+import com.abnamro.recipeapp.dto.RecipeIngredientDto;
+import com.abnamro.recipeapp.dto.Versioned;
+import com.abnamro.recipeapp.dto.recipe.RecipeDto;
+import com.abnamro.recipeapp.event.IngredientDeletedEvent;
+import com.abnamro.recipeapp.event.RecipeDeletedEvent;
+import com.abnamro.recipeapp.event.RecipeSavedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecipeCacheTest {
+
+    private RecipeCache underTest;
+
+    private final Map<Integer, RecipeDto> database = new HashMap<>();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        underTest = new RecipeCache(100, Duration.ofMinutes(10));
+        database.put(1, recipe(1, "Pasta", 10, 11));
+        database.put(2, recipe(2, "Salad", 12));
+    }
+
+    @Test
+    @DisplayName("Should load a recipe once and record hits and misses")
+    void getById_shouldLoadOnce() {
+        // When
+        underTest.getById(1, this::load);
+        Versioned<RecipeDto> cached = underTest.getById(1, this::load);
+
+        // Then
+        assertEquals("Pasta", cached.value().name());
+        assertEquals(1, loads.get());
+        assertEquals(1, underTest.byIdStats().hitCount());
+        assertEquals(1, underTest.byIdStats().missCount());
+    }
+
+    @Test
+    @DisplayName("Should reload only the recipe that was saved or deleted")
+    void onRecipeSavedOrDeleted_shouldEvictOnlyThatRecipe() {
+        // Given
+        underTest.getById(1, this::load);
+        underTest.getById(2, this::load);
+        database.put(1, recipe(1, "Pasta Carbonara", 10, 11));
+
+        // When
+        underTest.onRecipeSaved(new RecipeSavedEvent(1, "Pasta Carbonara", List.of(10, 11), true, 2));
+        underTest.onRecipeDeleted(new RecipeDeletedEvent(3));
+
+        // Then
+        assertEquals("Pasta Carbonara", underTest.getById(1, this::load).value().name());
+        underTest.getById(2, this::load);
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    @DisplayName("Should not serve a renamed recipe under its old name")
+    void getByName_shouldNotServeRenamedRecipe() {
+        // Given
+        underTest.getByName("Pasta", this::loadId, this::load);
+        database.put(1, recipe(1, "Pasta Carbonara", 10, 11));
+        database.put(3, recipe(3, "Pasta", 10));
+        underTest.onRecipeSaved(new RecipeSavedEvent(1, "Pasta Carbonara", List.of(10, 11), true, 2));
+        underTest.getById(1, this::load);
+
+        // When
+        Versioned<RecipeDto> byOldName = underTest.getByName("Pasta", this::loadId, this::load);
+
+        // Then
+        assertEquals(3, byOldName.value().id());
+    }
+
+    @Test
+    @DisplayName("Should resolve a name again after a recipe with that name is saved")
+    void onRecipeSaved_shouldDropNameMapping() {
+        // Given
+        underTest.getByName("Pasta", this::loadId, this::load);
+        database.remove(1);
+        database.put(3, recipe(3, "Pasta", 10));
+
+        // When
+        underTest.onRecipeDeleted(new RecipeDeletedEvent(1));
+        underTest.onRecipeSaved(new RecipeSavedEvent(3, "Pasta", List.of(10), true, 2));
+        Versioned<RecipeDto> byName = underTest.getByName("Pasta", this::loadId, this::load);
+
+        // Then
+        assertEquals(3, byName.value().id());
+        assertEquals(2, underTest.byNameStats().missCount());
+    }
+
+    @Test
+    @DisplayName("Should look a cached name up again when the recipe it pointed at is gone")
+    void getByName_shouldRetryWhenCachedRecipeNotFound() {
+        // Given
+        database.remove(1);
+        database.put(3, recipe(3, "Pasta", 10));
+        AtomicInteger idLoads = new AtomicInteger();
+        // The first id was read just before recipe 1 was deleted and recipe 3 created.
+        Function<String, Integer> idLoader = name -> idLoads.getAndIncrement() == 0 ? 1 : loadId(name);
+        assertThrows(ResourceNotFoundException.class, () -> underTest.getByName("Pasta", idLoader, this::load));
+
+        // When
+        Versioned<RecipeDto> byName = underTest.getByName("Pasta", idLoader, this::load);
+
+        // Then
+        assertEquals(3, byName.value().id());
+        assertEquals(2, idLoads.get());
+    }
+
+    @Test
+    @DisplayName("Should look up a name that does not exist only once")
+    void getByName_shouldNotRetryPlainMiss() {
+        // Given
+        AtomicInteger idLoads = new AtomicInteger();
+
+        // When & Then
+        assertThrows(ResourceNotFoundException.class, () -> underTest.getByName("Unicorn Stew", name -> {
+            idLoads.incrementAndGet();
+            throw new ResourceNotFoundException("Recipe with name " + name + " not found");
+        }, this::load));
+        assertEquals(1, idLoads.get());
+    }
+
+    @Test
+    @DisplayName("Should only know the version of recipes that are cached")
+    void cachedVersion_shouldReadCachedEntryWithoutLoading() {
+        // Given
+        underTest.getById(1, this::load);
+
+        // When
+        Optional<Long> cached = underTest.cachedVersion(1);
+        Optional<Long> notCached = underTest.cachedVersion(2);
+
+        // Then
+        assertEquals(Optional.of(7L), cached);
+        assertEquals(Optional.empty(), notCached);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    @DisplayName("Should evict every cached recipe that used a deleted ingredient")
+    void onIngredientDeleted_shouldEvictRecipesUsingIngredient() {
+        // Given
+        underTest.getById(1, this::load);
+        underTest.getById(2, this::load);
+
+        // When
+        underTest.onIngredientDeleted(new IngredientDeletedEvent(11));
+
+        // Then
+        underTest.getById(1, this::load);
+        underTest.getById(2, this::load);
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    @DisplayName("Should publish cache statistics as metrics")
+    void bindTo_shouldRegisterCacheMetrics() {
+        // Given
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        underTest.bindTo(registry);
+
+        // When
+        underTest.getById(1, this::load);
+
+        // Then
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", RecipeCache.BY_ID).tag("result", "miss").functionCounter().count());
+    }
+
+    private Versioned<RecipeDto> load(Integer id) {
+        loads.incrementAndGet();
+        RecipeDto recipe = database.get(id);
+        if (recipe == null) {
+            throw new ResourceNotFoundException("Recipe with id: " + id + " does not found!");
+        }
+        return new Versioned<>(recipe, 7);
+    }
+
+    private Integer loadId(String name) {
+        return database.values().stream().filter(recipe -> recipe.name().equals(name)).findFirst().orElseThrow().id();
+    }
+
+    private static RecipeDto recipe(int id, String name, int... ingredientIds) {
+        List<RecipeIngredientDto> ingredients = Arrays.stream(ingredientIds)
+                .mapToObj(ingredientId -> new RecipeIngredientDto(1.0, "g", ingredientId))
+                .toList();
+        return new RecipeDto(id, name, "Cook it", true, 2, ingredients);
+    }
+}
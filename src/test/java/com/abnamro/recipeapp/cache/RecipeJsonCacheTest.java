@@ -0,0 +1,141 @@
+package com.abnamro.recipeapp.cache;
+
+import com.abnamro.recipeapp.dto.RecipeIngredientDto;
+import com.abnamro.recipeapp.dto.Versioned;
+import com.abnamro.recipeapp.dto.recipe.RecipeDto;
+import com.abnamro.recipeapp.event.IngredientDeletedEvent;
+import com.abnamro.recipeapp.event.RecipeDeletedEvent;
+import com.abnamro.recipeapp.event.RecipeSavedEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecipeJsonCacheTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private RecipeJsonCache underTest;
+
+    private final Map<Integer, RecipeDto> database = new HashMap<>();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        underTest = new RecipeJsonCache(DataSize.ofMegabytes(1), Duration.ofMinutes(10), objectMapper);
+        database.put(1, recipe(1, "Pasta", 10, 11));
+        database.put(2, recipe(2, "Salad", 12));
+    }
+
+    @Test
+    @DisplayName("Should serialize a recipe once and serve the same bytes afterwards")
+    void getById_shouldSerializeOnce() throws Exception {
+        // When
+        Versioned<byte[]> loaded = underTest.getById(1, this::load);
+        Versioned<byte[]> cached = underTest.getById(1, this::load);
+
+        // Then
+        assertEquals(database.get(1), objectMapper.readValue(loaded.value(), RecipeDto.class));
+        assertSame(loaded.value(), cached.value());
+        assertEquals(7, cached.version());
+        assertEquals(1, loads.get());
+        assertEquals(Optional.of(7L), underTest.cachedVersion(1));
+        assertEquals(Optional.empty(), underTest.cachedVersion(2));
+    }
+
+    @Test
+    @DisplayName("Should reserialize only the recipe that was saved or deleted")
+    void onRecipeSavedOrDeleted_shouldEvictOnlyThatRecipe() {
+        // Given
+        underTest.getById(1, this::load);
+        underTest.getById(2, this::load);
+        database.put(1, recipe(1, "Pasta Carbonara", 10, 11));
+
+        // When
+        underTest.onRecipeSaved(new RecipeSavedEvent(1, "Pasta Carbonara", List.of(10, 11), true, 2));
+        underTest.onRecipeDeleted(new RecipeDeletedEvent(3));
+
+        // Then
+        assertTrue(new String(underTest.getById(1, this::load).value(), StandardCharsets.UTF_8).contains("Pasta Carbonara"));
+        underTest.getById(2, this::load);
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    @DisplayName("Should evict every cached response that used a deleted ingredient")
+    void onIngredientDeleted_shouldEvictRecipesUsingIngredient() {
+        // Given
+        underTest.getById(1, this::load);
+        underTest.getById(2, this::load);
+
+        // When
+        underTest.onIngredientDeleted(new IngredientDeletedEvent(11));
+
+        // Then
+        underTest.getById(1, this::load);
+        underTest.getById(2, this::load);
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    @DisplayName("Should keep the cached bytes within the configured size")
+    void getById_shouldEvictWhenOverMaximumSize() {
+        // Given
+        underTest = new RecipeJsonCache(DataSize.ofKilobytes(4), Duration.ofMinutes(10), objectMapper);
+
+        // When
+        for (int id = 1; id <= 100; id++) {
+            database.put(id, recipe(id, "Recipe " + id, 10, 11));
+            underTest.getById(id, this::load);
+        }
+        underTest.cleanUp();
+
+        // Then
+        assertTrue(underTest.weightedSize() > 0);
+        assertTrue(underTest.weightedSize() <= DataSize.ofKilobytes(4).toBytes());
+    }
+
+    @Test
+    @DisplayName("Should publish hit ratio and memory footprint as metrics")
+    void bindTo_shouldRegisterCacheMetrics() {
+        // Given
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        underTest.bindTo(registry);
+
+        // When
+        underTest.getById(1, this::load);
+        underTest.getById(1, this::load);
+        underTest.cleanUp();
+
+        // Then
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", RecipeJsonCache.NAME).tag("result", "hit").functionCounter().count());
+        assertEquals(0.5, registry.get("cache.hit.ratio").tag("cache", RecipeJsonCache.NAME).gauge().value());
+        assertEquals(underTest.weightedSize(), registry.get("cache.memory").tag("cache", RecipeJsonCache.NAME).gauge().value());
+        assertTrue(underTest.weightedSize() > 0);
+    }
+
+    private Versioned<RecipeDto> load(Integer id) {
+        loads.incrementAndGet();
+        return new Versioned<>(database.get(id), 7);
+    }
+
+    private static RecipeDto recipe(int id, String name, int... ingredientIds) {
+        List<RecipeIngredientDto> ingredients = Arrays.stream(ingredientIds)
+                .mapToObj(ingredientId -> new RecipeIngredientDto(1.0, "g", ingredientId))
+                .toList();
+        return new RecipeDto(id, name, "Cook it", true, 2, ingredients);
+    }
+}
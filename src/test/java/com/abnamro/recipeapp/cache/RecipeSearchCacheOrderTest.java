@@ -0,0 +1,66 @@
+package com.abnamro.recipeapp.cache;
+
+import com.abnamro.recipeapp.dto.RecipeIngredientDto;
+import com.abnamro.recipeapp.dto.ingredient.CreateIngredientDto;
+import com.abnamro.recipeapp.dto.recipe.CreateRecipeDto;
+import com.abnamro.recipeapp.dto.recipe.RecipeRequestDto;
+import com.abnamro.recipeapp.event.RecipeDeletedEvent;
+import com.abnamro.recipeapp.event.RecipeSavedEvent;
+import com.abnamro.recipeapp.index.RecipeIngredientIndex;
+import com.abnamro.recipeapp.service.IngredientService;
+import com.abnamro.recipeapp.service.RecipeService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+
+// A search cached between the eviction and the index update would keep a stale id list until it expires.
+@SpringBootTest
+class RecipeSearchCacheOrderTest {
+
+    @Autowired
+    private RecipeService recipeService;
+
+    @Autowired
+    private IngredientService ingredientService;
+
+    @SpyBean
+    private RecipeIngredientIndex recipeIngredientIndex;
+
+    @SpyBean
+    private RecipeSearchCache recipeSearchCache;
+
+    @Test
+    @DisplayName("Should update the ingredient index before evicting cached searches")
+    void recipeWrites_shouldUpdateIndexBeforeSearchCache() {
+        // Given
+        String ingredientName = "order-ingredient-" + UUID.randomUUID();
+        String recipeName = "Order Recipe " + UUID.randomUUID();
+        ingredientService.addIngredient(new CreateIngredientDto(ingredientName));
+        int ingredientId = ingredientService.getIngredientByName(ingredientName).id();
+
+        try {
+            // When
+            recipeService.addRecipe(new RecipeRequestDto(new CreateRecipeDto(recipeName, "Stir", true, 2),
+                    List.of(new RecipeIngredientDto(1.0, "cup", ingredientId))));
+            recipeService.deleteRecipe(recipeService.getRecipeByName(recipeName).id());
+
+            // Then
+            InOrder inOrder = inOrder(recipeIngredientIndex, recipeSearchCache);
+            inOrder.verify(recipeIngredientIndex).onRecipeSaved(any(RecipeSavedEvent.class));
+            inOrder.verify(recipeSearchCache).onRecipeSaved(any(RecipeSavedEvent.class));
+            inOrder.verify(recipeIngredientIndex).onRecipeDeleted(any(RecipeDeletedEvent.class));
+            inOrder.verify(recipeSearchCache).onRecipeDeleted(any(RecipeDeletedEvent.class));
+        } finally {
+            ingredientService.deleteById(ingredientId);
+        }
+    }
+}
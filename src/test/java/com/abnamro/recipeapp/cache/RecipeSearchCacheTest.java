@@ -0,0 +1,126 @@
+package com.abnamro.recipeapp.cache;
+
+import com.abnamro.recipeapp.event.IngredientDeletedEvent;
+import com.abnamro.recipeapp.event.RecipeDeletedEvent;
+import com.abnamro.recipeapp.event.RecipeSavedEvent;
+import com.abnamro.recipeapp.repository.RecipeSearchCriteria;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecipeSearchCacheTest {
+
+    private static final RecipeSearchCriteria VEGETARIAN = RecipeSearchCriteria.vegetarian(true);
+    private static final RecipeSearchCriteria FOR_FOUR = RecipeSearchCriteria.servings(4);
+    private static final RecipeSearchCriteria WITH_TOMATO = new RecipeSearchCriteria(null, null, List.of(10), null, null);
+
+    private RecipeSearchCache underTest;
+
+    private final Map<RecipeSearchCriteria, List<Integer>> database = new HashMap<>();
+    private final List<RecipeSearchCriteria> searches = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        underTest = new RecipeSearchCache(1000, 4, Duration.ofMinutes(10));
+        database.put(VEGETARIAN, List.of(1, 2, 3, 5));
+        database.put(FOR_FOUR, List.of(2, 4));
+        database.put(WITH_TOMATO, List.of(3, 4));
+        database.put(RecipeSearchCriteria.all(), List.of(1, 2, 3, 4, 5));
+    }
+
+    @Test
+    @DisplayName("Should serve equivalent searches and every page from one cached result")
+    void findPageIds_shouldServeEquivalentSearchesFromCache() {
+        // Given
+        RecipeSearchCriteria criteria = new RecipeSearchCriteria(true, null, List.of(12, 10, 12), List.of(), "  Boil ");
+        RecipeSearchCriteria equivalent = new RecipeSearchCriteria(true, null, List.of(10, 12), null, "boil");
+        database.put(equivalent, List.of(1, 2, 3, 5));
+
+        // When
+        List<Integer> firstPage = underTest.findPageIds(criteria, 0, 2, this::search);
+        List<Integer> secondPage = underTest.findPageIds(equivalent, 2, 2, this::search);
+
+        // Then
+        assertEquals(criteria.canonical(), equivalent.canonical());
+        assertEquals(List.of(1, 2), firstPage);
+        assertEquals(List.of(3, 5), secondPage);
+        assertEquals(1, searches.size());
+        assertEquals(1, underTest.stats().hitCount());
+    }
+
+    @Test
+    @DisplayName("Should page searches with too many matches from the database")
+    void findPageIds_shouldNotCacheSearchesWithTooManyMatches() {
+        // When
+        List<Integer> firstPage = underTest.findPageIds(RecipeSearchCriteria.all(), 0, 2, this::search);
+        List<Integer> secondPage = underTest.findPageIds(RecipeSearchCriteria.all(), 2, 2, this::search);
+
+        // Then
+        assertEquals(List.of(1, 2), firstPage);
+        assertEquals(List.of(3, 4), secondPage);
+        assertEquals(3, searches.size());
+    }
+
+    @Test
+    @DisplayName("Should evict only the searches a saved recipe matched before or could match now")
+    void onRecipeSaved_shouldEvictOnlyAffectedSearches() {
+        // Given
+        warm(VEGETARIAN, FOR_FOUR, WITH_TOMATO);
+
+        // When
+        underTest.onRecipeSaved(new RecipeSavedEvent(6, "Stew", List.of(11), false, 2));
+        underTest.onRecipeSaved(new RecipeSavedEvent(4, "Soup", List.of(11), false, 2));
+        underTest.onRecipeSaved(new RecipeSavedEvent(7, "Salad", List.of(10), true, 2));
+
+        // Then
+        warm(VEGETARIAN, FOR_FOUR, WITH_TOMATO);
+        assertEquals(List.of(VEGETARIAN, FOR_FOUR, WITH_TOMATO, VEGETARIAN, FOR_FOUR, WITH_TOMATO), searches);
+    }
+
+    @Test
+    @DisplayName("Should evict only the searches containing a deleted recipe")
+    void onRecipeDeleted_shouldEvictSearchesContainingRecipe() {
+        // Given
+        warm(VEGETARIAN, FOR_FOUR, WITH_TOMATO);
+
+        // When
+        underTest.onRecipeDeleted(new RecipeDeletedEvent(5));
+
+        // Then
+        warm(VEGETARIAN, FOR_FOUR, WITH_TOMATO);
+        assertEquals(List.of(VEGETARIAN, FOR_FOUR, WITH_TOMATO, VEGETARIAN), searches);
+    }
+
+    @Test
+    @DisplayName("Should evict only the searches filtering on a deleted ingredient")
+    void onIngredientDeleted_shouldEvictSearchesFilteringOnIngredient() {
+        // Given
+        warm(VEGETARIAN, FOR_FOUR, WITH_TOMATO);
+
+        // When
+        underTest.onIngredientDeleted(new IngredientDeletedEvent(10));
+
+        // Then
+        warm(VEGETARIAN, FOR_FOUR, WITH_TOMATO);
+        assertEquals(List.of(VEGETARIAN, FOR_FOUR, WITH_TOMATO, WITH_TOMATO), searches);
+    }
+
+    private void warm(RecipeSearchCriteria... criteria) {
+        for (RecipeSearchCriteria search : criteria) {
+            underTest.findPageIds(search, 0, 10, this::search);
+        }
+    }
+
+    private List<Integer> search(RecipeSearchCriteria criteria, int afterId, int limit) {
+        searches.add(criteria);
+        return database.getOrDefault(criteria, List.of()).stream().filter(id -> id > afterId).limit(limit).toList();
+    }
+}
@@ -0,0 +1,192 @@
+package com.abnamro.recipeapp.catalog;
+
+import com.abnamro.recipeapp.entity.Ingredient;
+import com.abnamro.recipeapp.entity.Recipe;
+import com.abnamro.recipeapp.entity.RecipeIngredient;
+import com.abnamro.recipeapp.event.CatalogLoadedEvent;
+import com.abnamro.recipeapp.repository.jpa.JpaIngredientRepository;
+import com.abnamro.recipeapp.repository.jpa.JpaRecipeRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(CatalogCopyService.class)
+@RecordApplicationEvents
+class CatalogCopyServiceTest {
+
+    @Autowired
+    private CatalogCopyService underTest;
+
+    @Autowired
+    private JpaRecipeRepository recipeRepository;
+
+    @Autowired
+    private JpaIngredientRepository ingredientRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ApplicationEvents events;
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void loadStagesCleansAndMapsSourceIds() throws Exception {
+        // given
+        Ingredient milk = ingredientRepository.save(new Ingredient("Catalog Milk"));
+        entityManager.flush();
+        Files.writeString(directory.resolve("ingredients.csv"), """
+                source_id,name
+                1,Catalog Flour
+                2,Catalog Egg
+                2,Catalog Duplicate
+                3,Catalog Milk
+                """);
+        Files.writeString(directory.resolve("recipes.csv"), """
+                source_id,name,instructions,is_vegetarian,servings
+                1,Catalog Pancakes,"Mix, then fry.",t,4
+                2,Catalog Omelette,Whisk.,true,1
+                3,Catalog Broken,,true,2
+                4,Catalog Empty,No ingredients.,false,2
+                """);
+        Files.writeString(directory.resolve("recipe_ingredients.csv"), """
+                recipe_id,ingredient_id,amount,unit
+                1,1,200,g
+                1,2,2,piece
+                1,3,300,ml
+                1,3,100,ml
+                2,2,3,piece
+                2,9,1,piece
+                3,1,1,g
+                """);
+
+        // when
+        CatalogLoadResult result = underTest.load(directory, CatalogFormat.CSV);
+        entityManager.clear();
+
+        // then
+        assertThat(result).isEqualTo(new CatalogLoadResult(4, 2, 4, 2, 0, 7, 4));
+        Recipe pancakes = recipeRepository.findByName("Catalog Pancakes").orElseThrow();
+        assertThat(pancakes.getInstructions()).isEqualTo("Mix, then fry.");
+        assertThat(pancakes.getRecipeIngredients())
+                .extracting(recipeIngredient -> recipeIngredient.getIngredient().getName(), RecipeIngredient::getAmount)
+                .containsExactlyInAnyOrder(
+                        tuple("Catalog Flour", 200.0),
+                        tuple("Catalog Egg", 2.0),
+                        tuple("Catalog Milk", 300.0));
+        assertThat(pancakes.getRecipeIngredients())
+                .filteredOn(recipeIngredient -> recipeIngredient.getIngredient().getName().equals("Catalog Milk"))
+                .allMatch(recipeIngredient -> recipeIngredient.getIngredient().getId().equals(milk.getId()));
+        assertThat(recipeRepository.findByName("Catalog Omelette")).isPresent();
+        assertThat(recipeRepository.findByName("Catalog Broken")).isEmpty();
+        assertThat(recipeRepository.findByName("Catalog Empty")).isEmpty();
+        assertThat(ingredientRepository.findByName("Catalog Duplicate")).isEmpty();
+    }
+
+    @Test
+    // Each load commits, as in production: the staging tables only go away when the transaction ends.
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void loadAgainReplacesRecipesByNameAndNotifiesRunningNodes() throws Exception {
+        // given
+        String run = UUID.randomUUID().toString();
+        Files.writeString(directory.resolve("ingredients.csv"), """
+                source_id,name
+                1,Reload Rice %1$s
+                2,Reload Beans %1$s
+                3,Reload Corn %1$s
+                """.formatted(run));
+        Files.writeString(directory.resolve("recipes.csv"), """
+                source_id,name,instructions,is_vegetarian,servings
+                1,Reload Rice And Beans %1$s,Simmer.,true,2
+                2,Reload Corn Bowl %1$s,Boil.,true,1
+                """.formatted(run));
+        Files.writeString(directory.resolve("recipe_ingredients.csv"), """
+                recipe_id,ingredient_id,amount,unit
+                1,1,100,g
+                1,2,100,g
+                2,3,1,cob
+                """);
+        underTest.load(directory, CatalogFormat.CSV);
+        long cornVersion = recipeRepository.findByName("Reload Corn Bowl " + run).orElseThrow().getVersion();
+        Files.writeString(directory.resolve("recipes.csv"), """
+                source_id,name,instructions,is_vegetarian,servings
+                7,Reload Rice And Beans %1$s,Simmer slowly.,true,4
+                8,Reload Corn Bowl %1$s,Boil.,true,1
+                9,Reload Corn Rice %1$s,Steam.,true,2
+                """.formatted(run));
+        Files.writeString(directory.resolve("recipe_ingredients.csv"), """
+                recipe_id,ingredient_id,amount,unit
+                7,1,150,g
+                8,3,1,cob
+                9,1,50,g
+                9,3,1,cob
+                """);
+
+        try {
+            // when
+            CatalogLoadResult result = underTest.load(directory, CatalogFormat.CSV);
+
+            // then
+            assertThat(result).isEqualTo(new CatalogLoadResult(3, 0, 3, 1, 1, 4, 3));
+            Recipe riceAndBeans = recipeRepository.findByName("Reload Rice And Beans " + run).orElseThrow();
+            assertThat(riceAndBeans.getInstructions()).isEqualTo("Simmer slowly.");
+            assertThat(riceAndBeans.getServings()).isEqualTo(4);
+            assertThat(jdbcTemplate.queryForList(
+                    "SELECT amount FROM recipe_ingredients WHERE recipe_id = ?", Double.class, riceAndBeans.getId()))
+                    .containsExactly(150.0);
+            assertThat(recipeRepository.findByName("Reload Corn Bowl " + run).orElseThrow().getVersion()).isEqualTo(cornVersion);
+            assertThat(recipeRepository.findByName("Reload Corn Rice " + run)).isPresent();
+            assertThat(events.stream(CatalogLoadedEvent.class))
+                    .containsExactly(new CatalogLoadedEvent(2, 0), new CatalogLoadedEvent(1, 1));
+        } finally {
+            jdbcTemplate.update("DELETE FROM recipe WHERE name LIKE ?", "Reload % " + run);
+            jdbcTemplate.update("DELETE FROM ingredient WHERE name LIKE ?", "Reload % " + run);
+        }
+    }
+
+    @Test
+    void exportWritesAllTablesInTheRequestedFormat() throws Exception {
+        // given
+        Ingredient salt = ingredientRepository.save(new Ingredient("Export Salt"));
+        Recipe recipe = new Recipe(null, "Export Soup", "Stir\tand serve.", true, 2);
+        recipeRepository.save(recipe);
+        entityManager.persist(new RecipeIngredient(recipe, salt, 1.5, "pinch"));
+        entityManager.flush();
+
+        // when
+        CatalogExportResult result = underTest.export(directory, CatalogFormat.TSV);
+
+        // then
+        List<String> recipes = Files.readAllLines(directory.resolve("recipes.tsv"));
+        assertThat(recipes.getFirst()).isEqualTo("recipe_id\tname\tinstructions\tis_vegetarian\tservings");
+        assertThat(recipes).contains(recipe.getId() + "\tExport Soup\tStir\\tand serve.\tt\t2");
+        assertThat(Files.readAllLines(directory.resolve("recipe_ingredients.tsv")))
+                .contains(recipe.getId() + "\t" + salt.getId() + "\t1.5\tpinch");
+        assertThat(result.recipes()).isEqualTo(recipes.size() - 1);
+        assertThat(result.ingredients()).isEqualTo(Files.readAllLines(directory.resolve("ingredients.tsv")).size() - 1);
+    }
+}
@@ -1,20 +1,25 @@
 package com.abnamro.recipeapp.controller;
 
+import com.abnamro.recipeapp.dto.PageDto;
 import com.abnamro.recipeapp.dto.ingredient.CreateIngredientDto;
 import com.abnamro.recipeapp.dto.ingredient.IngredientDto;
+import com.abnamro.recipeapp.dto.ingredient.IngredientUpsertDto;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
 import java.util.Objects;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 class IngredientIntegrationTest {
@@ -122,8 +127,72 @@ class IngredientIntegrationTest {
                 .uri(baseUrl)
                 .exchange()
                 .expectStatus().isOk()
-                .expectBodyList(IngredientDto.class)
-                .value(ingredients -> assertThat(ingredients).isNotEmpty());
+                .expectBody(new ParameterizedTypeReference<PageDto<IngredientDto>>() {})
+                .value(page -> assertThat(page.items()).isNotEmpty());
+    }
+
+    @Test
+    @DisplayName("Create ingredients in bulk and return ids of existing ones")
+    void createIngredientsInBulk() {
+        List<IngredientUpsertDto> ingredients = webTestClient.post()
+                .uri(baseUrl + "/bulk")
+                .bodyValue(List.of("Bulk Ingredient B", "Test Ingredient", "Bulk Ingredient A", "Bulk Ingredient B"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(IngredientUpsertDto.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(ingredients).extracting(IngredientUpsertDto::name, IngredientUpsertDto::created).containsExactly(
+                tuple("Bulk Ingredient B", true),
+                tuple("Test Ingredient", false),
+                tuple("Bulk Ingredient A", true));
+        assertThat(ingredients.get(1).id()).isEqualTo(testIngredientId);
+
+        ingredients.stream().filter(IngredientUpsertDto::created).forEach(ingredient -> webTestClient.delete()
+                .uri(baseUrl + "/{id}", ingredient.id())
+                .exchange()
+                .expectStatus().isNoContent());
+    }
+
+    @Test
+    @DisplayName("Find an ingredient by name right after it was created, even if its absence was cached")
+    void getIngredientByNameAfterBulkCreate() {
+        webTestClient.get()
+                .uri(baseUrl + "/name/Bulk Ingredient C")
+                .exchange()
+                .expectStatus().isNotFound();
+
+        List<IngredientUpsertDto> created = webTestClient.post()
+                .uri(baseUrl + "/bulk")
+                .bodyValue(List.of("Bulk Ingredient C"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(IngredientUpsertDto.class)
+                .returnResult()
+                .getResponseBody();
+
+        webTestClient.get()
+                .uri(baseUrl + "/name/Bulk Ingredient C")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(IngredientDto.class)
+                .value(ingredient -> assertThat(ingredient.id()).isEqualTo(created.getFirst().id()));
+
+        webTestClient.delete()
+                .uri(baseUrl + "/{id}", created.getFirst().id())
+                .exchange()
+                .expectStatus().isNoContent();
+    }
+
+    @Test
+    @DisplayName("Fail to create an ingredient whose name already exists")
+    void createDuplicateIngredient() {
+        webTestClient.post()
+                .uri(baseUrl)
+                .bodyValue(new CreateIngredientDto("Test Ingredient"))
+                .exchange()
+                .expectStatus().isEqualTo(409);
     }
 
     @Test
@@ -1,25 +1,42 @@
 package com.abnamro.recipeapp.controller;
 
+import com.abnamro.recipeapp.dto.PageDto;
 import com.abnamro.recipeapp.dto.RecipeIngredientDto;
+import com.abnamro.recipeapp.dto.ingredient.IngredientCountDto;
 import com.abnamro.recipeapp.dto.recipe.CreateRecipeDto;
+import com.abnamro.recipeapp.dto.recipe.IngredientOperationDto;
+import com.abnamro.recipeapp.dto.recipe.RecipeFacetsDto;
+import com.abnamro.recipeapp.dto.recipe.MakeableRecipesRequestDto;
+import com.abnamro.recipeapp.dto.recipe.RecipeBatchDto;
 import com.abnamro.recipeapp.dto.recipe.RecipeDto;
+import com.abnamro.recipeapp.dto.recipe.RecipeIdsRequestDto;
+import com.abnamro.recipeapp.dto.recipe.RecipeImportResultDto;
+import com.abnamro.recipeapp.dto.recipe.RecipePatchDto;
 import com.abnamro.recipeapp.dto.recipe.RecipeRequestDto;
+import com.abnamro.recipeapp.dto.recipe.SimilarRecipeDto;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 class RecipeIntegrationTest {
 
+    private static final ParameterizedTypeReference<PageDto<RecipeDto>> RECIPE_PAGE = new ParameterizedTypeReference<>() {};
+
     @Autowired
     private WebTestClient webTestClient;
 
@@ -87,6 +104,11 @@ class RecipeIntegrationTest {
     @Test
     @DisplayName("Update an existing recipe successfully")
     void updateRecipe() {
+        webTestClient.get()
+                .uri(baseUrl + "/" + testRecipeId)
+                .exchange()
+                .expectStatus().isOk();
+
         List<RecipeIngredientDto> updatedIngredients = List.of(
                 new RecipeIngredientDto(1.5, "cup", 18), // Adjusted quantity
                 new RecipeIngredientDto(3.0, "tbsp", 19)  // Adjusted quantity
@@ -111,6 +133,187 @@ class RecipeIntegrationTest {
                     assertThat(response.name()).isEqualTo("Updated Recipe");
                     assertThat(response.ingredients()).hasSize(2);
                 });
+
+        webTestClient.get()
+                .uri(baseUrl + "/" + testRecipeId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(RecipeDto.class)
+                .value(response -> assertThat(response.name()).isEqualTo("Updated Recipe"));
+    }
+
+    @Test
+    @DisplayName("Answer a revalidation with 304 until the recipe changes")
+    void getRecipeById_shouldHonourIfNoneMatch() {
+        String eTag = webTestClient.get()
+                .uri(baseUrl + "/" + testRecipeId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.CACHE_CONTROL, "no-cache")
+                .returnResult(RecipeDto.class)
+                .getResponseHeaders()
+                .getETag();
+        assertThat(eTag).isNotNull();
+
+        webTestClient.get()
+                .uri(baseUrl + "/" + testRecipeId)
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, eTag)
+                .expectBody().isEmpty();
+
+        webTestClient.patch()
+                .uri(baseUrl + "/" + testRecipeId)
+                .bodyValue(new RecipePatchDto(null, null, null, 6, null))
+                .exchange()
+                .expectStatus().isOk();
+
+        webTestClient.get()
+                .uri(baseUrl + "/" + testRecipeId)
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().value(HttpHeaders.ETAG, newETag -> assertThat(newETag).isNotEqualTo(eTag))
+                .expectBody(RecipeDto.class)
+                .value(response -> assertThat(response.servings()).isEqualTo(6));
+    }
+
+    @Test
+    @DisplayName("Reject an update whose If-Match names a version that is no longer current")
+    void updateRecipe_shouldHonourIfMatch() {
+        String eTag = webTestClient.get()
+                .uri(baseUrl + "/" + testRecipeId)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(RecipeDto.class)
+                .getResponseHeaders()
+                .getETag();
+        RecipeDto renamed = new RecipeDto(testRecipeId, "Renamed Recipe", "Test instructions", true, 4, List.of(
+                new RecipeIngredientDto(1.0, "cup", 18),
+                new RecipeIngredientDto(2.0, "tbsp", 19)));
+
+        String newETag = webTestClient.put()
+                .uri(baseUrl + "/" + testRecipeId)
+                .header(HttpHeaders.IF_MATCH, eTag)
+                .bodyValue(renamed)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(RecipeDto.class)
+                .getResponseHeaders()
+                .getETag();
+        assertThat(newETag).isNotNull().isNotEqualTo(eTag);
+
+        webTestClient.put()
+                .uri(baseUrl + "/" + testRecipeId)
+                .header(HttpHeaders.IF_MATCH, eTag)
+                .bodyValue(new RecipeDto(testRecipeId, "Lost Update", "Test instructions", true, 4, renamed.ingredients()))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+        webTestClient.get()
+                .uri(baseUrl + "/" + testRecipeId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, newETag)
+                .expectBody(RecipeDto.class)
+                .value(response -> assertThat(response.name()).isEqualTo("Renamed Recipe"));
+    }
+
+    @Test
+    @DisplayName("Reject a patch whose If-Match names a version that is no longer current")
+    void patchRecipe_shouldHonourIfMatch() {
+        String eTag = webTestClient.get()
+                .uri(baseUrl + "/" + testRecipeId)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(RecipeDto.class)
+                .getResponseHeaders()
+                .getETag();
+
+        String newETag = webTestClient.patch()
+                .uri(baseUrl + "/" + testRecipeId)
+                .header(HttpHeaders.IF_MATCH, eTag)
+                .bodyValue(new RecipePatchDto(null, null, null, 6, null))
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(RecipeDto.class)
+                .getResponseHeaders()
+                .getETag();
+        assertThat(newETag).isNotNull().isNotEqualTo(eTag);
+
+        webTestClient.patch()
+                .uri(baseUrl + "/" + testRecipeId)
+                .header(HttpHeaders.IF_MATCH, eTag)
+                .bodyValue(new RecipePatchDto(null, null, null, 8, null))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+        webTestClient.get()
+                .uri(baseUrl + "/" + testRecipeId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, newETag)
+                .expectBody(RecipeDto.class)
+                .value(response -> assertThat(response.servings()).isEqualTo(6));
+    }
+
+    @Test
+    @DisplayName("Get several recipes by id in one request and report missing ids")
+    void getRecipesByIds() {
+        webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path(baseUrl).queryParam("ids", "0," + testRecipeId).build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(RecipeBatchDto.class)
+                .value(response -> {
+                    assertThat(response.items()).extracting(RecipeDto::id).containsExactly(testRecipeId);
+                    assertThat(response.items().getFirst().ingredients()).hasSize(2);
+                    assertThat(response.missingIds()).containsExactly(0);
+                });
+
+        webTestClient.post()
+                .uri(baseUrl + "/by-ids")
+                .bodyValue(new RecipeIdsRequestDto(List.of(testRecipeId, 0)))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(RecipeBatchDto.class)
+                .value(response -> {
+                    assertThat(response.items()).extracting(RecipeDto::id).containsExactly(testRecipeId);
+                    assertThat(response.missingIds()).containsExactly(0);
+                });
+    }
+
+    @Test
+    @DisplayName("Patch servings and ingredients of an existing recipe")
+    void patchRecipe() {
+        RecipePatchDto patch = new RecipePatchDto(null, null, null, 6, List.of(
+                new IngredientOperationDto("change", 18, 2.5, null),
+                new IngredientOperationDto("remove", 19, null, null),
+                new IngredientOperationDto("add", 17, 1.0, "pinch")));
+
+        webTestClient.patch()
+                .uri(baseUrl + "/" + testRecipeId)
+                .contentType(MediaType.valueOf("application/merge-patch+json"))
+                .bodyValue(patch)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(RecipeDto.class)
+                .value(response -> {
+                    assertThat(response.name()).isEqualTo("Test Recipe");
+                    assertThat(response.instructions()).isEqualTo("Test instructions");
+                    assertThat(response.servings()).isEqualTo(6);
+                    assertThat(response.ingredients()).containsExactlyInAnyOrder(
+                            new RecipeIngredientDto(2.5, "cup", 18),
+                            new RecipeIngredientDto(1.0, "pinch", 17));
+                });
+
+        webTestClient.patch()
+                .uri(baseUrl + "/" + testRecipeId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new RecipePatchDto(null, null, null, null, List.of(new IngredientOperationDto("add", 18, 1.0, "cup"))))
+                .exchange()
+                .expectStatus().isEqualTo(409);
     }
 
     @Test
@@ -120,8 +323,8 @@ class RecipeIntegrationTest {
                 .uri(baseUrl + "/vegetarian")
                 .exchange()
                 .expectStatus().isOk()
-                .expectBodyList(RecipeDto.class)
-                .value(recipes -> assertThat(recipes).isNotEmpty());
+                .expectBody(RECIPE_PAGE)
+                .value(page -> assertThat(page.items()).isNotEmpty());
     }
 
     @Test
@@ -131,8 +334,8 @@ class RecipeIntegrationTest {
                 .uri(baseUrl + "/non-vegetarian")
                 .exchange()
                 .expectStatus().isOk()
-                .expectBodyList(RecipeDto.class)
-                .value(recipes -> assertThat(recipes).isNotEmpty());
+                .expectBody(RECIPE_PAGE)
+                .value(page -> assertThat(page.items()).isNotEmpty());
     }
 
     @Test
@@ -142,8 +345,8 @@ class RecipeIntegrationTest {
                 .uri(baseUrl + "/servings/4")
                 .exchange()
                 .expectStatus().isOk()
-                .expectBodyList(RecipeDto.class)
-                .value(recipes -> assertThat(recipes).isNotEmpty());
+                .expectBody(RECIPE_PAGE)
+                .value(page -> assertThat(page.items()).isNotEmpty());
     }
 
     @Test
@@ -153,8 +356,8 @@ class RecipeIntegrationTest {
                 .uri(baseUrl + "/instruction/Test")
                 .exchange()
                 .expectStatus().isOk()
-                .expectBodyList(RecipeDto.class)
-                .value(recipes -> assertThat(recipes).isNotEmpty());
+                .expectBody(RECIPE_PAGE)
+                .value(page -> assertThat(page.items()).isNotEmpty());
     }
 
     @Test
@@ -172,6 +375,20 @@ class RecipeIntegrationTest {
                 });
     }
 
+    @Test
+    @DisplayName("Search recipes by a misspelled name")
+    void searchRecipesByName() {
+        webTestClient.get()
+                .uri(uriBuilder -> uriBuilder
+                        .path(baseUrl + "/name/search")
+                        .queryParam("q", "test recipie")
+                        .build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(RecipeDto.class)
+                .value(recipes -> assertThat(recipes).extracting(RecipeDto::id).contains(testRecipeId));
+    }
+
     @Test
     @DisplayName("Get all recipes")
     void getAllRecipes() {
@@ -179,8 +396,47 @@ class RecipeIntegrationTest {
                 .uri(baseUrl)
                 .exchange()
                 .expectStatus().isOk()
-                .expectBodyList(RecipeDto.class)
-                .value(recipes -> assertThat(recipes).isNotEmpty());
+                .expectBody(RECIPE_PAGE)
+                .value(page -> assertThat(page.items()).isNotEmpty());
+    }
+
+    @Test
+    @DisplayName("Page through all recipes with a cursor")
+    void getAllRecipesPageByPage() {
+        List<Integer> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            String currentCursor = cursor;
+            PageDto<RecipeDto> page = webTestClient.get()
+                    .uri(uriBuilder -> uriBuilder
+                            .path(baseUrl)
+                            .queryParam("limit", 1)
+                            .queryParamIfPresent("cursor", Optional.ofNullable(currentCursor))
+                            .build())
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody(RECIPE_PAGE)
+                    .returnResult()
+                    .getResponseBody();
+            assertThat(page).isNotNull();
+            assertThat(page.items()).hasSizeLessThanOrEqualTo(1);
+            page.items().forEach(recipe -> ids.add(recipe.id()));
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        assertThat(ids).isSorted().doesNotHaveDuplicates().contains(testRecipeId);
+    }
+
+    @Test
+    @DisplayName("Fail to get recipes with an invalid cursor")
+    void getAllRecipesWithInvalidCursor() {
+        webTestClient.get()
+                .uri(uriBuilder -> uriBuilder
+                        .path(baseUrl)
+                        .queryParam("cursor", "invalid")
+                        .build())
+                .exchange()
+                .expectStatus().isBadRequest();
     }
 
     @Test
@@ -194,8 +450,207 @@ class RecipeIntegrationTest {
                         .build())
                 .exchange()
                 .expectStatus().isOk()
-                .expectBodyList(RecipeDto.class)
-                .value(recipes -> assertThat(recipes).isNotEmpty());
+                .expectBody(RECIPE_PAGE)
+                .value(page -> assertThat(page.items()).isNotEmpty());
+    }
+
+    @Test
+    @DisplayName("Get recipe summaries without instructions or ingredients")
+    void getRecipeSummaries() {
+        webTestClient.get()
+                .uri(uriBuilder -> uriBuilder
+                        .path(baseUrl + "/search")
+                        .queryParam("includeIngredient", 18, 19)
+                        .queryParam("view", "summary")
+                        .queryParam("limit", 100)
+                        .build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.items[?(@.id == " + testRecipeId + ")].ingredientCount").isEqualTo(2)
+                .jsonPath("$.items[0].instructions").doesNotExist()
+                .jsonPath("$.items[0].ingredients").doesNotExist();
+
+        webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path(baseUrl).queryParam("view", "summary").build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.items[0].name").exists()
+                .jsonPath("$.items[0].instructions").doesNotExist();
+
+        webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path(baseUrl).queryParam("view", "compact").build())
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    @DisplayName("Count search facets for the current filters")
+    void searchRecipeFacets() {
+        webTestClient.get()
+                .uri(uriBuilder -> uriBuilder
+                        .path(baseUrl + "/search/facets")
+                        .queryParam("includeIngredient", 18, 19)
+                        .build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(RecipeFacetsDto.class)
+                .value(facets -> {
+                    assertThat(facets.vegetarian()).isPositive();
+                    assertThat(facets.servings()).containsKey(4);
+                    assertThat(facets.topIngredients()).extracting(IngredientCountDto::id).contains(18, 19);
+                });
+    }
+
+    @Test
+    @DisplayName("Search recipes by included and excluded ingredients")
+    void searchRecipesByIngredients() {
+        webTestClient.get()
+                .uri(uriBuilder -> uriBuilder
+                        .path(baseUrl + "/search")
+                        .queryParam("includeIngredient", 18, 19)
+                        .queryParam("limit", 100)
+                        .build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(RECIPE_PAGE)
+                .value(page -> assertThat(page.items()).extracting(RecipeDto::id).contains(testRecipeId));
+
+        webTestClient.get()
+                .uri(uriBuilder -> uriBuilder
+                        .path(baseUrl + "/search")
+                        .queryParam("includeIngredient", 18)
+                        .queryParam("excludeIngredient", 19)
+                        .queryParam("limit", 100)
+                        .build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(RECIPE_PAGE)
+                .value(page -> assertThat(page.items()).extracting(RecipeDto::id).doesNotContain(testRecipeId));
+    }
+
+    @Test
+    @DisplayName("Get recipes similar to a recipe")
+    void getSimilarRecipes() {
+        RecipeRequestDto twinRequest = new RecipeRequestDto(
+                new CreateRecipeDto("Test Recipe Twin", "Twin instructions", true, 2),
+                List.of(new RecipeIngredientDto(1.0, "cup", 18), new RecipeIngredientDto(1.0, "tbsp", 19)));
+        webTestClient.post()
+                .uri(baseUrl)
+                .bodyValue(twinRequest)
+                .exchange()
+                .expectStatus().isCreated();
+        RecipeDto twin = webTestClient.get()
+                .uri(baseUrl + "/name/Test Recipe Twin")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(RecipeDto.class)
+                .returnResult()
+                .getResponseBody();
+        assertThat(twin).isNotNull();
+
+        try {
+            webTestClient.get()
+                    .uri(uriBuilder -> uriBuilder.path(baseUrl + "/{id}/similar").queryParam("k", 5).build(testRecipeId))
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBodyList(SimilarRecipeDto.class)
+                    .value(similar -> {
+                        assertThat(similar).hasSizeLessThanOrEqualTo(5);
+                        assertThat(similar).extracting(s -> s.recipe().id()).contains(twin.id()).doesNotContain(testRecipeId);
+                        assertThat(similar.getFirst().similarity()).isEqualTo(1.0);
+                    });
+        } finally {
+            webTestClient.delete()
+                    .uri(baseUrl + "/{id}", twin.id())
+                    .exchange()
+                    .expectStatus().isNoContent();
+        }
+    }
+
+    @Test
+    @DisplayName("Find recipes makeable from a set of ingredients")
+    void findMakeableRecipes() {
+        webTestClient.post()
+                .uri(uriBuilder -> uriBuilder.path(baseUrl + "/makeable").queryParam("limit", 100).build())
+                .bodyValue(new MakeableRecipesRequestDto(List.of(18, 19), null))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(RECIPE_PAGE)
+                .value(page -> assertThat(page.items()).extracting(RecipeDto::id).contains(testRecipeId));
+
+        webTestClient.post()
+                .uri(uriBuilder -> uriBuilder.path(baseUrl + "/makeable").queryParam("limit", 100).build())
+                .bodyValue(new MakeableRecipesRequestDto(List.of(18), 0))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(RECIPE_PAGE)
+                .value(page -> assertThat(page.items()).extracting(RecipeDto::id).doesNotContain(testRecipeId));
+
+        webTestClient.post()
+                .uri(uriBuilder -> uriBuilder.path(baseUrl + "/makeable").queryParam("limit", 100).build())
+                .bodyValue(new MakeableRecipesRequestDto(List.of(18), 1))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(RECIPE_PAGE)
+                .value(page -> assertThat(page.items()).extracting(RecipeDto::id).contains(testRecipeId));
+    }
+
+    @Test
+    @DisplayName("Bulk import recipes from an NDJSON stream")
+    void bulkImportRecipes() {
+        String body = String.join("\n",
+                "{\"recipe\":{\"name\":\"Bulk Soup\",\"instructions\":\"Simmer.\",\"isVegetarian\":true,\"servings\":2},"
+                        + "\"recipeIngredients\":[{\"amount\":1.0,\"unit\":\"cup\",\"ingredientId\":18}]}",
+                "{\"recipe\":{\"name\":\"Bulk Stew\",\"instructions\":\"Stew.\",\"isVegetarian\":false,\"servings\":4},"
+                        + "\"recipeIngredients\":[{\"amount\":1.0,\"unit\":\"cup\",\"ingredientId\":999999}]}",
+                "not json");
+
+        List<RecipeImportResultDto> results = webTestClient.post()
+                .uri(baseUrl + "/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue(body)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(RecipeImportResultDto.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        assertThat(results).extracting(RecipeImportResultDto::line).containsExactlyInAnyOrder(1L, 2L, 3L);
+        RecipeImportResultDto created = results.stream().filter(result -> result.line() == 1).findFirst().orElseThrow();
+        assertThat(created.status()).isEqualTo("CREATED");
+        assertThat(results).filteredOn(result -> result.line() != 1).allMatch(result -> "FAILED".equals(result.status()));
+
+        webTestClient.get()
+                .uri(baseUrl + "/" + created.id())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(RecipeDto.class)
+                .value(recipe -> assertThat(recipe.name()).isEqualTo("Bulk Soup"));
+        webTestClient.delete()
+                .uri(baseUrl + "/" + created.id())
+                .exchange()
+                .expectStatus().isNoContent();
+    }
+
+    @Test
+    @DisplayName("Fail to create a recipe with missing ingredients and report all of them")
+    void addRecipeWithMissingIngredients() {
+        RecipeRequestDto recipeRequest = new RecipeRequestDto(
+                new CreateRecipeDto("Missing Ingredients Recipe", "Instructions", true, 2),
+                List.of(new RecipeIngredientDto(1.0, "cup", 18),
+                        new RecipeIngredientDto(1.0, "cup", 999998),
+                        new RecipeIngredientDto(1.0, "cup", 999999)));
+
+        webTestClient.post()
+                .uri(baseUrl)
+                .bodyValue(recipeRequest)
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody()
+                .jsonPath("$.message").value(message -> assertThat((String) message).contains("999998", "999999"));
     }
 
     @Test
@@ -0,0 +1,167 @@
+package com.abnamro.recipeapp.index;
+
+import com.abnamro.recipeapp.event.IngredientDeletedEvent;
+import com.abnamro.recipeapp.event.RecipeDeletedEvent;
+import com.abnamro.recipeapp.event.RecipeSavedEvent;
+import com.abnamro.recipeapp.repository.RecipeIngredientLink;
+import com.abnamro.recipeapp.repository.RecipeIngredientRepository;
+import com.abnamro.recipeapp.repository.RecipeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+
+@ExtendWith(MockitoExtension.class)
+class RecipeIngredientIndexTest {
+
+    private RecipeIngredientIndex underTest;
+
+    @Mock
+    private RecipeRepository recipeRepository;
+
+    @Mock
+    private RecipeIngredientRepository recipeIngredientRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new RecipeIngredientIndex(recipeRepository, recipeIngredientRepository, transactionManager);
+    }
+
+    @Test
+    @DisplayName("Should not answer queries before the index has been built")
+    void candidates_shouldBeEmptyBeforeRebuild() {
+        assertTrue(underTest.candidates(List.of(1), null).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should intersect included and subtract excluded ingredients")
+    void candidates_shouldCombineIncludeAndExcludeFilters() {
+        // Given
+        rebuildWith(List.of(1, 2, 3, 4),
+                new RecipeIngredientLink(1, 10), new RecipeIngredientLink(1, 11),
+                new RecipeIngredientLink(2, 10), new RecipeIngredientLink(2, 11), new RecipeIngredientLink(2, 12),
+                new RecipeIngredientLink(3, 10),
+                new RecipeIngredientLink(4, 12));
+
+        // When & Then
+        assertEquals(RoaringBitmap.bitmapOf(1, 2, 3), underTest.candidates(List.of(10), null).orElseThrow());
+        assertEquals(RoaringBitmap.bitmapOf(1, 2), underTest.candidates(List.of(10, 11), List.of()).orElseThrow());
+        assertEquals(RoaringBitmap.bitmapOf(1), underTest.candidates(List.of(10, 11), List.of(12)).orElseThrow());
+        assertEquals(RoaringBitmap.bitmapOf(1, 3), underTest.candidates(null, List.of(12)).orElseThrow());
+        assertTrue(underTest.candidates(List.of(10, 99), null).orElseThrow().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should reflect saved, updated and deleted recipes")
+    void candidates_shouldFollowRecipeEvents() {
+        // Given
+        rebuildWith(List.of(1), new RecipeIngredientLink(1, 10));
+
+        // When
+        underTest.onRecipeSaved(new RecipeSavedEvent(2, "Pasta", List.of(10, 11), true, 2));
+        underTest.onRecipeSaved(new RecipeSavedEvent(1, "Salad", List.of(11), true, 2));
+
+        // Then
+        assertEquals(RoaringBitmap.bitmapOf(2), underTest.candidates(List.of(10), null).orElseThrow());
+        assertEquals(RoaringBitmap.bitmapOf(1, 2), underTest.candidates(List.of(11), null).orElseThrow());
+
+        // When
+        underTest.onRecipeDeleted(new RecipeDeletedEvent(2));
+
+        // Then
+        assertTrue(underTest.candidates(List.of(10), null).orElseThrow().isEmpty());
+        assertEquals(RoaringBitmap.bitmapOf(1), underTest.candidates(null, List.of(10)).orElseThrow());
+    }
+
+    @Test
+    @DisplayName("Should drop a deleted ingredient from every recipe")
+    void candidates_shouldFollowIngredientDeletion() {
+        // Given
+        rebuildWith(List.of(1, 2), new RecipeIngredientLink(1, 10), new RecipeIngredientLink(2, 11));
+
+        // When
+        underTest.onIngredientDeleted(new IngredientDeletedEvent(10));
+
+        // Then
+        assertTrue(underTest.candidates(List.of(10), null).orElseThrow().isEmpty());
+        assertEquals(RoaringBitmap.bitmapOf(1, 2), underTest.candidates(null, List.of(10)).orElseThrow());
+    }
+
+    @Test
+    @DisplayName("Should remove a recipe only from the ingredients it used")
+    void onRecipeSaved_shouldRemoveRecipeFromItsPreviousIngredients() {
+        // Given
+        rebuildWith(List.of(1, 2),
+                new RecipeIngredientLink(1, 10), new RecipeIngredientLink(1, 11),
+                new RecipeIngredientLink(2, 11), new RecipeIngredientLink(2, 12));
+        underTest.onIngredientDeleted(new IngredientDeletedEvent(11));
+
+        // When
+        underTest.onRecipeSaved(new RecipeSavedEvent(1, "Pasta", List.of(12), true, 2));
+        underTest.onRecipeDeleted(new RecipeDeletedEvent(2));
+
+        // Then
+        assertTrue(underTest.candidates(List.of(10), null).orElseThrow().isEmpty());
+        assertTrue(underTest.candidates(List.of(11), null).orElseThrow().isEmpty());
+        assertEquals(RoaringBitmap.bitmapOf(1), underTest.candidates(List.of(12), null).orElseThrow());
+    }
+
+    @Test
+    @DisplayName("Should stay unavailable when the rebuild fails")
+    void rebuild_shouldLeaveIndexUnavailableOnFailure() {
+        // Given
+        doThrow(new DataAccessResourceFailureException("down")).when(recipeRepository).forEachId(any());
+
+        // When
+        underTest.rebuild();
+
+        // Then
+        assertTrue(underTest.candidates(List.of(10), null).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should become unavailable when a rebuild cannot start a transaction")
+    void rebuild_shouldDropBuiltIndexWhenTransactionCannotStart() {
+        // Given
+        rebuildWith(List.of(1), new RecipeIngredientLink(1, 10));
+        doThrow(new CannotCreateTransactionException("pool exhausted")).when(transactionManager).getTransaction(any());
+
+        // When
+        underTest.rebuild();
+
+        // Then
+        assertTrue(underTest.candidates(List.of(10), null).isEmpty());
+    }
+
+    private void rebuildWith(List<Integer> recipeIds, RecipeIngredientLink... links) {
+        doAnswer(invocation -> {
+            IntConsumer consumer = invocation.getArgument(0);
+            recipeIds.forEach(consumer::accept);
+            return null;
+        }).when(recipeRepository).forEachId(any());
+        doAnswer(invocation -> {
+            Consumer<RecipeIngredientLink> consumer = invocation.getArgument(0);
+            List.of(links).forEach(consumer);
+            return null;
+        }).when(recipeIngredientRepository).forEachLink(any());
+        underTest.rebuild();
+    }
+}
@@ -0,0 +1,181 @@
+package com.abnamro.recipeapp.index;
+
+import com.abnamro.recipeapp.event.IngredientDeletedEvent;
+import com.abnamro.recipeapp.event.RecipeDeletedEvent;
+import com.abnamro.recipeapp.event.RecipeSavedEvent;
+import com.abnamro.recipeapp.repository.RecipeIngredientLink;
+import com.abnamro.recipeapp.repository.RecipeIngredientRepository;
+import com.abnamro.recipeapp.repository.RecipeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+
+@ExtendWith(MockitoExtension.class)
+class RecipeSimilarityIndexTest {
+
+    private RecipeSimilarityIndex underTest;
+
+    private RecipeIngredientIndex recipeIngredientIndex;
+
+    @Mock
+    private RecipeRepository recipeRepository;
+
+    @Mock
+    private RecipeIngredientRepository recipeIngredientRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        recipeIngredientIndex = new RecipeIngredientIndex(recipeRepository, recipeIngredientRepository, transactionManager);
+        underTest = new RecipeSimilarityIndex(recipeIngredientIndex);
+    }
+
+    @Test
+    @DisplayName("Should rank recipes by exact Jaccard similarity of their ingredients")
+    void findSimilar_shouldRankByJaccardSimilarity() {
+        // Given
+        rebuildWith(
+                recipe(1, 10, 11, 12, 13, 14, 15, 16, 17),
+                recipe(2, 10, 11, 12, 13, 14, 15, 16, 17),
+                recipe(3, 10, 11, 12, 13, 14, 15, 16, 18),
+                recipe(4, 30, 31, 32));
+
+        // When
+        List<RecipeSimilarityIndex.SimilarRecipe> similar = underTest.findSimilar(1, 10).orElseThrow();
+
+        // Then
+        assertEquals(2, similar.getFirst().recipeId());
+        assertEquals(1.0, similar.getFirst().similarity());
+        assertTrue(similar.stream().noneMatch(candidate -> candidate.recipeId() == 1 || candidate.recipeId() == 4));
+        similar.stream()
+                .filter(candidate -> candidate.recipeId() == 3)
+                .forEach(candidate -> assertEquals(7.0 / 9.0, candidate.similarity(), 1e-9));
+    }
+
+    @Test
+    @DisplayName("Should return at most k recipes")
+    void findSimilar_shouldLimitResultsToK() {
+        // Given
+        rebuildWith(recipe(1, 10, 11), recipe(2, 10, 11), recipe(3, 10, 11), recipe(4, 10, 11));
+
+        // When
+        List<RecipeSimilarityIndex.SimilarRecipe> similar = underTest.findSimilar(1, 2).orElseThrow();
+
+        // Then
+        assertEquals(List.of(new RecipeSimilarityIndex.SimilarRecipe(2, 1.0), new RecipeSimilarityIndex.SimilarRecipe(3, 1.0)), similar);
+    }
+
+    @Test
+    @DisplayName("Should follow saved and deleted recipes and deleted ingredients")
+    void findSimilar_shouldFollowEvents() {
+        // Given
+        rebuildWith(recipe(1, 10, 11), recipe(2, 20, 21));
+
+        // When
+        save(new RecipeSavedEvent(2, "Pasta", List.of(10, 11), true, 2));
+        save(new RecipeSavedEvent(3, "Pizza", List.of(10, 11), true, 2));
+
+        // Then
+        assertEquals(List.of(2, 3), similarIds(1));
+
+        // When
+        underTest.onRecipeDeleted(new RecipeDeletedEvent(3));
+        recipeIngredientIndex.onRecipeDeleted(new RecipeDeletedEvent(3));
+        underTest.onIngredientDeleted(new IngredientDeletedEvent(11));
+        recipeIngredientIndex.onIngredientDeleted(new IngredientDeletedEvent(11));
+
+        // Then
+        assertEquals(List.of(new RecipeSimilarityIndex.SimilarRecipe(2, 1.0)), underTest.findSimilar(1, 10).orElseThrow());
+        assertTrue(underTest.findSimilar(3, 10).orElseThrow().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should move a saved recipe out of the buckets of its previous ingredients")
+    void onRecipeSaved_shouldForgetPreviousIngredients() {
+        // Given
+        rebuildWith(recipe(1, 10, 11), recipe(2, 10, 11));
+
+        // When
+        save(new RecipeSavedEvent(2, "Pasta", List.of(20, 21), true, 2));
+
+        // Then
+        assertTrue(similarIds(1).isEmpty());
+        assertTrue(similarIds(2).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should report itself unavailable instead of answering from a failed rebuild")
+    void findSimilar_shouldBeEmptyWhenRebuildFails() {
+        // Given
+        rebuildWith(recipe(1, 10, 11), recipe(2, 10, 11));
+        doThrow(new DataAccessResourceFailureException("down")).when(recipeIngredientRepository).forEachLink(any());
+
+        // When
+        recipeIngredientIndex.rebuild();
+        underTest.rebuild();
+
+        // Then
+        assertTrue(underTest.findSimilar(1, 10).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should be unavailable before the first rebuild")
+    void findSimilar_shouldBeEmptyBeforeRebuild() {
+        assertTrue(underTest.findSimilar(1, 10).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should compute Jaccard similarity of sorted ingredient sets")
+    void jaccard_shouldDivideIntersectionByUnion() {
+        assertEquals(1.0, RecipeSimilarityIndex.jaccard(new int[]{1, 2}, new int[]{1, 2}));
+        assertEquals(0.5, RecipeSimilarityIndex.jaccard(new int[]{1, 2, 3}, new int[]{2, 3, 4}));
+        assertEquals(0.0, RecipeSimilarityIndex.jaccard(new int[]{1}, new int[]{2}));
+    }
+
+    private static List<RecipeIngredientLink> recipe(int recipeId, int... ingredientIds) {
+        List<RecipeIngredientLink> links = new ArrayList<>();
+        for (int ingredientId : ingredientIds) {
+            links.add(new RecipeIngredientLink(recipeId, ingredientId));
+        }
+        return links;
+    }
+
+    @SafeVarargs
+    private void rebuildWith(List<RecipeIngredientLink>... recipes) {
+        doAnswer(invocation -> {
+            Consumer<RecipeIngredientLink> consumer = invocation.getArgument(0);
+            for (List<RecipeIngredientLink> links : recipes) {
+                links.forEach(consumer);
+            }
+            return null;
+        }).when(recipeIngredientRepository).forEachLink(any());
+        recipeIngredientIndex.rebuild();
+        underTest.rebuild();
+    }
+
+    // In listener order: this index still needs the previous ingredients.
+    private void save(RecipeSavedEvent event) {
+        underTest.onRecipeSaved(event);
+        recipeIngredientIndex.onRecipeSaved(event);
+    }
+
+    private List<Integer> similarIds(int recipeId) {
+        return underTest.findSimilar(recipeId, 10).orElseThrow().stream().map(RecipeSimilarityIndex.SimilarRecipe::recipeId).toList();
+    }
+}
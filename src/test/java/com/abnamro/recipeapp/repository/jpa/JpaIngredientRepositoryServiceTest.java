@@ -1,16 +1,20 @@
 package com.abnamro.recipeapp.repository.jpa;
 
 import com.abnamro.recipeapp.entity.Ingredient;
+import com.abnamro.recipeapp.repository.IdAndName;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Limit;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -80,6 +84,23 @@ class JpaIngredientRepositoryServiceTest {
         assertEquals("Sugar", foundIngredient.get().getName());
     }
 
+    @Test
+    void findAllByIds() {
+        // Given
+        Ingredient sugar = new Ingredient();
+        sugar.setId(1);
+        Ingredient salt = new Ingredient();
+        salt.setId(2);
+        Mockito.when(jpaIngredientRepository.findAllCachedById(List.of(1, 2, 3))).thenReturn(List.of(sugar, salt));
+
+        // When
+        List<Ingredient> ingredients = underTest.findAllByIds(List.of(1, 2, 3));
+
+        // Then
+        Mockito.verify(jpaIngredientRepository).findAllCachedById(List.of(1, 2, 3));
+        assertEquals(List.of(sugar, salt), ingredients);
+    }
+
     @Test
     void findByName() {
         // Given
@@ -103,24 +124,63 @@ class JpaIngredientRepositoryServiceTest {
         Ingredient ingredient2 = new Ingredient();
         ingredient2.setName("Butter");
         List<Ingredient> ingredients = Arrays.asList(ingredient1, ingredient2);
-        Mockito.when(jpaIngredientRepository.findAll()).thenReturn(ingredients);
+        Mockito.when(jpaIngredientRepository.findByIdGreaterThanOrderByIdAsc(5, Limit.of(2))).thenReturn(ingredients);
 
         // When
-        List<Ingredient> allIngredients = underTest.findAll();
+        List<Ingredient> allIngredients = underTest.findAll(5, 2);
 
         // Then
-        Mockito.verify(jpaIngredientRepository).findAll();
+        Mockito.verify(jpaIngredientRepository).findByIdGreaterThanOrderByIdAsc(5, Limit.of(2));
         assertEquals(2, allIngredients.size());
         assertEquals("Oil", allIngredients.get(0).getName());
         assertEquals("Butter", allIngredients.get(1).getName());
     }
 
+    @Test
+    void findAllByNames() {
+        // Given
+        Ingredient salt = new Ingredient("Salt");
+        Mockito.when(jpaIngredientRepository.findByNameIn(List.of("Salt"))).thenReturn(List.of(salt));
+
+        // When
+        List<Ingredient> ingredients = underTest.findAllByNames(List.of("Salt"));
+
+        // Then
+        Mockito.verify(jpaIngredientRepository).findByNameIn(List.of("Salt"));
+        assertEquals(List.of(salt), ingredients);
+    }
+
+    @Test
+    void insertMissing() {
+        // Given
+        Ingredient pepper = new Ingredient("Pepper");
+        Mockito.when(jpaIngredientRepository.insertMissingNames(any(String[].class))).thenReturn(List.of(pepper));
+
+        // When
+        List<Ingredient> ingredients = underTest.insertMissing(List.of("Salt", "Pepper"));
+
+        // Then
+        Mockito.verify(jpaIngredientRepository).insertMissingNames(new String[]{"Salt", "Pepper"});
+        Mockito.verify(jpaIngredientRepository).evictNameQueries();
+        assertEquals(List.of(pepper), ingredients);
+    }
+
+    @Test
+    void evictCached() {
+        // When
+        underTest.evictCached(List.of(1, 2));
+
+        // Then
+        Mockito.verify(jpaIngredientRepository).evictCached(List.of(1, 2));
+    }
+
     @Test
     void deleteById() {
         // When
         underTest.deleteById(1);
 
         // Then
+        Mockito.verify(jpaIngredientRepository).touchRecipesUsing(1);
         Mockito.verify(jpaIngredientRepository).deleteById(1);
     }
 
@@ -136,4 +196,18 @@ class JpaIngredientRepositoryServiceTest {
         Mockito.verify(jpaIngredientRepository).existsById(1);
         assertTrue(exists);
     }
+
+    @Test
+    void forEachIdAndName() {
+        // Given
+        Mockito.when(jpaIngredientRepository.streamAllIdsAndNames()).thenReturn(Stream.of(new IdAndName(1, "Salt")));
+        List<IdAndName> ingredients = new ArrayList<>();
+
+        // When
+        underTest.forEachIdAndName(ingredients::add);
+
+        // Then
+        Mockito.verify(jpaIngredientRepository).streamAllIdsAndNames();
+        assertEquals(List.of(new IdAndName(1, "Salt")), ingredients);
+    }
 }
\ No newline at end of file
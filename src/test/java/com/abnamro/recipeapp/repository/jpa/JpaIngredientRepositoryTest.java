@@ -1,22 +1,42 @@
 package com.abnamro.recipeapp.repository.jpa;
 
 import com.abnamro.recipeapp.entity.Ingredient;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
-@DataJpaTest
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
 class JpaIngredientRepositoryTest {
 
     @Autowired
     private JpaIngredientRepository underTest;
 
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
     @Test
     void findByName() {
         // given
@@ -31,4 +51,78 @@ class JpaIngredientRepositoryTest {
         assertThat(foundIngredient).isPresent();
         assertThat(foundIngredient.get().getName()).isEqualTo("Mayo");
     }
-}
\ No newline at end of file
+
+    @Test
+    void insertMissingNames() {
+        // given
+        underTest.save(new Ingredient("Mayo"));
+        underTest.flush();
+
+        // when
+        List<Ingredient> inserted = underTest.insertMissingNames(new String[]{"Mayo", "Ketchup", "Mustard", "Ketchup"});
+
+        // then
+        assertThat(inserted).extracting(Ingredient::getName).containsExactlyInAnyOrder("Ketchup", "Mustard");
+        assertThat(inserted).extracting(Ingredient::getId).doesNotContainNull().doesNotHaveDuplicates();
+        assertThat(underTest.findByNameIn(List.of("Mayo", "Ketchup", "Mustard"))).hasSize(3);
+    }
+
+    // The cache tests commit their rows first: Hibernate does not cache what the current transaction wrote.
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void findAllCachedByIdServesRepeatedLookupsFromSecondLevelCache() {
+        // given
+        List<Ingredient> saved = saveCommitted("Cached Sugar " + UUID.randomUUID(), "Cached Salt " + UUID.randomUUID());
+        Integer sugarId = saved.get(0).getId();
+        Integer saltId = saved.get(1).getId();
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        sessionFactory.getCache().evictEntityData(Ingredient.class);
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.clear();
+
+        try {
+            // when
+            underTest.findAllCachedById(List.of(sugarId, saltId));
+            List<Ingredient> ingredients = underTest.findAllCachedById(List.of(saltId, sugarId));
+
+            // then
+            assertThat(ingredients).extracting(Ingredient::getId).containsExactly(saltId, sugarId);
+            assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+            assertThat(statistics.getSecondLevelCacheHitCount()).isEqualTo(2);
+        } finally {
+            underTest.deleteAllById(List.of(sugarId, saltId));
+        }
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void findByNameServesRepeatedLookupsFromQueryCache() {
+        // given
+        String name = "Cached Pepper " + UUID.randomUUID();
+        Integer pepperId = saveCommitted(name).get(0).getId();
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        sessionFactory.getCache().evictQueryRegion(Ingredient.BY_NAME_QUERY_REGION);
+        sessionFactory.getCache().evictEntityData(Ingredient.class);
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.clear();
+
+        try {
+            // when
+            underTest.findByName(name);
+            Optional<Ingredient> ingredient = underTest.findByName(name);
+
+            // then
+            assertThat(ingredient).map(Ingredient::getId).contains(pepperId);
+            assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+            assertThat(statistics.getQueryCacheHitCount()).isEqualTo(1);
+        } finally {
+            underTest.deleteById(pepperId);
+        }
+    }
+
+    private List<Ingredient> saveCommitted(String... names) {
+        return new TransactionTemplate(transactionManager).execute(status -> Arrays.stream(names)
+                .map(name -> entityManager.persist(new Ingredient(name)))
+                .toList());
+    }
+}
@@ -1,13 +1,19 @@
 package com.abnamro.recipeapp.repository.jpa;
 
 import com.abnamro.recipeapp.entity.RecipeIngredient;
+import com.abnamro.recipeapp.repository.RecipeIngredientLink;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 class JpaRecipeIngredientRepositoryServiceTest {
 
@@ -39,4 +45,30 @@ class JpaRecipeIngredientRepositoryServiceTest {
         // Then
         verify(jpaRecipeIngredientRepository).save(recipeIngredient);
     }
-}
\ No newline at end of file
+
+    @Test
+    void saveAll() {
+        // Given
+        List<RecipeIngredient> recipeIngredients = List.of(new RecipeIngredient(), new RecipeIngredient());
+
+        // When
+        underTest.saveAll(recipeIngredients);
+
+        // Then
+        verify(jpaRecipeIngredientRepository).saveAll(recipeIngredients);
+    }
+
+    @Test
+    void forEachLink() {
+        // Given
+        List<RecipeIngredientLink> links = List.of(new RecipeIngredientLink(1, 10), new RecipeIngredientLink(1, 11));
+        when(jpaRecipeIngredientRepository.streamAllLinks()).thenReturn(links.stream());
+        List<RecipeIngredientLink> visited = new ArrayList<>();
+
+        // When
+        underTest.forEachLink(visited::add);
+
+        // Then
+        assertEquals(links, visited);
+    }
+}
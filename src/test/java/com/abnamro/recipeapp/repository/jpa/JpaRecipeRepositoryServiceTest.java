@@ -1,16 +1,27 @@
 package com.abnamro.recipeapp.repository.jpa;
 
 import com.abnamro.recipeapp.entity.Recipe;
+import com.abnamro.recipeapp.repository.IdAndName;
+import com.abnamro.recipeapp.repository.IngredientCount;
+import com.abnamro.recipeapp.repository.RankedRecipe;
+import com.abnamro.recipeapp.repository.RecipeFacets;
+import com.abnamro.recipeapp.repository.RecipeSearchCriteria;
+import com.abnamro.recipeapp.repository.RecipeSummary;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -77,26 +88,6 @@ class JpaRecipeRepositoryServiceTest {
         assertTrue(notExists);
     }
 
-    @Test
-    void findAll() {
-        // Given
-        Recipe recipe1 = new Recipe();
-        recipe1.setName("Cake");
-        Recipe recipe2 = new Recipe();
-        recipe2.setName("Pasta");
-        List<Recipe> recipes = Arrays.asList(recipe1, recipe2);
-        Mockito.when(jpaRecipeRepository.findAll()).thenReturn(recipes);
-
-        // When
-        List<Recipe> allRecipes = underTest.findAll();
-
-        // Then
-        Mockito.verify(jpaRecipeRepository).findAll();
-        assertEquals(2, allRecipes.size());
-        assertEquals("Cake", allRecipes.get(0).getName());
-        assertEquals("Pasta", allRecipes.get(1).getName());
-    }
-
     @Test
     void deleteById() {
         // When
@@ -112,90 +103,224 @@ class JpaRecipeRepositoryServiceTest {
         Recipe recipe = new Recipe();
         recipe.setId(1);
         recipe.setName("Salad");
-        Mockito.when(jpaRecipeRepository.save(any(Recipe.class))).thenReturn(recipe);
+        Mockito.when(jpaRecipeRepository.saveAndFlush(any(Recipe.class))).thenReturn(recipe);
 
         // When
         underTest.update(recipe);
 
         // Then
-        Mockito.verify(jpaRecipeRepository).save(recipe);
+        Mockito.verify(jpaRecipeRepository).saveAndFlush(recipe);
     }
 
     @Test
-    void findByVegetarian() {
+    void findByName() {
         // Given
-        Recipe recipe1 = new Recipe();
-        recipe1.setName("Vegan Salad");
-        Recipe recipe2 = new Recipe();
-        recipe2.setName("Tofu Stir Fry");
-        List<Recipe> recipes = Arrays.asList(recipe1, recipe2);
-        Mockito.when(jpaRecipeRepository.findByVegetarian(true)).thenReturn(recipes);
+        Recipe recipe = new Recipe();
+        recipe.setName("Pancakes");
+        Mockito.when(jpaRecipeRepository.findByName(anyString())).thenReturn(Optional.of(recipe));
+
+        // When
+        Optional<Recipe> foundRecipe = underTest.findByName("Pancakes");
+
+        // Then
+        Mockito.verify(jpaRecipeRepository).findByName("Pancakes");
+        assertTrue(foundRecipe.isPresent());
+        assertEquals("Pancakes", foundRecipe.get().getName());
+    }
+
+    @Test
+    void searchIds() {
+        // Given
+        RecipeSearchCriteria criteria = new RecipeSearchCriteria(true, 4, List.of(1), List.of(2), "oven");
+        Mockito.when(jpaRecipeRepository.findIds(ArgumentMatchers.<Specification<Recipe>>any(), eq(3))).thenReturn(List.of(11, 12));
+
+        // When
+        List<Integer> ids = underTest.searchIds(criteria, 10, 3);
+
+        // Then
+        Mockito.verify(jpaRecipeRepository).findIds(ArgumentMatchers.<Specification<Recipe>>any(), eq(3));
+        assertEquals(List.of(11, 12), ids);
+    }
+
+    @Test
+    void findSummariesByIdsKeepsRequestedOrder() {
+        // Given
+        RecipeSummary lasagne = new RecipeSummary(11, "Lasagne", false, 4, 6);
+        RecipeSummary moussaka = new RecipeSummary(12, "Moussaka", false, 6, 8);
+        Mockito.when(jpaRecipeRepository.findSummariesByIdIn(List.of(12, 11))).thenReturn(List.of(lasagne, moussaka));
+
+        // When
+        List<RecipeSummary> summaries = underTest.findSummariesByIds(List.of(12, 11));
+
+        // Then
+        assertEquals(List.of(moussaka, lasagne), summaries);
+        Mockito.verify(jpaRecipeRepository, Mockito.never()).findAllWithIngredientsByIdIn(any(), any());
+    }
+
+    @Test
+    void facets() {
+        // Given
+        RecipeSearchCriteria criteria = RecipeSearchCriteria.servings(2);
+        List<IngredientCount> topIngredients = List.of(new IngredientCount(1, "Potato", 3));
+        Mockito.when(jpaRecipeRepository.countByVegetarian(ArgumentMatchers.any())).thenReturn(Map.of(true, 3L));
+        Mockito.when(jpaRecipeRepository.countByServings(ArgumentMatchers.any())).thenReturn(Map.of(2, 3L));
+        Mockito.when(jpaRecipeRepository.countTopIngredients(ArgumentMatchers.any(), eq(5))).thenReturn(topIngredients);
 
         // When
-        List<Recipe> vegetarianRecipes = underTest.findByVegetarian(true);
+        RecipeFacets facets = underTest.facets(criteria, 5);
 
         // Then
-        Mockito.verify(jpaRecipeRepository).findByVegetarian(true);
-        assertEquals(2, vegetarianRecipes.size());
-        assertEquals("Vegan Salad", vegetarianRecipes.get(0).getName());
-        assertEquals("Tofu Stir Fry", vegetarianRecipes.get(1).getName());
+        assertEquals(new RecipeFacets(Map.of(true, 3L), Map.of(2, 3L), topIngredients), facets);
     }
 
     @Test
-    void findByServings() {
+    void searchIdsWithin() {
+        // Given
+        RecipeSearchCriteria criteria = RecipeSearchCriteria.vegetarian(true);
+        Mockito.when(jpaRecipeRepository.findIds(ArgumentMatchers.<Specification<Recipe>>any(), eq(2))).thenReturn(List.of(12));
+
+        // When
+        List<Integer> ids = underTest.searchIdsWithin(criteria, List.of(11, 12, 13), 2);
+
+        // Then
+        Mockito.verify(jpaRecipeRepository).findIds(ArgumentMatchers.<Specification<Recipe>>any(), eq(2));
+        assertEquals(List.of(12), ids);
+    }
+
+    @Test
+    void findAllByIdsKeepsRequestedOrder() {
         // Given
         Recipe recipe1 = new Recipe();
-        recipe1.setName("Soup");
-        recipe1.setServings(4);
+        recipe1.setId(1);
         Recipe recipe2 = new Recipe();
-        recipe2.setName("Stew");
-        recipe2.setServings(4);
-        List<Recipe> recipes = Arrays.asList(recipe1, recipe2);
-        Mockito.when(jpaRecipeRepository.findByServings(4)).thenReturn(recipes);
+        recipe2.setId(2);
+        Mockito.when(jpaRecipeRepository.findAllWithIngredientsByIdIn(List.of(2, 3, 1), Sort.by("id"))).thenReturn(List.of(recipe1, recipe2));
 
         // When
-        List<Recipe> recipesWithServings = underTest.findByServings(4);
+        List<Recipe> recipes = underTest.findAllByIds(List.of(2, 3, 1));
 
         // Then
-        Mockito.verify(jpaRecipeRepository).findByServings(4);
-        assertEquals(2, recipesWithServings.size());
-        assertEquals("Soup", recipesWithServings.get(0).getName());
-        assertEquals("Stew", recipesWithServings.get(1).getName());
+        assertEquals(List.of(recipe2, recipe1), recipes);
     }
 
     @Test
-    void findByName() {
+    void findMakeable() {
         // Given
         Recipe recipe = new Recipe();
-        recipe.setName("Pancakes");
-        Mockito.when(jpaRecipeRepository.findByName(anyString())).thenReturn(Optional.of(recipe));
+        recipe.setId(7);
+        recipe.setName("Omelette");
+        Mockito.when(jpaRecipeRepository.findMakeableIdsUsingAny(List.of(1, 2), 0, 5, 3)).thenReturn(List.of(7));
+        Mockito.when(jpaRecipeRepository.findAllWithIngredientsByIdIn(List.of(7), Sort.by("id"))).thenReturn(List.of(recipe));
 
         // When
-        Optional<Recipe> foundRecipe = underTest.findByName("Pancakes");
+        List<Recipe> recipes = underTest.findMakeable(List.of(1, 2), 0, 5, 3);
 
         // Then
-        Mockito.verify(jpaRecipeRepository).findByName("Pancakes");
-        assertTrue(foundRecipe.isPresent());
-        assertEquals("Pancakes", foundRecipe.get().getName());
+        Mockito.verify(jpaRecipeRepository).findMakeableIdsUsingAny(List.of(1, 2), 0, 5, 3);
+        assertEquals(List.of(recipe), recipes);
+    }
+
+    @Test
+    void findMakeable_shouldScanAllRecipesWhenIngredientsMayBeMissing() {
+        // Given
+        Mockito.when(jpaRecipeRepository.findMakeableIds(List.of(1, 2), 2, 5, 3)).thenReturn(List.of());
+
+        // When
+        List<Recipe> recipes = underTest.findMakeable(List.of(1, 2), 2, 5, 3);
+
+        // Then
+        Mockito.verify(jpaRecipeRepository, Mockito.never()).findMakeableIdsUsingAny(any(), anyInt(), anyInt(), anyInt());
+        assertEquals(List.of(), recipes);
     }
 
     @Test
-    void findByInstructionsContaining() {
+    void forEachId() {
+        // Given
+        Mockito.when(jpaRecipeRepository.streamAllIds()).thenReturn(Stream.of(1, 2, 3));
+        List<Integer> ids = new ArrayList<>();
+
+        // When
+        underTest.forEachId(ids::add);
+
+        // Then
+        assertEquals(List.of(1, 2, 3), ids);
+    }
+
+    @Test
+    void findAllByIdsWithoutIds() {
+        // When
+        List<Recipe> recipes = underTest.findAllByIds(List.of());
+        List<RecipeSummary> summaries = underTest.findSummariesByIds(List.of());
+
+        // Then
+        Mockito.verify(jpaRecipeRepository, Mockito.never()).findAllWithIngredientsByIdIn(any(), any());
+        Mockito.verify(jpaRecipeRepository, Mockito.never()).findSummariesByIdIn(any());
+        assertTrue(recipes.isEmpty());
+        assertTrue(summaries.isEmpty());
+    }
+
+    @Test
+    void searchInstructions() {
         // Given
         Recipe recipe1 = new Recipe();
-        recipe1.setName("Scrambled Eggs");
+        recipe1.setId(4);
+        recipe1.setName("Garlic Soup");
         Recipe recipe2 = new Recipe();
-        recipe2.setName("Egg Salad");
-        List<Recipe> recipes = Arrays.asList(recipe1, recipe2);
-        Mockito.when(jpaRecipeRepository.findByInstructionsContainingIgnoreCase(anyString())).thenReturn(recipes);
+        recipe2.setId(9);
+        recipe2.setName("Garlic Bread");
+        RankedRecipeId rankedId1 = rankedId(9, 0.8f);
+        RankedRecipeId rankedId2 = rankedId(4, 0.3f);
+        Mockito.when(jpaRecipeRepository.findRankedIdsByInstructions("garlic", Float.POSITIVE_INFINITY, 0, 10)).thenReturn(List.of(rankedId1, rankedId2));
+        Mockito.when(jpaRecipeRepository.findAllWithIngredientsByIdIn(List.of(9, 4), Sort.by("id"))).thenReturn(List.of(recipe1, recipe2));
 
         // When
-        List<Recipe> recipesContainingText = underTest.findByInstructionsContaining("Egg");
+        List<RankedRecipe> recipes = underTest.searchInstructions("garlic", Float.POSITIVE_INFINITY, 0, 10);
 
         // Then
-        Mockito.verify(jpaRecipeRepository).findByInstructionsContainingIgnoreCase("Egg");
-        assertEquals(2, recipesContainingText.size());
-        assertEquals("Scrambled Eggs", recipesContainingText.get(0).getName());
-        assertEquals("Egg Salad", recipesContainingText.get(1).getName());
+        assertEquals(2, recipes.size());
+        assertEquals("Garlic Bread", recipes.get(0).recipe().getName());
+        assertEquals(0.8f, recipes.get(0).rank());
+        assertEquals("Garlic Soup", recipes.get(1).recipe().getName());
+        assertEquals(0.3f, recipes.get(1).rank());
+    }
+
+    @Test
+    void searchNames() {
+        // Given
+        Recipe recipe = new Recipe();
+        recipe.setId(3);
+        recipe.setName("Spaghetti");
+        RankedRecipeId rankedId = rankedId(3, 0.7f);
+        Mockito.when(jpaRecipeRepository.findRankedIdsByNameSimilarTo("spagetti", 5)).thenReturn(List.of(rankedId));
+        Mockito.when(jpaRecipeRepository.findAllWithIngredientsByIdIn(List.of(3), Sort.by("id"))).thenReturn(List.of(recipe));
+
+        // When
+        List<RankedRecipe> recipes = underTest.searchNames("spagetti", 5);
+
+        // Then
+        Mockito.verify(jpaRecipeRepository).findRankedIdsByNameSimilarTo("spagetti", 5);
+        assertEquals(1, recipes.size());
+        assertEquals("Spaghetti", recipes.getFirst().recipe().getName());
+    }
+
+    @Test
+    void forEachIdAndName() {
+        // Given
+        Mockito.when(jpaRecipeRepository.streamAllIdsAndNames()).thenReturn(Stream.of(new IdAndName(1, "Spaghetti")));
+        List<IdAndName> recipes = new ArrayList<>();
+
+        // When
+        underTest.forEachIdAndName(recipes::add);
+
+        // Then
+        Mockito.verify(jpaRecipeRepository).streamAllIdsAndNames();
+        assertEquals(List.of(new IdAndName(1, "Spaghetti")), recipes);
+    }
+
+    private RankedRecipeId rankedId(int id, float rank) {
+        RankedRecipeId rankedId = Mockito.mock(RankedRecipeId.class);
+        Mockito.when(rankedId.getId()).thenReturn(id);
+        Mockito.when(rankedId.getRank()).thenReturn(rank);
+        return rankedId;
     }
-}
\ No newline at end of file
+}
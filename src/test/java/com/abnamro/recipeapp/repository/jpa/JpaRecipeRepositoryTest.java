@@ -1,24 +1,48 @@
 package com.abnamro.recipeapp.repository.jpa;
 
+import com.abnamro.recipeapp.entity.Ingredient;
 import com.abnamro.recipeapp.entity.Recipe;
+import com.abnamro.recipeapp.entity.RecipeIngredient;
+import com.abnamro.recipeapp.repository.IngredientCount;
+import com.abnamro.recipeapp.repository.RecipeIngredientLink;
+import com.abnamro.recipeapp.repository.RecipeSearchCriteria;
+import com.abnamro.recipeapp.repository.RecipeSummary;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
-@DataJpaTest
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
 class JpaRecipeRepositoryTest {
 
     @Autowired
     private JpaRecipeRepository underTest;
 
+    @Autowired
+    private JpaIngredientRepository ingredientRepository;
+
+    @Autowired
+    private JpaRecipeIngredientRepository recipeIngredientRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
     @BeforeEach
     void setUp() {
         underTest.deleteAll();
@@ -42,8 +66,8 @@ class JpaRecipeRepositoryTest {
         underTest.save(nonVegetarianRecipe);
 
         // when
-        List<Recipe> vegetarianRecipes = underTest.findByVegetarian(true);
-        List<Recipe> nonVegetarianRecipes = underTest.findByVegetarian(false);
+        List<Recipe> vegetarianRecipes = findPage(RecipeSearchCriteria.vegetarian(true));
+        List<Recipe> nonVegetarianRecipes = findPage(RecipeSearchCriteria.vegetarian(false));
 
         // then
         assertThat(vegetarianRecipes).hasSize(1);
@@ -71,8 +95,8 @@ class JpaRecipeRepositoryTest {
         underTest.save(recipe2);
 
         // when
-        List<Recipe> recipesWithFourServings = underTest.findByServings(4);
-        List<Recipe> recipesWithFiveServings = underTest.findByServings(5);
+        List<Recipe> recipesWithFourServings = findPage(RecipeSearchCriteria.servings(4));
+        List<Recipe> recipesWithFiveServings = findPage(RecipeSearchCriteria.servings(5));
 
         // then
         assertThat(recipesWithFourServings).hasSize(2);
@@ -83,7 +107,7 @@ class JpaRecipeRepositoryTest {
     }
 
     @Test
-    void findByInstructionsContainingIgnoreCase() {
+    void findByInstructionsContaining() {
         // given
         Recipe recipe1 = new Recipe();
         recipe1.setName("Recipe One");
@@ -100,8 +124,8 @@ class JpaRecipeRepositoryTest {
         underTest.save(recipe2);
 
         // when
-        List<Recipe> recipesWithSpicy = underTest.findByInstructionsContainingIgnoreCase("spicy");
-        List<Recipe> recipesWithMild = underTest.findByInstructionsContainingIgnoreCase("mild");
+        List<Recipe> recipesWithSpicy = findPage(RecipeSearchCriteria.instruction("SPICY"));
+        List<Recipe> recipesWithMild = findPage(RecipeSearchCriteria.instruction("mild"));
 
         // then
         assertThat(recipesWithSpicy).hasSize(1);
@@ -128,4 +152,271 @@ class JpaRecipeRepositoryTest {
         assertThat(foundRecipe).isPresent();
         assertThat(foundRecipe.get().getName()).isEqualTo("Unique Recipe");
     }
-}
\ No newline at end of file
+
+    @Test
+    void findAllMatchingSearchSpecification() {
+        // given
+        Ingredient potato = ingredientRepository.save(new Ingredient("Spec Potato"));
+        Ingredient salmon = ingredientRepository.save(new Ingredient("Spec Salmon"));
+        Ingredient cheese = ingredientRepository.save(new Ingredient("Spec Cheese"));
+
+        Recipe gratin = saveRecipe("Gratin", true, 4, "Bake the potatoes in a 100% hot oven.", potato, cheese);
+        saveRecipe("Salmon Bake", false, 4, "Bake salmon with potatoes in the oven.", potato, salmon);
+        saveRecipe("Mash", true, 2, "Boil and mash the potatoes.", potato);
+
+        // when
+        List<Recipe> withPotatoWithoutSalmon = underTest.findAll(RecipeSpecifications.matching(
+                new RecipeSearchCriteria(null, 4, List.of(potato.getId()), List.of(salmon.getId()), null)), Sort.by("id"));
+        List<Recipe> vegetarianOvenRecipes = underTest.findAll(RecipeSpecifications.matching(
+                new RecipeSearchCriteria(true, null, null, null, "OVEN")), Sort.by("id"));
+        List<Recipe> stemmedInstruction = underTest.findAll(RecipeSpecifications.matching(
+                new RecipeSearchCriteria(null, null, null, null, "baked potato")), Sort.by("id"));
+        List<Recipe> negatedInstruction = underTest.findAll(RecipeSpecifications.matching(
+                new RecipeSearchCriteria(null, null, null, null, "oven -salmon")), Sort.by("id"));
+        List<Recipe> allIngredientsRequired = underTest.findAll(RecipeSpecifications.matching(
+                new RecipeSearchCriteria(null, null, List.of(salmon.getId(), cheese.getId()), null, null)), Sort.by("id"));
+
+        // then
+        assertThat(withPotatoWithoutSalmon).extracting(Recipe::getName).containsExactly("Gratin");
+        assertThat(vegetarianOvenRecipes).extracting(Recipe::getId).containsExactly(gratin.getId());
+        assertThat(stemmedInstruction).extracting(Recipe::getName).containsExactly("Gratin", "Salmon Bake");
+        assertThat(negatedInstruction).extracting(Recipe::getName).containsExactly("Gratin");
+        assertThat(allIngredientsRequired).isEmpty();
+    }
+
+    @Test
+    void findRankedIdsByInstructions() {
+        // given
+        Recipe onceGarlic = saveRecipe("Garlic Bread", true, 2, "Toast the bread with garlic butter.");
+        Recipe twiceGarlic = saveRecipe("Garlic Soup", true, 4, "Fry the garlic, add stock and more garlic, then simmer.");
+        saveRecipe("Plain Toast", true, 1, "Toast the bread.");
+        entityManager.flush();
+
+        // when
+        List<RankedRecipeId> firstPage = underTest.findRankedIdsByInstructions("garlic", Float.POSITIVE_INFINITY, 0, 1);
+        RankedRecipeId last = firstPage.getLast();
+        List<RankedRecipeId> secondPage = underTest.findRankedIdsByInstructions("garlic", last.getRank(), last.getId(), 1);
+        List<RankedRecipeId> thirdPage = underTest.findRankedIdsByInstructions("garlic", secondPage.getLast().getRank(), secondPage.getLast().getId(), 1);
+
+        // then
+        assertThat(firstPage).extracting(RankedRecipeId::getId).containsExactly(twiceGarlic.getId());
+        assertThat(secondPage).extracting(RankedRecipeId::getId).containsExactly(onceGarlic.getId());
+        assertThat(last.getRank()).isGreaterThan(secondPage.getLast().getRank());
+        assertThat(thirdPage).isEmpty();
+    }
+
+    @Test
+    void findRankedIdsByNameSimilarTo() {
+        // given
+        Recipe carbonara = saveRecipe("Spaghetti Carbonara", false, 2, "Cook the pasta.");
+        Recipe spaghetti = saveRecipe("Spaghetti", true, 2, "Cook the pasta.");
+        saveRecipe("Pancakes", true, 4, "Fry the batter.");
+        entityManager.flush();
+
+        // when
+        List<RankedRecipeId> typo = underTest.findRankedIdsByNameSimilarTo("spagetti", 10);
+        List<RankedRecipeId> substring = underTest.findRankedIdsByNameSimilarTo("carbonara", 10);
+        List<RankedRecipeId> limited = underTest.findRankedIdsByNameSimilarTo("spaghetti", 1);
+
+        // then
+        assertThat(typo).extracting(RankedRecipeId::getId).contains(carbonara.getId(), spaghetti.getId());
+        assertThat(substring).extracting(RankedRecipeId::getId).containsExactly(carbonara.getId());
+        assertThat(limited).hasSize(1);
+        assertThat(limited.getFirst().getRank()).isEqualTo(1.0f);
+    }
+
+    @Test
+    void findIdsPagesByKeyset() {
+        // given
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(saveRecipe("Keyset Recipe " + i, true, 4, "Cook.").getId());
+        }
+
+        // when
+        List<Integer> firstPage = underTest.findIds(RecipeSpecifications.idGreaterThan(0), 2);
+        List<Integer> secondPage = underTest.findIds(RecipeSpecifications.idGreaterThan(firstPage.getLast()), 2);
+        List<Integer> lastPage = underTest.findIds(RecipeSpecifications.idGreaterThan(ids.get(3)), 2);
+
+        // then
+        assertThat(firstPage).containsExactly(ids.get(0), ids.get(1));
+        assertThat(secondPage).containsExactly(ids.get(2), ids.get(3));
+        assertThat(lastPage).containsExactly(ids.get(4));
+    }
+
+    @Test
+    void countFacetsWithGroupedQueries() {
+        // given
+        Ingredient potato = ingredientRepository.save(new Ingredient("Facet Potato"));
+        Ingredient leek = ingredientRepository.save(new Ingredient("Facet Leek"));
+        Ingredient bacon = ingredientRepository.save(new Ingredient("Facet Bacon"));
+        saveRecipe("Facet Soup", true, 4, "Simmer the soup.", potato, leek);
+        saveRecipe("Facet Mash", true, 2, "Mash the potatoes.", potato);
+        saveRecipe("Facet Hash", false, 2, "Fry the potatoes.", potato, bacon);
+        saveRecipe("Facet Salad", true, 1, "Toss the leaves.", leek);
+        entityManager.flush();
+        Specification<Recipe> withPotato = RecipeSpecifications.matching(
+                new RecipeSearchCriteria(null, null, List.of(potato.getId()), null, null));
+
+        // when
+        Map<Boolean, Long> vegetarian = underTest.countByVegetarian(withPotato);
+        Map<Integer, Long> servings = underTest.countByServings(withPotato);
+        List<IngredientCount> topIngredients = underTest.countTopIngredients(withPotato, 2);
+
+        // then
+        assertThat(vegetarian).containsExactlyInAnyOrderEntriesOf(Map.of(true, 2L, false, 1L));
+        assertThat(servings).containsExactly(Map.entry(2, 2L), Map.entry(4, 1L));
+        assertThat(topIngredients).containsExactly(
+                new IngredientCount(potato.getId(), "Facet Potato", 3),
+                new IngredientCount(leek.getId(), "Facet Leek", 1));
+    }
+
+    @Test
+    void findSummariesByIdInCountsIngredientsWithoutLoadingRecipes() {
+        // given
+        Ingredient potato = ingredientRepository.save(new Ingredient("Summary Potato"));
+        Ingredient leek = ingredientRepository.save(new Ingredient("Summary Leek"));
+        Recipe soup = saveRecipe("Summary Soup", true, 4, "Simmer the soup.", potato, leek);
+        Recipe water = saveRecipe("Summary Water", true, 1, "Pour.");
+        entityManager.flush();
+        entityManager.clear();
+
+        // when
+        List<RecipeSummary> summaries = underTest.findSummariesByIdIn(List.of(soup.getId(), water.getId()));
+
+        // then
+        assertThat(summaries).containsExactlyInAnyOrder(
+                new RecipeSummary(soup.getId(), "Summary Soup", true, 4, 2),
+                new RecipeSummary(water.getId(), "Summary Water", true, 1, 0));
+        assertThat(entityManager.getEntityManager().unwrap(Session.class).getStatistics().getEntityCount()).isZero();
+    }
+
+    @Test
+    void findMakeableIds() {
+        // given
+        Ingredient egg = ingredientRepository.save(new Ingredient("Pantry Egg"));
+        Ingredient milk = ingredientRepository.save(new Ingredient("Pantry Milk"));
+        Ingredient flour = ingredientRepository.save(new Ingredient("Pantry Flour"));
+        Ingredient bacon = ingredientRepository.save(new Ingredient("Pantry Bacon"));
+        Recipe omelette = saveRecipe("Pantry Omelette", true, 1, "Whisk and fry.", egg, milk);
+        Recipe pancakes = saveRecipe("Pantry Pancakes", true, 4, "Mix and fry.", egg, milk, flour);
+        Recipe carbonara = saveRecipe("Pantry Carbonara", false, 2, "Toss with pasta.", egg, bacon, flour);
+        Recipe friedBacon = saveRecipe("Pantry Bacon", false, 1, "Fry.", bacon);
+        entityManager.flush();
+        List<Integer> pantry = List.of(egg.getId(), milk.getId());
+
+        // when
+        List<Integer> exact = underTest.findMakeableIdsUsingAny(pantry, 0, 0, 10);
+        List<Integer> missingOne = underTest.findMakeableIds(pantry, 1, omelette.getId() - 1, 10);
+        List<Integer> missingTwo = underTest.findMakeableIds(pantry, 2, omelette.getId(), 10);
+        List<Integer> missingTwoUsingAny = underTest.findMakeableIdsUsingAny(pantry, 2, omelette.getId(), 10);
+
+        // then
+        assertThat(exact).containsExactly(omelette.getId());
+        assertThat(missingOne).containsExactly(omelette.getId(), pancakes.getId(), friedBacon.getId());
+        assertThat(missingTwo).containsExactly(pancakes.getId(), carbonara.getId(), friedBacon.getId());
+        assertThat(missingTwoUsingAny).containsExactly(pancakes.getId(), carbonara.getId());
+    }
+
+    @Test
+    void streamAllIdsAndLinks() {
+        // given
+        Ingredient potato = ingredientRepository.save(new Ingredient("Stream Potato"));
+        Ingredient leek = ingredientRepository.save(new Ingredient("Stream Leek"));
+        Recipe soup = saveRecipe("Stream Soup", true, 4, "Simmer the soup.", potato, leek);
+        Recipe mash = saveRecipe("Stream Mash", true, 2, "Mash the potatoes.", potato);
+        entityManager.flush();
+
+        // when
+        List<Integer> ids;
+        try (Stream<Integer> stream = underTest.streamAllIds()) {
+            ids = stream.toList();
+        }
+        List<RecipeIngredientLink> links;
+        try (Stream<RecipeIngredientLink> stream = recipeIngredientRepository.streamAllLinks()) {
+            links = stream.toList();
+        }
+
+        // then
+        assertThat(ids).containsExactlyInAnyOrder(soup.getId(), mash.getId());
+        assertThat(links).containsExactlyInAnyOrder(
+                new RecipeIngredientLink(soup.getId(), potato.getId()),
+                new RecipeIngredientLink(soup.getId(), leek.getId()),
+                new RecipeIngredientLink(mash.getId(), potato.getId()));
+    }
+
+    @Test
+    void pageQueriesLoadIngredientsWithConstantNumberOfStatements() {
+        // given
+        Ingredient potato = ingredientRepository.save(new Ingredient("Graph Potato"));
+        Ingredient leek = ingredientRepository.save(new Ingredient("Graph Leek"));
+        for (int i = 0; i < 10; i++) {
+            saveRecipe("Graph Soup " + i, true, 4, "Simmer the soup.", potato, leek);
+        }
+        entityManager.flush();
+        entityManager.clear();
+        Statistics statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+
+        // when
+        statistics.clear();
+        List<Integer> ingredientIds = findPage(RecipeSearchCriteria.vegetarian(true)).stream()
+                .flatMap(recipe -> recipe.getRecipeIngredients().stream())
+                .map(recipeIngredient -> recipeIngredient.getIngredient().getId())
+                .toList();
+        long statements = statistics.getPrepareStatementCount();
+
+        // then
+        assertThat(ingredientIds).hasSize(20);
+        assertThat(statements).isEqualTo(2);
+    }
+
+    @Test
+    void insertRecipeWithManyIngredientsInJdbcBatches() {
+        // given
+        List<Ingredient> ingredients = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            ingredients.add(new Ingredient("Batch Ingredient " + i));
+        }
+        ingredientRepository.saveAll(ingredients);
+        entityManager.flush();
+        Statistics statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+
+        // when
+        statistics.clear();
+        Recipe recipe = new Recipe();
+        recipe.setName("Batch Stew");
+        recipe.setVegetarian(true);
+        recipe.setServings(4);
+        recipe.setInstructions("Add everything to the pot.");
+        underTest.save(recipe);
+        recipeIngredientRepository.saveAll(ingredients.stream()
+                .map(ingredient -> new RecipeIngredient(recipe, ingredient, 1.0, "piece"))
+                .toList());
+        entityManager.flush();
+
+        // then
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(41);
+        // one sequence call per entity type, one batched statement per table
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(4);
+    }
+
+    private List<Recipe> findPage(RecipeSearchCriteria criteria) {
+        List<Integer> ids = underTest.findIds(RecipeSpecifications.matching(criteria), 100);
+        return underTest.findAllWithIngredientsByIdIn(ids, Sort.by("id"));
+    }
+
+    private Recipe saveRecipe(String name, boolean vegetarian, int servings, String instructions, Ingredient... ingredients) {
+        Recipe recipe = new Recipe();
+        recipe.setName(name);
+        recipe.setVegetarian(vegetarian);
+        recipe.setServings(servings);
+        recipe.setInstructions(instructions);
+        underTest.save(recipe);
+        for (Ingredient ingredient : ingredients) {
+            recipeIngredientRepository.save(new RecipeIngredient(recipe, ingredient, 1.0, "piece"));
+        }
+        return recipe;
+    }
+}
@@ -1,12 +1,20 @@
 package com.abnamro.recipeapp.service;
 
+import com.abnamro.exception.BadRequestException;
 import com.abnamro.exception.DuplicateResourceException;
 import com.abnamro.exception.ResourceNotFoundException;
 import com.abnamro.exception.ValidationException;
+import com.abnamro.recipeapp.cache.ExistenceFilter;
+import com.abnamro.recipeapp.dto.PageDto;
 import com.abnamro.recipeapp.dto.ingredient.CreateIngredientDto;
 import com.abnamro.recipeapp.dto.ingredient.IngredientDto;
+import com.abnamro.recipeapp.dto.ingredient.IngredientUpsertDto;
 import com.abnamro.recipeapp.entity.Ingredient;
+import com.abnamro.recipeapp.event.IngredientDeletedEvent;
+import com.abnamro.recipeapp.event.IngredientsSavedEvent;
+import com.abnamro.recipeapp.repository.IdAndName;
 import com.abnamro.recipeapp.repository.IngredientRepository;
+import com.abnamro.recipeapp.repository.RecipeRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -14,9 +22,14 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.time.Duration;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -30,9 +43,18 @@ class IngredientServiceTest {
     @Mock
     private IngredientRepository ingredientRepository;
 
+    @Mock
+    private RecipeRepository recipeRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private ExistenceFilter existenceFilter;
+
     @BeforeEach
     void setUp() {
-        underTest = new IngredientService(ingredientRepository);
+        existenceFilter = new ExistenceFilter(recipeRepository, ingredientRepository, mock(PlatformTransactionManager.class), 1000, 0.01, 100, Duration.ofSeconds(30));
+        underTest = new IngredientService(ingredientRepository, existenceFilter, eventPublisher);
     }
 
     @Test
@@ -41,21 +63,19 @@ class IngredientServiceTest {
         // Given
         CreateIngredientDto createIngredientDto = new CreateIngredientDto("Tomato");
         Ingredient ingredient = new Ingredient();
+        ingredient.setId(1);
         ingredient.setName(createIngredientDto.name());
 
-        when(ingredientRepository.findByName(createIngredientDto.name())).thenReturn(Optional.empty());
-        when(ingredientRepository.save(any(Ingredient.class))).thenReturn(ingredient);
+        when(ingredientRepository.insertMissing(List.of("Tomato"))).thenReturn(List.of(ingredient));
 
         // When
         CreateIngredientDto result = underTest.addIngredient(createIngredientDto);
 
         // Then
         assertEquals(createIngredientDto.name(), result.name());
-
-        // Verify save was called
-        ArgumentCaptor<Ingredient> ingredientCaptor = ArgumentCaptor.forClass(Ingredient.class);
-        verify(ingredientRepository).save(ingredientCaptor.capture());
-        assertEquals(createIngredientDto.name(), ingredientCaptor.getValue().getName());
+        verify(ingredientRepository, never()).findByName(any());
+        verify(ingredientRepository, never()).save(any(Ingredient.class));
+        verify(eventPublisher).publishEvent(new IngredientsSavedEvent(List.of(1), List.of("Tomato")));
     }
 
     @Test
@@ -63,13 +83,39 @@ class IngredientServiceTest {
     void addIngredient_shouldThrowDuplicateResourceException() {
         // Given
         CreateIngredientDto createIngredientDto = new CreateIngredientDto("Tomato");
-        when(ingredientRepository.findByName(createIngredientDto.name())).thenReturn(Optional.of(new Ingredient()));
+        when(ingredientRepository.insertMissing(List.of("Tomato"))).thenReturn(List.of());
 
         // When & Then
         assertThrows(DuplicateResourceException.class, () -> underTest.addIngredient(createIngredientDto));
+    }
 
-        // Verify save was not called
-        verify(ingredientRepository, never()).save(any(Ingredient.class));
+    @Test
+    @DisplayName("Should insert new names in one statement and look up only the existing ones")
+    void addIngredients_shouldReturnIdsOfNewAndExistingIngredients() {
+        // Given
+        Ingredient tomato = new Ingredient("Tomato");
+        tomato.setId(1);
+        Ingredient basil = new Ingredient("Basil");
+        basil.setId(2);
+        when(ingredientRepository.insertMissing(List.of("Tomato", "Basil"))).thenReturn(List.of(tomato));
+        when(ingredientRepository.findAllByNames(List.of("Basil"))).thenReturn(List.of(basil));
+
+        // When
+        List<IngredientUpsertDto> result = underTest.addIngredients(List.of("Tomato", "Basil", "Tomato"));
+
+        // Then
+        assertEquals(List.of(new IngredientUpsertDto(1, "Tomato", true), new IngredientUpsertDto(2, "Basil", false)), result);
+        verify(eventPublisher).publishEvent(new IngredientsSavedEvent(List.of(1), List.of("Tomato")));
+    }
+
+    @Test
+    @DisplayName("Should reject empty, blank or oversized bulk requests before any I/O")
+    void addIngredients_shouldValidateNames() {
+        // When & Then
+        assertThrows(ValidationException.class, () -> underTest.addIngredients(List.of()));
+        assertThrows(ValidationException.class, () -> underTest.addIngredients(List.of("Tomato", " ")));
+        assertThrows(BadRequestException.class, () -> underTest.addIngredients(Collections.nCopies(IngredientService.MAX_BULK_SIZE + 1, "Tomato")));
+        verifyNoInteractions(ingredientRepository);
     }
 
     @Test
@@ -109,6 +155,7 @@ class IngredientServiceTest {
         ArgumentCaptor<Ingredient> ingredientCaptor = ArgumentCaptor.forClass(Ingredient.class);
         verify(ingredientRepository).save(ingredientCaptor.capture());
         assertEquals(ingredientDto.name(), ingredientCaptor.getValue().getName());
+        verify(eventPublisher).publishEvent(new IngredientsSavedEvent(List.of(1), List.of("UpdatedName")));
     }
 
 
@@ -153,6 +200,7 @@ class IngredientServiceTest {
 
         // Then
         verify(ingredientRepository).deleteById(id);
+        verify(eventPublisher).publishEvent(new IngredientDeletedEvent(id));
     }
 
     @Test
@@ -176,18 +224,19 @@ class IngredientServiceTest {
         Ingredient ingredient = new Ingredient();
         ingredient.setId(1);
         ingredient.setName("Tomato");
-        when(ingredientRepository.findAll()).thenReturn(List.of(ingredient));
+        when(ingredientRepository.findAll(0, 21)).thenReturn(List.of(ingredient));
 
         // When
-        List<IngredientDto> result = underTest.getAllIngredients();
+        PageDto<IngredientDto> result = underTest.getAllIngredients(null, 20);
 
         // Then
-        assertEquals(1, result.size());
-        assertEquals(ingredient.getId(), result.getFirst().id());
-        assertEquals(ingredient.getName(), result.getFirst().name());
+        assertEquals(1, result.items().size());
+        assertEquals(ingredient.getId(), result.items().getFirst().id());
+        assertEquals(ingredient.getName(), result.items().getFirst().name());
+        assertNull(result.nextCursor());
 
         // Verify findAll was called
-        verify(ingredientRepository).findAll();
+        verify(ingredientRepository).findAll(0, 21);
     }
 
     @Test
@@ -259,4 +308,21 @@ class IngredientServiceTest {
         // Verify findByName was called
         verify(ingredientRepository).findByName(name);
     }
+
+    @Test
+    @DisplayName("Should answer lookups of ingredients that were never written without a query")
+    void getIngredient_shouldNotQueryIngredientsRuledOutByExistenceFilter() {
+        // Given
+        doAnswer(invocation -> {
+            invocation.<Consumer<IdAndName>>getArgument(0).accept(new IdAndName(1, "Tomato"));
+            return null;
+        }).when(ingredientRepository).forEachIdAndName(any());
+        existenceFilter.rebuild();
+
+        // When & Then
+        assertThrows(ResourceNotFoundException.class, () -> underTest.getIngredientByName("Unicorn"));
+        assertThrows(ResourceNotFoundException.class, () -> underTest.getIngredientById(2));
+        verify(ingredientRepository, never()).findByName(any());
+        verify(ingredientRepository, never()).findById(any());
+    }
 }
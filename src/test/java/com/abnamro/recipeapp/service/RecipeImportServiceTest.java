@@ -0,0 +1,97 @@
+package com.abnamro.recipeapp.service;
+
+import com.abnamro.recipeapp.dto.recipe.RecipeImportResultDto;
+import com.abnamro.recipeapp.entity.Ingredient;
+import com.abnamro.recipeapp.repository.IngredientRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RecipeImportServiceTest {
+
+    private static final String RECIPE = "{\"recipe\":{\"name\":\"Soup\",\"instructions\":\"Simmer.\",\"isVegetarian\":true,\"servings\":2},"
+            + "\"recipeIngredients\":[{\"amount\":1.0,\"unit\":\"cup\",\"ingredientId\":1}]}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private RecipeImportService underTest;
+
+    @Mock
+    private RecipeService recipeService;
+
+    @Mock
+    private IngredientRepository ingredientRepository;
+
+    private Ingredient water;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new RecipeImportService(recipeService, ingredientRepository, objectMapper, 2);
+        water = new Ingredient("Water");
+        water.setId(1);
+    }
+
+    @Test
+    @DisplayName("Should import recipes in chunks and stream one result per line")
+    void importRecipes_shouldImportInChunks() throws Exception {
+        // Given
+        when(ingredientRepository.findAll(0, 1000)).thenReturn(List.of(water));
+        when(recipeService.importRecipes(any(), any())).thenAnswer(invocation -> {
+            List<RecipeImportLine> lines = invocation.getArgument(0);
+            return lines.stream()
+                    .map(line -> new RecipeImportResultDto(line.lineNumber(), (int) line.lineNumber() * 10, "CREATED", null))
+                    .toList();
+        });
+        String input = String.join("\n", RECIPE, "{not json", "", RECIPE, RECIPE);
+
+        // When
+        List<RecipeImportResultDto> results = importRecipes(input);
+
+        // Then
+        assertEquals(List.of(2L, 1L, 4L, 5L), results.stream().map(RecipeImportResultDto::line).toList());
+        assertEquals("FAILED", results.getFirst().status());
+        assertEquals(40, results.get(2).id());
+        verify(recipeService).importRecipes(argThat(lines -> lines.size() == 2 && lines.getFirst().lineNumber() == 1), eq(Map.of(1, water)));
+        verify(recipeService).importRecipes(argThat(lines -> lines.size() == 1 && lines.getFirst().lineNumber() == 5), eq(Map.of(1, water)));
+    }
+
+    @Test
+    @DisplayName("Should report every line of a chunk that could not be stored")
+    void importRecipes_shouldReportFailedChunk() throws Exception {
+        // Given
+        when(ingredientRepository.findAll(0, 1000)).thenReturn(List.of(water));
+        when(recipeService.importRecipes(any(), any())).thenThrow(new DataIntegrityViolationException("constraint violated"));
+
+        // When
+        List<RecipeImportResultDto> results = importRecipes(RECIPE + "\n" + RECIPE);
+
+        // Then
+        assertEquals(2, results.size());
+        assertTrue(results.stream().allMatch(result -> "FAILED".equals(result.status()) && result.error().contains("constraint violated")));
+    }
+
+    private List<RecipeImportResultDto> importRecipes(String input) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        underTest.importRecipes(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), output);
+        return objectMapper.readerFor(RecipeImportResultDto.class)
+                .<RecipeImportResultDto>readValues(output.toByteArray())
+                .readAll();
+    }
+}
@@ -1,28 +1,62 @@
 package com.abnamro.recipeapp.service;
 
 import com.abnamro.exception.BadRequestException;
+import com.abnamro.exception.DuplicateResourceException;
+import com.abnamro.exception.PreconditionFailedException;
 import com.abnamro.exception.ResourceNotFoundException;
+import com.abnamro.exception.ServiceUnavailableException;
 import com.abnamro.exception.ValidationException;
+import com.abnamro.recipeapp.cache.ExistenceFilter;
+import com.abnamro.recipeapp.cache.RecipeCache;
+import com.abnamro.recipeapp.cache.RecipeJsonCache;
+import com.abnamro.recipeapp.cache.RecipeSearchCache;
+import com.abnamro.recipeapp.dto.PageDto;
+import com.abnamro.recipeapp.dto.Versioned;
 import com.abnamro.recipeapp.dto.recipe.CreateRecipeDto;
+import com.abnamro.recipeapp.dto.recipe.IngredientOperationDto;
+import com.abnamro.recipeapp.dto.ingredient.IngredientCountDto;
+import com.abnamro.recipeapp.dto.recipe.RecipeBatchDto;
 import com.abnamro.recipeapp.dto.recipe.RecipeDto;
+import com.abnamro.recipeapp.dto.recipe.RecipeFacetsDto;
+import com.abnamro.recipeapp.dto.recipe.RecipeImportResultDto;
+import com.abnamro.recipeapp.dto.recipe.RecipePatchDto;
 import com.abnamro.recipeapp.dto.RecipeIngredientDto;
 import com.abnamro.recipeapp.dto.recipe.RecipeRequestDto;
+import com.abnamro.recipeapp.dto.recipe.RecipeSummaryDto;
+import com.abnamro.recipeapp.dto.recipe.SimilarRecipeDto;
 import com.abnamro.recipeapp.entity.Ingredient;
 import com.abnamro.recipeapp.entity.Recipe;
 import com.abnamro.recipeapp.entity.RecipeIngredient;
+import com.abnamro.recipeapp.event.RecipeDeletedEvent;
+import com.abnamro.recipeapp.event.RecipeSavedEvent;
+import com.abnamro.recipeapp.index.RecipeIngredientIndex;
+import com.abnamro.recipeapp.index.RecipeSimilarityIndex;
 import com.abnamro.recipeapp.repository.IngredientRepository;
+import com.abnamro.recipeapp.repository.IngredientCount;
+import com.abnamro.recipeapp.repository.RankedRecipe;
+import com.abnamro.recipeapp.repository.RecipeFacets;
 import com.abnamro.recipeapp.repository.RecipeRepository;
 import com.abnamro.recipeapp.repository.RecipeIngredientRepository;
+import com.abnamro.recipeapp.repository.RecipeSearchCriteria;
+import com.abnamro.recipeapp.repository.RecipeSummary;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -42,9 +76,27 @@ class RecipeServiceTest {
     @Mock
     private RecipeIngredientRepository recipeIngredientRepository;
 
+    @Mock
+    private RecipeIngredientIndex recipeIngredientIndex;
+
+    @Mock
+    private RecipeSimilarityIndex recipeSimilarityIndex;
+
+    @Mock
+    private RecipeSearchCache recipeSearchCache;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @BeforeEach
     void setUp() {
-        underTest = new RecipeService(recipeRepository, recipeIngredientRepository, ingredientRepository);
+        underTest = new RecipeService(recipeRepository, recipeIngredientRepository, ingredientRepository, recipeIngredientIndex, recipeSimilarityIndex,
+                new RecipeCache(100, Duration.ofMinutes(10)), new RecipeJsonCache(DataSize.ofMegabytes(1), Duration.ofMinutes(10), new ObjectMapper()),
+                recipeSearchCache, new ExistenceFilter(recipeRepository, ingredientRepository, mock(PlatformTransactionManager.class), 1000, 0.01, 100, Duration.ofSeconds(30)),
+                eventPublisher);
+        lenient().when(recipeSearchCache.findPageIds(any(), anyInt(), anyInt(), any()))
+                .thenAnswer(invocation -> invocation.<RecipeSearchCache.Search>getArgument(3)
+                        .findIds(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2)));
     }
 
     @Test
@@ -65,7 +117,7 @@ class RecipeServiceTest {
         ingredient.setId(1);
         ingredient.setName("Test Ingredient");
 
-        when(ingredientRepository.findById(any(Integer.class))).thenReturn(Optional.of(ingredient));
+        when(ingredientRepository.findAllByIds(List.of(1))).thenReturn(List.of(ingredient));
         recipeRepository.save(recipe);
 
         // When
@@ -77,9 +129,76 @@ class RecipeServiceTest {
         assertEquals("Boil pasta and mix with sauce.", result.instructions());
         assertTrue(result.isVegetarian());
         assertEquals(2, result.servings());
+        verify(eventPublisher).publishEvent(new RecipeSavedEvent(null, "Pasta", List.of(1), true, 2));
+        verify(recipeIngredientRepository).saveAll(argThat(rows -> rows.size() == 1 && rows.getFirst().getIngredient() == ingredient));
+        verify(ingredientRepository, never()).findById(any());
+    }
+
+    @Test
+    @DisplayName("Should report every missing ingredient in a single error")
+    void addRecipe_shouldReportAllMissingIngredients() {
+        // Given
+        CreateRecipeDto createRecipeDto = new CreateRecipeDto("Pasta", "Boil pasta and mix with sauce.", true, 2);
+        RecipeRequestDto recipeRequestDto = new RecipeRequestDto(createRecipeDto, List.of(
+                new RecipeIngredientDto(200, "grams", 1),
+                new RecipeIngredientDto(1, "piece", 2),
+                new RecipeIngredientDto(2, "tbsp", 3)));
+
+        Ingredient ingredient = new Ingredient();
+        ingredient.setId(2);
+
+        when(ingredientRepository.findAllByIds(List.of(1, 2, 3))).thenReturn(List.of(ingredient));
+
+        // When & Then
+        ResourceNotFoundException exception = assertThrows(ResourceNotFoundException.class, () -> underTest.addRecipe(recipeRequestDto));
+        assertTrue(exception.getMessage().contains("[1, 3]"));
+        verifyNoInteractions(recipeRepository, recipeIngredientRepository);
+    }
+
+    @Test
+    @DisplayName("Should validate amounts and duplicate ingredients before any lookup")
+    void addRecipe_shouldValidateIngredientsBeforeAnyLookup() {
+        // Given
+        CreateRecipeDto createRecipeDto = new CreateRecipeDto("Pasta", "Boil pasta and mix with sauce.", true, 2);
+        RecipeRequestDto invalidAmount = new RecipeRequestDto(createRecipeDto, List.of(
+                new RecipeIngredientDto(200, "grams", 1),
+                new RecipeIngredientDto(0, "grams", 2)));
+        RecipeRequestDto duplicateIngredient = new RecipeRequestDto(createRecipeDto, List.of(
+                new RecipeIngredientDto(200, "grams", 1),
+                new RecipeIngredientDto(100, "grams", 1)));
+
+        // When & Then
+        assertThrows(ValidationException.class, () -> underTest.addRecipe(invalidAmount));
+        assertThrows(ValidationException.class, () -> underTest.addRecipe(duplicateIngredient));
+        verifyNoInteractions(ingredientRepository, recipeRepository, recipeIngredientRepository);
     }
 
 
+    @Test
+    @DisplayName("Should import valid lines in one batch and report invalid ones")
+    void importRecipes_shouldStoreValidLinesAndReportInvalidOnes() {
+        // Given
+        Ingredient salt = new Ingredient("Salt");
+        salt.setId(1);
+        CreateRecipeDto pasta = new CreateRecipeDto("Pasta", "Boil pasta.", true, 2);
+        List<RecipeImportLine> lines = List.of(
+                new RecipeImportLine(1, new RecipeRequestDto(pasta, List.of(new RecipeIngredientDto(1, "pinch", 1)))),
+                new RecipeImportLine(2, new RecipeRequestDto(pasta, List.of(new RecipeIngredientDto(1, "pinch", 9)))),
+                new RecipeImportLine(3, new RecipeRequestDto(null, List.of())),
+                new RecipeImportLine(4, new RecipeRequestDto(pasta, List.of(new RecipeIngredientDto(2, "pinch", 1)))));
+
+        // When
+        List<RecipeImportResultDto> results = underTest.importRecipes(lines, Map.of(1, salt));
+
+        // Then
+        assertEquals(List.of("CREATED", "FAILED", "FAILED", "CREATED"), results.stream().map(RecipeImportResultDto::status).toList());
+        assertEquals(List.of(1L, 2L, 3L, 4L), results.stream().map(RecipeImportResultDto::line).toList());
+        assertTrue(results.get(1).error().contains("[9]"));
+        verify(recipeRepository, times(2)).save(any());
+        verify(recipeIngredientRepository).saveAll(argThat(rows -> rows.size() == 2 && rows.stream().allMatch(row -> row.getIngredient() == salt)));
+        verifyNoInteractions(ingredientRepository);
+    }
+
     @Test
     @DisplayName("Should throw BadRequestException when servings is zero or negative")
     void addRecipe_shouldThrowBadRequestExceptionWhenServingsInvalid() {
@@ -122,11 +241,11 @@ class RecipeServiceTest {
         ingredient.setName("Test Ingredient");
 
         when(recipeRepository.findById(1)).thenReturn(Optional.of(existingRecipe));
-        when(ingredientRepository.findById(any(Integer.class))).thenReturn(Optional.of(ingredient));
+        when(ingredientRepository.findAllByIds(List.of(1))).thenReturn(List.of(ingredient));
         recipeRepository.update(existingRecipe);
 
         // When
-        RecipeDto result = underTest.updateRecipe(updatedRecipeDto);
+        RecipeDto result = underTest.updateRecipe(updatedRecipeDto, null).value();
 
         // Then
         assertNotNull(result);
@@ -145,7 +264,179 @@ class RecipeServiceTest {
         when(recipeRepository.findById(1)).thenReturn(Optional.empty());
 
         // When & Then
-        assertThrows(ResourceNotFoundException.class, () -> underTest.updateRecipe(recipeDto));
+        assertThrows(ResourceNotFoundException.class, () -> underTest.updateRecipe(recipeDto, null));
+    }
+
+    @Test
+    @DisplayName("Should reject an update made against a stale version")
+    void updateRecipe_shouldThrowPreconditionFailedExceptionWhenVersionIsStale() {
+        // Given
+        Recipe existingRecipe = new Recipe(1, "Pasta", "Boil pasta.", true, 2);
+        existingRecipe.setRecipeIngredients(new ArrayList<>());
+        RecipeDto recipeDto = new RecipeDto(1, "Updated Pasta", "Boil pasta.", true, 2, List.of(new RecipeIngredientDto(200, "grams", 1)));
+
+        when(recipeRepository.findById(1)).thenReturn(Optional.of(existingRecipe));
+
+        // When & Then
+        assertThrows(PreconditionFailedException.class, () -> underTest.updateRecipe(recipeDto, 3L));
+        assertEquals("Pasta", existingRecipe.getName());
+        verify(recipeRepository, never()).update(any());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    @DisplayName("Should keep the version of a recipe whose update changes nothing")
+    void updateRecipe_shouldNotBumpVersionWhenNothingChanged() {
+        // Given
+        Recipe existingRecipe = new Recipe(1, "Pasta", "Boil pasta.", true, 2);
+        Ingredient salt = new Ingredient("Salt");
+        salt.setId(1);
+        existingRecipe.setRecipeIngredients(new ArrayList<>(List.of(new RecipeIngredient(existingRecipe, salt, 1.0, "pinch"))));
+        RecipeDto recipeDto = new RecipeDto(1, "Pasta", "Boil pasta.", true, 2, List.of(new RecipeIngredientDto(1.0, "pinch", 1)));
+
+        when(recipeRepository.findById(1)).thenReturn(Optional.of(existingRecipe));
+
+        // When
+        Versioned<RecipeDto> result = underTest.updateRecipe(recipeDto, 0L);
+
+        // Then
+        assertEquals(0, result.version());
+        verify(recipeRepository, never()).update(any());
+        verifyNoInteractions(recipeIngredientRepository, eventPublisher);
+    }
+
+    @Test
+    @DisplayName("Should only touch changed ingredient rows and bump the recipe version")
+    void updateRecipe_shouldApplyIngredientDiff() {
+        // Given
+        Recipe existingRecipe = new Recipe(1, "Pasta", "Boil pasta.", true, 2);
+        Ingredient salt = new Ingredient("Salt");
+        salt.setId(1);
+        Ingredient pepper = new Ingredient("Pepper");
+        pepper.setId(2);
+        Ingredient basil = new Ingredient("Basil");
+        basil.setId(3);
+        RecipeIngredient unchanged = new RecipeIngredient(existingRecipe, salt, 1.0, "pinch");
+        RecipeIngredient changed = new RecipeIngredient(existingRecipe, pepper, 1.0, "pinch");
+        RecipeIngredient removed = new RecipeIngredient(existingRecipe, basil, 5.0, "leaves");
+        existingRecipe.setRecipeIngredients(new ArrayList<>(List.of(unchanged, changed, removed)));
+
+        Ingredient oil = new Ingredient("Oil");
+        oil.setId(4);
+        RecipeDto recipeDto = new RecipeDto(1, "Pasta", "Boil pasta.", true, 2, List.of(
+                new RecipeIngredientDto(1.0, "pinch", 1),
+                new RecipeIngredientDto(2.0, "pinch", 2),
+                new RecipeIngredientDto(1.0, "tbsp", 4)));
+
+        when(recipeRepository.findById(1)).thenReturn(Optional.of(existingRecipe));
+        when(ingredientRepository.findAllByIds(List.of(4))).thenReturn(List.of(oil));
+
+        // When
+        underTest.updateRecipe(recipeDto, null);
+
+        // Then
+        verify(recipeRepository).update(existingRecipe);
+        assertEquals(2.0, changed.getAmount());
+        assertEquals(List.of(1, 2, 4), existingRecipe.getRecipeIngredients().stream()
+                .map(recipeIngredient -> recipeIngredient.getIngredient().getId())
+                .toList());
+        verify(recipeIngredientRepository).saveAll(argThat(rows -> rows.size() == 1
+                && rows.getFirst().getIngredient() == oil
+                && rows.getFirst().getRecipe() == existingRecipe));
+        verify(eventPublisher).publishEvent(new RecipeSavedEvent(1, "Pasta", List.of(1, 2, 4), true, 2));
+    }
+
+    @Test
+    @DisplayName("Should patch only the given recipe fields without touching ingredients")
+    void patchRecipe_shouldChangeOnlyGivenFields() {
+        // Given
+        Recipe existingRecipe = new Recipe(1, "Pasta", "Boil pasta.", true, 2);
+        Ingredient salt = new Ingredient("Salt");
+        salt.setId(1);
+        existingRecipe.setRecipeIngredients(new ArrayList<>(List.of(new RecipeIngredient(existingRecipe, salt, 1.0, "pinch"))));
+
+        when(recipeRepository.findById(1)).thenReturn(Optional.of(existingRecipe));
+
+        // When
+        RecipeDto result = underTest.patchRecipe(1, new RecipePatchDto(null, null, null, 6, null), null).value();
+
+        // Then
+        assertEquals(6, result.servings());
+        assertEquals("Boil pasta.", result.instructions());
+        verify(recipeRepository).update(existingRecipe);
+        verifyNoInteractions(ingredientRepository, recipeIngredientRepository);
+        verify(eventPublisher).publishEvent(new RecipeSavedEvent(1, "Pasta", List.of(1), true, 6));
+    }
+
+    @Test
+    @DisplayName("Should apply ingredient add, change and remove operations")
+    void patchRecipe_shouldApplyIngredientOperations() {
+        // Given
+        Recipe existingRecipe = new Recipe(1, "Pasta", "Boil pasta.", true, 2);
+        Ingredient salt = new Ingredient("Salt");
+        salt.setId(1);
+        Ingredient pepper = new Ingredient("Pepper");
+        pepper.setId(2);
+        Ingredient oil = new Ingredient("Oil");
+        oil.setId(3);
+        RecipeIngredient saltRow = new RecipeIngredient(existingRecipe, salt, 1.0, "pinch");
+        existingRecipe.setRecipeIngredients(new ArrayList<>(List.of(saltRow, new RecipeIngredient(existingRecipe, pepper, 1.0, "pinch"))));
+
+        when(recipeRepository.findById(1)).thenReturn(Optional.of(existingRecipe));
+        when(ingredientRepository.findAllByIds(List.of(3))).thenReturn(List.of(oil));
+
+        // When
+        RecipeDto result = underTest.patchRecipe(1, new RecipePatchDto("Pasta", null, null, null, List.of(
+                new IngredientOperationDto("change", 1, null, "tsp"),
+                new IngredientOperationDto("remove", 2, null, null),
+                new IngredientOperationDto("ADD", 3, 1.0, "tbsp"))), null).value();
+
+        // Then
+        assertEquals(List.of(new RecipeIngredientDto(1.0, "tsp", 1), new RecipeIngredientDto(1.0, "tbsp", 3)), result.ingredients());
+        verify(recipeRepository).update(existingRecipe);
+        verify(recipeIngredientRepository).saveAll(argThat(rows -> rows.size() == 1 && rows.getFirst().getIngredient() == oil));
+        verify(eventPublisher).publishEvent(new RecipeSavedEvent(1, "Pasta", List.of(1, 3), true, 2));
+    }
+
+    @Test
+    @DisplayName("Should reject invalid patches")
+    void patchRecipe_shouldRejectInvalidPatches() {
+        // Given
+        Recipe existingRecipe = new Recipe(1, "Pasta", "Boil pasta.", true, 2);
+        Ingredient salt = new Ingredient("Salt");
+        salt.setId(1);
+        existingRecipe.setRecipeIngredients(new ArrayList<>(List.of(new RecipeIngredient(existingRecipe, salt, 1.0, "pinch"))));
+        when(recipeRepository.findById(1)).thenReturn(Optional.of(existingRecipe));
+
+        // When & Then
+        assertThrows(BadRequestException.class, () -> underTest.patchRecipe(1, new RecipePatchDto(null, null, null, 0, null), null));
+        assertThrows(BadRequestException.class, () -> underTest.patchRecipe(1, new RecipePatchDto(null, null, null, null,
+                List.of(new IngredientOperationDto("replace", 1, 1.0, "cup"))), null));
+        assertThrows(ValidationException.class, () -> underTest.patchRecipe(1, new RecipePatchDto(null, null, null, null,
+                List.of(new IngredientOperationDto("add", 2, null, "cup"))), null));
+        assertThrows(DuplicateResourceException.class, () -> underTest.patchRecipe(1, new RecipePatchDto(null, null, null, null,
+                List.of(new IngredientOperationDto("add", 1, 1.0, "cup"))), null));
+        assertThrows(ResourceNotFoundException.class, () -> underTest.patchRecipe(1, new RecipePatchDto(null, null, null, null,
+                List.of(new IngredientOperationDto("change", 2, 1.0, null))), null));
+        assertThrows(ValidationException.class, () -> underTest.patchRecipe(1, new RecipePatchDto(null, null, null, null,
+                List.of(new IngredientOperationDto("remove", 1, null, null))), null));
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    @DisplayName("Should reject a patch made against a stale version")
+    void patchRecipe_shouldThrowPreconditionFailedExceptionWhenVersionIsStale() {
+        // Given
+        Recipe existingRecipe = new Recipe(1, "Pasta", "Boil pasta.", true, 2);
+        existingRecipe.setRecipeIngredients(new ArrayList<>());
+
+        when(recipeRepository.findById(1)).thenReturn(Optional.of(existingRecipe));
+
+        // When & Then
+        assertThrows(PreconditionFailedException.class, () -> underTest.patchRecipe(1, new RecipePatchDto(null, null, null, 6, null), 3L));
+        assertEquals(2, existingRecipe.getServings());
+        verify(recipeRepository, never()).update(any());
+        verifyNoInteractions(eventPublisher);
     }
 
     @Test
@@ -155,7 +446,7 @@ class RecipeServiceTest {
         RecipeDto recipeDto = new RecipeDto(1, "Updated Pasta", "Updated instructions", true, 0, List.of(new RecipeIngredientDto(200, "grams", 1)));
 
         // When & Then
-        assertThrows(BadRequestException.class, () -> underTest.updateRecipe(recipeDto));
+        assertThrows(BadRequestException.class, () -> underTest.updateRecipe(recipeDto, null));
     }
 
     @Test
@@ -171,6 +462,7 @@ class RecipeServiceTest {
 
         // Then
         verify(recipeRepository).deleteById(id);
+        verify(eventPublisher).publishEvent(new RecipeDeletedEvent(id));
     }
 
     @Test
@@ -193,18 +485,20 @@ class RecipeServiceTest {
         recipe.setId(1);
         recipe.setName("Pasta");
 
-        when(recipeRepository.findAll()).thenReturn(List.of(recipe));
+        when(recipeRepository.searchIds(RecipeSearchCriteria.all(), 0, 21)).thenReturn(List.of(1));
+        when(recipeRepository.findAllByIds(List.of(1))).thenReturn(List.of(recipe));
 
         // When
-        List<RecipeDto> result = underTest.getAllRecipes();
+        PageDto<RecipeDto> result = underTest.getAllRecipes(null, 20);
 
         // Then
-        assertEquals(1, result.size());
-        verify(recipeRepository).findAll();
+        assertEquals(1, result.items().size());
+        assertNull(result.nextCursor());
+        verify(recipeRepository).searchIds(RecipeSearchCriteria.all(), 0, 21);
     }
 
     @Test
-    @DisplayName("Should return recipe by ID")
+    @DisplayName("Should return recipe by ID and serve repeated lookups from the cache")
     void getRecipeById_shouldReturnRecipe() {
         // Given
         int id = 1;
@@ -212,15 +506,17 @@ class RecipeServiceTest {
         recipe.setId(id);
         recipe.setName("Pasta");
 
-        when(recipeRepository.findById(id)).thenReturn(Optional.of(recipe));
+        when(recipeRepository.findAllByIds(List.of(id))).thenReturn(List.of(recipe));
 
         // When
         RecipeDto result = underTest.getRecipeById(id);
+        RecipeDto cached = underTest.getRecipeById(id);
 
         // Then
         assertEquals(id, result.id());
         assertEquals("Pasta", result.name());
-        verify(recipeRepository).findById(id);
+        assertSame(result, cached);
+        verify(recipeRepository, times(1)).findAllByIds(List.of(id));
     }
 
     @Test
@@ -229,12 +525,87 @@ class RecipeServiceTest {
         // Given
         int id = 1;
 
-        when(recipeRepository.findById(id)).thenReturn(Optional.empty());
+        when(recipeRepository.findAllByIds(List.of(id))).thenReturn(List.of());
 
         // When & Then
         assertThrows(ResourceNotFoundException.class, () -> underTest.getRecipeById(id));
     }
 
+    @Test
+    @DisplayName("Should read the version of a cached recipe without going to the repository")
+    void getRecipeVersion_shouldPreferCachedVersion() {
+        // Given
+        Recipe recipe = new Recipe(1, "Pasta", "Boil pasta.", true, 2);
+        when(recipeRepository.findAllByIds(List.of(1))).thenReturn(List.of(recipe));
+        underTest.getRecipeById(1);
+        when(recipeRepository.findVersionById(2)).thenReturn(Optional.of(5L));
+
+        // When
+        long cached = underTest.getRecipeVersion(1);
+        long loaded = underTest.getRecipeVersion(2);
+
+        // Then
+        assertEquals(0, cached);
+        assertEquals(5, loaded);
+        verify(recipeRepository, never()).findVersionById(1);
+        assertThrows(ResourceNotFoundException.class, () -> underTest.getRecipeVersion(3));
+    }
+
+    @Test
+    @DisplayName("Should serve repeated JSON lookups from the JSON cache")
+    void getRecipeJsonById_shouldSerializeOnce() throws Exception {
+        // Given
+        Recipe recipe = new Recipe(1, "Pasta", "Boil pasta.", true, 2);
+        when(recipeRepository.findAllByIds(List.of(1))).thenReturn(List.of(recipe));
+
+        // When
+        Versioned<byte[]> result = underTest.getRecipeJsonById(1);
+        Versioned<byte[]> cached = underTest.getRecipeJsonById(1);
+
+        // Then
+        assertEquals("Pasta", new ObjectMapper().readValue(result.value(), RecipeDto.class).name());
+        assertSame(result.value(), cached.value());
+        assertEquals(0, underTest.getRecipeVersion(1));
+        verify(recipeRepository, times(1)).findAllByIds(List.of(1));
+        verify(recipeRepository, never()).findVersionById(any());
+    }
+
+    @Test
+    @DisplayName("Should return recipes in requested order and report missing ids")
+    void getRecipesByIds_shouldReturnRecipesInOrderAndMissingIds() {
+        // Given
+        Recipe pasta = new Recipe();
+        pasta.setId(3);
+        pasta.setName("Pasta");
+        Recipe salad = new Recipe();
+        salad.setId(1);
+        salad.setName("Salad");
+
+        when(recipeRepository.findAllByIds(List.of(3, 2, 1))).thenReturn(List.of(pasta, salad));
+
+        // When
+        RecipeBatchDto result = underTest.getRecipesByIds(List.of(3, 2, 1, 3));
+
+        // Then
+        assertEquals(List.of(3, 1), result.items().stream().map(RecipeDto::id).toList());
+        assertEquals(List.of(2), result.missingIds());
+    }
+
+    @Test
+    @DisplayName("Should reject empty, null or oversized id lists")
+    void getRecipesByIds_shouldRejectInvalidIds() {
+        // Given
+        List<Integer> withNull = new ArrayList<>(List.of(1));
+        withNull.add(null);
+        List<Integer> tooMany = IntStream.rangeClosed(1, RecipeService.MAX_BATCH_IDS + 1).boxed().toList();
+
+        // When & Then
+        assertThrows(BadRequestException.class, () -> underTest.getRecipesByIds(List.of()));
+        assertThrows(BadRequestException.class, () -> underTest.getRecipesByIds(withNull));
+        assertThrows(BadRequestException.class, () -> underTest.getRecipesByIds(tooMany));
+        verifyNoInteractions(recipeRepository);
+    }
+
     @Test
     @DisplayName("Should return recipe by name")
     void getRecipeByName_shouldReturnRecipe() {
@@ -244,15 +615,18 @@ class RecipeServiceTest {
         recipe.setId(1);
         recipe.setName(name);
 
-        when(recipeRepository.findByName(name)).thenReturn(Optional.of(recipe));
+        when(recipeRepository.findIdByName(name)).thenReturn(Optional.of(1));
+        when(recipeRepository.findAllByIds(List.of(1))).thenReturn(List.of(recipe));
 
         // When
         RecipeDto result = underTest.getRecipeByName(name);
+        RecipeDto byId = underTest.getRecipeById(1);
 
         // Then
         assertEquals(1, result.id());
         assertEquals(name, result.name());
-        verify(recipeRepository).findByName(name);
+        assertSame(result, byId);
+        verify(recipeRepository, times(1)).findAllByIds(List.of(1));
     }
 
     @Test
@@ -261,12 +635,41 @@ class RecipeServiceTest {
         // Given
         String name = "Pasta";
 
-        when(recipeRepository.findByName(name)).thenReturn(Optional.empty());
+        when(recipeRepository.findIdByName(name)).thenReturn(Optional.empty());
 
         // When & Then
         assertThrows(ResourceNotFoundException.class, () -> underTest.getRecipeByName(name));
     }
 
+    @Test
+    @DisplayName("Should return recipes with names similar to the query in similarity order")
+    void searchByName_shouldReturnSimilarRecipes() {
+        // Given
+        Recipe spaghetti = new Recipe();
+        spaghetti.setId(1);
+        spaghetti.setName("Spaghetti");
+        Recipe carbonara = new Recipe();
+        carbonara.setId(2);
+        carbonara.setName("Spaghetti Carbonara");
+
+        when(recipeRepository.searchNames("spagetti", 10))
+                .thenReturn(List.of(new RankedRecipe(spaghetti, 0.8f), new RankedRecipe(carbonara, 0.7f)));
+
+        // When
+        List<RecipeDto> result = underTest.searchByName(" spagetti ", 10);
+
+        // Then
+        assertEquals(List.of("Spaghetti", "Spaghetti Carbonara"), result.stream().map(RecipeDto::name).toList());
+    }
+
+    @Test
+    @DisplayName("Should throw BadRequestException when the name query is blank")
+    void searchByName_shouldThrowBadRequestExceptionWhenQueryBlank() {
+        // When & Then
+        assertThrows(BadRequestException.class, () -> underTest.searchByName(" ", 10));
+        verifyNoInteractions(recipeRepository);
+    }
+
     @Test
     @DisplayName("Should return recipes by vegetarian status")
     void findByVegetarianRecipes_shouldReturnRecipesByVegetarianStatus() {
@@ -275,14 +678,15 @@ class RecipeServiceTest {
         recipe.setId(1);
         recipe.setVegetarian(true);
 
-        when(recipeRepository.findByVegetarian(true)).thenReturn(List.of(recipe));
+        when(recipeRepository.searchIds(RecipeSearchCriteria.vegetarian(true), 0, 21)).thenReturn(List.of(1));
+        when(recipeRepository.findAllByIds(List.of(1))).thenReturn(List.of(recipe));
 
         // When
-        List<RecipeDto> result = underTest.findByVegetarianRecipes(true);
+        PageDto<RecipeDto> result = underTest.findByVegetarianRecipes(true, null, 20);
 
         // Then
-        assertEquals(1, result.size());
-        verify(recipeRepository).findByVegetarian(true);
+        assertEquals(1, result.items().size());
+        verify(recipeRepository).searchIds(RecipeSearchCriteria.vegetarian(true), 0, 21);
     }
 
     @Test
@@ -294,14 +698,15 @@ class RecipeServiceTest {
         recipe.setId(1);
         recipe.setServings(servings);
 
-        when(recipeRepository.findByServings(servings)).thenReturn(List.of(recipe));
+        when(recipeRepository.searchIds(RecipeSearchCriteria.servings(servings), 0, 21)).thenReturn(List.of(1));
+        when(recipeRepository.findAllByIds(List.of(1))).thenReturn(List.of(recipe));
 
         // When
-        List<RecipeDto> result = underTest.findByServings(servings);
+        PageDto<RecipeDto> result = underTest.findByServings(servings, null, 20);
 
         // Then
-        assertEquals(1, result.size());
-        verify(recipeRepository).findByServings(servings);
+        assertEquals(1, result.items().size());
+        verify(recipeRepository).searchIds(RecipeSearchCriteria.servings(servings), 0, 21);
     }
 
     @Test
@@ -313,14 +718,43 @@ class RecipeServiceTest {
         recipe.setId(1);
         recipe.setInstructions("Boil pasta and mix with sauce.");
 
-        when(recipeRepository.findByInstructionsContaining(text)).thenReturn(List.of(recipe));
+        when(recipeRepository.searchInstructions(text, Float.POSITIVE_INFINITY, 0, 21)).thenReturn(List.of(new RankedRecipe(recipe, 0.5f)));
 
         // When
-        List<RecipeDto> result = underTest.findByInstructionsContaining(text);
+        PageDto<RecipeDto> result = underTest.findByInstructionsContaining(text, null, 20);
 
         // Then
-        assertEquals(1, result.size());
-        verify(recipeRepository).findByInstructionsContaining(text);
+        assertEquals(1, result.items().size());
+        assertNull(result.nextCursor());
+        verify(recipeRepository).searchInstructions(text, Float.POSITIVE_INFINITY, 0, 21);
+    }
+
+    @Test
+    @DisplayName("Should continue an instruction search after the rank and id of the previous page")
+    void findByInstructionsContaining_shouldContinueAfterRankedCursor() {
+        // Given
+        String text = "garlic";
+        Recipe best = new Recipe();
+        best.setId(8);
+        Recipe second = new Recipe();
+        second.setId(2);
+        Recipe third = new Recipe();
+        third.setId(5);
+
+        when(recipeRepository.searchInstructions(text, Float.POSITIVE_INFINITY, 0, 3))
+                .thenReturn(List.of(new RankedRecipe(best, 0.9f), new RankedRecipe(second, 0.4f), new RankedRecipe(third, 0.4f)));
+        when(recipeRepository.searchInstructions(text, 0.4f, 2, 3))
+                .thenReturn(List.of(new RankedRecipe(third, 0.4f)));
+
+        // When
+        PageDto<RecipeDto> firstPage = underTest.findByInstructionsContaining(text, null, 2);
+        PageDto<RecipeDto> secondPage = underTest.findByInstructionsContaining(text, firstPage.nextCursor(), 2);
+
+        // Then
+        assertEquals(List.of(8, 2), firstPage.items().stream().map(RecipeDto::id).toList());
+        assertEquals(List.of(5), secondPage.items().stream().map(RecipeDto::id).toList());
+        assertNull(secondPage.nextCursor());
+        assertThrows(BadRequestException.class, () -> underTest.findByInstructionsContaining(text, KeysetPagination.encode(3), 2));
     }
 
     @Test
@@ -333,6 +767,8 @@ class RecipeServiceTest {
         List<Integer> excludeIngredients = List.of(2);
         String instruction = "Boil";
 
+        RecipeSearchCriteria criteria = new RecipeSearchCriteria(vegetarian, servings, includeIngredients, excludeIngredients, instruction);
+
         Recipe recipe = new Recipe();
         recipe.setId(1);
         recipe.setVegetarian(vegetarian);
@@ -342,26 +778,223 @@ class RecipeServiceTest {
         Ingredient ingredient1 = new Ingredient();
         ingredient1.setId(1);
 
-        Ingredient ingredient2 = new Ingredient();
-        ingredient2.setId(2);
-
         RecipeIngredient recipeIngredient1 = new RecipeIngredient();
         recipeIngredient1.setIngredient(ingredient1);
         recipeIngredient1.setRecipe(recipe);
 
-        RecipeIngredient recipeIngredient2 = new RecipeIngredient();
-        recipeIngredient2.setIngredient(ingredient2);
-        recipeIngredient2.setRecipe(recipe);
+        recipe.setRecipeIngredients(List.of(recipeIngredient1));
+
+        when(recipeRepository.searchIds(criteria, 0, 21)).thenReturn(List.of(1));
+        when(recipeRepository.findAllByIds(List.of(1))).thenReturn(List.of(recipe));
+
+        // When
+        PageDto<RecipeDto> result = underTest.searchRecipes(vegetarian, servings, includeIngredients, excludeIngredients, instruction, null, 20);
+
+        // Then
+        assertEquals(1, result.items().size());
+        assertEquals(1, result.items().getFirst().ingredients().getFirst().ingredientId());
+        verify(recipeRepository).searchIds(criteria, 0, 21);
+    }
+
+    @Test
+    @DisplayName("Should return similar recipes in order of similarity")
+    void findSimilarRecipes_shouldReturnRecipesOrderedBySimilarity() {
+        // Given
+        Recipe close = new Recipe();
+        close.setId(3);
+        close.setName("Close");
+        Recipe closest = new Recipe();
+        closest.setId(2);
+        closest.setName("Closest");
+
+        when(recipeRepository.notExistsById(1)).thenReturn(false);
+        when(recipeSimilarityIndex.findSimilar(1, 5)).thenReturn(Optional.of(List.of(
+                new RecipeSimilarityIndex.SimilarRecipe(2, 0.9),
+                new RecipeSimilarityIndex.SimilarRecipe(3, 0.5))));
+        when(recipeRepository.findAllByIds(List.of(2, 3))).thenReturn(List.of(closest, close));
+
+        // When
+        List<SimilarRecipeDto> result = underTest.findSimilarRecipes(1, 5);
+
+        // Then
+        assertEquals(List.of("Closest", "Close"), result.stream().map(similar -> similar.recipe().name()).toList());
+        assertEquals(0.9, result.getFirst().similarity());
+    }
+
+    @Test
+    @DisplayName("Should reject similar recipe requests for unknown recipes or invalid k")
+    void findSimilarRecipes_shouldThrowWhenRecipeNotFoundOrKInvalid() {
+        // Given
+        when(recipeRepository.notExistsById(1)).thenReturn(true);
+
+        // When & Then
+        assertThrows(ResourceNotFoundException.class, () -> underTest.findSimilarRecipes(1, 10));
+        assertThrows(BadRequestException.class, () -> underTest.findSimilarRecipes(1, 0));
+        verifyNoInteractions(recipeSimilarityIndex);
+    }
+
+    @Test
+    @DisplayName("Should report similar recipes as unavailable while the indexes are not built")
+    void findSimilarRecipes_shouldThrowServiceUnavailableWhenIndexNotReady() {
+        // Given
+        when(recipeRepository.notExistsById(1)).thenReturn(false);
+        when(recipeSimilarityIndex.findSimilar(1, 5)).thenReturn(Optional.empty());
+
+        // When & Then
+        assertThrows(ServiceUnavailableException.class, () -> underTest.findSimilarRecipes(1, 5));
+        verify(recipeRepository, never()).findAllByIds(any());
+    }
+
+    @Test
+    @DisplayName("Should count search facets for the given criteria")
+    void searchFacets_shouldReturnAggregateCounts() {
+        // Given
+        RecipeSearchCriteria criteria = new RecipeSearchCriteria(null, null, List.of(1), null, "oven");
+        when(recipeRepository.facets(criteria, 10)).thenReturn(new RecipeFacets(
+                Map.of(true, 4L),
+                Map.of(2, 1L, 4, 3L),
+                List.of(new IngredientCount(1, "Potato", 4))));
+
+        // When
+        RecipeFacetsDto result = underTest.searchFacets(null, null, List.of(1), null, "oven", 10);
 
-        recipe.setRecipeIngredients(List.of(recipeIngredient1, recipeIngredient2));
+        // Then
+        assertEquals(4, result.vegetarian());
+        assertEquals(0, result.nonVegetarian());
+        assertEquals(Map.of(2, 1L, 4, 3L), result.servings());
+        assertEquals(List.of(new IngredientCountDto(1, "Potato", 4)), result.topIngredients());
+    }
+
+    @Test
+    @DisplayName("Should reject facet requests with an invalid number of top ingredients")
+    void searchFacets_shouldThrowBadRequestExceptionWhenTopIngredientsInvalid() {
+        assertThrows(BadRequestException.class, () -> underTest.searchFacets(null, null, null, null, null, 0));
+        verifyNoInteractions(recipeRepository);
+    }
+
+    @Test
+    @DisplayName("Should find recipes makeable from the given ingredients")
+    void findMakeableRecipes_shouldReturnRecipesCoveredByIngredients() {
+        // Given
+        Recipe recipe = new Recipe();
+        recipe.setId(4);
+        recipe.setName("Omelette");
 
-        when(recipeRepository.findAll()).thenReturn(List.of(recipe));
+        when(recipeRepository.findMakeable(List.of(1, 2), 1, 0, 21)).thenReturn(List.of(recipe));
 
         // When
-        List<RecipeDto> result = underTest.searchRecipes(vegetarian, servings, includeIngredients, excludeIngredients, instruction);
+        PageDto<RecipeDto> result = underTest.findMakeableRecipes(List.of(1, 2, 1), 1, null, 20);
 
         // Then
-        assertEquals(0, result.size()); // Since excludeIngredients has ingredient with id 2
-        verify(recipeRepository).findAll();
+        assertEquals(1, result.items().size());
+        assertEquals("Omelette", result.items().getFirst().name());
+        assertNull(result.nextCursor());
+    }
+
+    @Test
+    @DisplayName("Should reject makeable searches without ingredients or with a negative tolerance")
+    void findMakeableRecipes_shouldThrowBadRequestExceptionWhenParametersInvalid() {
+        assertThrows(BadRequestException.class, () -> underTest.findMakeableRecipes(List.of(), null, null, 20));
+        assertThrows(BadRequestException.class, () -> underTest.findMakeableRecipes(List.of(1), -1, null, 20));
+        verifyNoInteractions(recipeRepository);
+    }
+
+    @Test
+    @DisplayName("Should resolve ingredient filters through the ingredient index")
+    void searchRecipes_shouldUseIngredientIndexCandidates() {
+        // Given
+        List<Integer> includeIngredients = List.of(1);
+        List<Integer> excludeIngredients = List.of(2);
+        RecipeSearchCriteria remainingCriteria = new RecipeSearchCriteria(true, null, null, null, null);
+
+        Recipe recipe = new Recipe();
+        recipe.setId(5);
+
+        when(recipeIngredientIndex.candidates(includeIngredients, excludeIngredients))
+                .thenReturn(Optional.of(RoaringBitmap.bitmapOf(3, 5, 8)));
+        when(recipeRepository.searchIdsWithin(remainingCriteria, List.of(5, 8), 3)).thenReturn(List.of(5));
+        when(recipeRepository.findAllByIds(List.of(5))).thenReturn(List.of(recipe));
+
+        // When
+        PageDto<RecipeDto> result = underTest.searchRecipes(true, null, includeIngredients, excludeIngredients, null, KeysetPagination.encode(3), 2);
+
+        // Then
+        assertEquals(1, result.items().size());
+        assertEquals(5, result.items().getFirst().id());
+        assertNull(result.nextCursor());
+        verify(recipeRepository, never()).searchIds(any(), anyInt(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Should return recipe summaries without loading full recipes")
+    void searchRecipeSummaries_shouldReturnSummaries() {
+        // Given
+        RecipeSearchCriteria criteria = RecipeSearchCriteria.vegetarian(true);
+        when(recipeRepository.searchIds(criteria, 0, 3)).thenReturn(List.of(4, 6));
+        when(recipeRepository.findSummariesByIds(List.of(4, 6))).thenReturn(List.of(
+                new RecipeSummary(4, "Soup", true, 2, 3),
+                new RecipeSummary(6, "Salad", true, 1, 5)));
+
+        // When
+        PageDto<RecipeSummaryDto> result = underTest.searchRecipeSummaries(true, null, null, null, null, null, 2);
+
+        // Then
+        assertEquals(List.of(new RecipeSummaryDto(4, "Soup", true, 2, 3), new RecipeSummaryDto(6, "Salad", true, 1, 5)), result.items());
+        assertNull(result.nextCursor());
+        verify(recipeRepository, never()).findAllByIds(any());
+    }
+
+    @Test
+    @DisplayName("Should page through all recipe summaries")
+    void getAllRecipeSummaries_shouldReturnNextCursorWhenMoreRecipesExist() {
+        // Given
+        when(recipeRepository.searchIds(RecipeSearchCriteria.all(), 0, 2)).thenReturn(List.of(4, 6));
+        when(recipeRepository.findSummariesByIds(List.of(4, 6))).thenReturn(List.of(
+                new RecipeSummary(4, "Soup", true, 2, 3),
+                new RecipeSummary(6, "Salad", true, 1, 5)));
+
+        // When
+        PageDto<RecipeSummaryDto> result = underTest.getAllRecipeSummaries(null, 1);
+
+        // Then
+        assertEquals(1, result.items().size());
+        assertEquals(KeysetPagination.encode(4), result.nextCursor());
+    }
+
+    @Test
+    @DisplayName("Should return a next cursor that continues after the last recipe of a full page")
+    void getAllRecipes_shouldReturnNextCursorWhenMoreRecipesExist() {
+        // Given
+        Recipe first = new Recipe();
+        first.setId(3);
+        Recipe second = new Recipe();
+        second.setId(7);
+        Recipe third = new Recipe();
+        third.setId(9);
+
+        when(recipeRepository.searchIds(RecipeSearchCriteria.all(), 0, 3)).thenReturn(List.of(3, 7, 9));
+        when(recipeRepository.findAllByIds(List.of(3, 7, 9))).thenReturn(List.of(first, second, third));
+        when(recipeRepository.searchIds(RecipeSearchCriteria.all(), 7, 3)).thenReturn(List.of(9));
+        when(recipeRepository.findAllByIds(List.of(9))).thenReturn(List.of(third));
+
+        // When
+        PageDto<RecipeDto> firstPage = underTest.getAllRecipes(null, 2);
+        PageDto<RecipeDto> secondPage = underTest.getAllRecipes(firstPage.nextCursor(), 2);
+
+        // Then
+        assertEquals(List.of(3, 7), firstPage.items().stream().map(RecipeDto::id).toList());
+        assertNotNull(firstPage.nextCursor());
+        assertEquals(List.of(9), secondPage.items().stream().map(RecipeDto::id).toList());
+        assertNull(secondPage.nextCursor());
+    }
+
+    @Test
+    @DisplayName("Should throw BadRequestException for an invalid cursor or limit")
+    void getAllRecipes_shouldThrowBadRequestExceptionWhenPageParametersInvalid() {
+        // When & Then
+        assertThrows(BadRequestException.class, () -> underTest.getAllRecipes("not-a-cursor", 20));
+        assertThrows(BadRequestException.class, () -> underTest.getAllRecipes(null, 0));
+        assertThrows(BadRequestException.class, () -> underTest.getAllRecipes(null, 101));
+        verifyNoInteractions(recipeRepository);
     }
 }